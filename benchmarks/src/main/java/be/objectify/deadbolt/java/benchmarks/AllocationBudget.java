@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the static {@link ConstraintLogicBenchmark} checks with the GC profiler and fails if any of them allocates more
+ * bytes per operation than its budget.  These checks are decided synchronously once the subject is available, so their
+ * allocations are bounded; a change that reintroduces a stage, tuple or lambda per step shows up here.
+ * <p>
+ * Run it with {@code sbt allocationBudget}.  The process exits with status 1 if a budget is exceeded.
+ */
+public final class AllocationBudget
+{
+    /**
+     * The maximum bytes allocated per operation, with roleCount and permissionCount set to 10.  The first role or
+     * equality check of a request builds the subject index and attaches it to the request header, which accounts for
+     * most of its budget; later checks of the same request reuse the index and have the same budget as the subject
+     * checks.
+     */
+    private static final Map<String, Double> BUDGETS = new LinkedHashMap<>();
+
+    static
+    {
+        BUDGETS.put("subjectPresent",
+                    512.0);
+        BUDGETS.put("subjectNotPresent",
+                    512.0);
+        BUDGETS.put("restrictPreParsed",
+                    1536.0);
+        BUDGETS.put("restrictPreParsedSameRequest",
+                    512.0);
+        BUDGETS.put("patternEquality",
+                    1536.0);
+        BUDGETS.put("patternEqualitySameRequest",
+                    512.0);
+    }
+
+    private AllocationBudget()
+    {
+        // no-op
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        final String benchmarks = ConstraintLogicBenchmark.class.getName() + "\\.(" + String.join("|",
+                                                                                               BUDGETS.keySet()) + ")$";
+        final Options options = new OptionsBuilder().include(benchmarks)
+                                                    .param("roleCount",
+                                                           "10")
+                                                    .param("permissionCount",
+                                                           "10")
+                                                    .addProfiler(GCProfiler.class)
+                                                    .build();
+        final Collection<RunResult> results = new Runner(options).run();
+
+        final List<String> exceeded = new ArrayList<>();
+        for (RunResult result : results)
+        {
+            final String benchmark = result.getParams().getBenchmark();
+            final String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            final double allocated = allocatedBytesPerOp(result);
+            final double budget = BUDGETS.get(name);
+            System.out.printf("%-20s %8.1f B/op (budget %.0f B/op)%n",
+                              name,
+                              allocated,
+                              budget);
+            if (allocated > budget)
+            {
+                exceeded.add(name);
+            }
+        }
+
+        if (!exceeded.isEmpty())
+        {
+            System.err.println("Allocation budget exceeded by " + exceeded);
+            System.exit(1);
+        }
+    }
+
+    private static double allocatedBytesPerOp(final RunResult result)
+    {
+        final Map<String, Result> secondary = result.getSecondaryResults();
+        // older versions of JMH prefix the profiler's results with a middle dot
+        final Result allocated = secondary.containsKey("gc.alloc.rate.norm") ? secondary.get("gc.alloc.rate.norm")
+                                                                             : secondary.get("·gc.alloc.rate.norm");
+        if (allocated == null)
+        {
+            throw new IllegalStateException("The GC profiler did not report gc.alloc.rate.norm for " + result.getParams().getBenchmark());
+        }
+        return allocated.getScore();
+    }
+}
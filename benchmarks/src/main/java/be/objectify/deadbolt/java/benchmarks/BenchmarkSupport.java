@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.benchmarks;
+
+import be.objectify.deadbolt.java.ConstraintLogic;
+import be.objectify.deadbolt.java.DeadboltAnalyzer;
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.DynamicResourceHandler;
+import be.objectify.deadbolt.java.cache.DefaultDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DefaultDynamicResourceHandlerCache;
+import be.objectify.deadbolt.java.cache.DefaultPatternCache;
+import be.objectify.deadbolt.java.cache.DefaultRolePermissionCache;
+import be.objectify.deadbolt.java.cache.DefaultSubjectCache;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
+import be.objectify.deadbolt.java.models.DefaultSubject;
+import be.objectify.deadbolt.java.models.Permission;
+import be.objectify.deadbolt.java.models.Subject;
+import com.typesafe.config.ConfigFactory;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * In-memory stubs shared by the benchmarks.  Everything a handler returns is created up front, so the benchmarks
+ * measure Deadbolt rather than the stubs.
+ */
+final class BenchmarkSupport
+{
+    static final CompletableFuture<Boolean> PASSED = CompletableFuture.completedFuture(true);
+
+    static final CompletableFuture<Boolean> FAILED = CompletableFuture.completedFuture(false);
+
+    private BenchmarkSupport()
+    {
+        // no-op
+    }
+
+    static ConstraintLogic constraintLogic()
+    {
+        return new ConstraintLogic(new DeadboltAnalyzer(),
+                                   new DefaultSubjectCache(ConfigFactory.parseString("deadbolt.java.cache-user = false")),
+                                   new DefaultPatternCache(),
+                                   NoOpDeadboltMetrics.INSTANCE,
+                                   new DefaultRolePermissionCache(),
+                                   new DefaultDynamicResourceHandlerCache(false),
+                                   new DefaultDynamicDecisionCache());
+    }
+
+    static Http.RequestHeader requestHeader()
+    {
+        return new Http.RequestBuilder().build();
+    }
+
+    static String roleName(final int index)
+    {
+        return "role" + index;
+    }
+
+    static String permissionValue(final int index)
+    {
+        return "resource." + index + ".edit";
+    }
+
+    /**
+     * Creates a subject holding role0..roleN-1 and the permissions resource.0.edit..resource.N-1.edit.
+     */
+    static Subject subject(final int roleCount,
+                           final int permissionCount)
+    {
+        final List<String> roles = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++)
+        {
+            roles.add(roleName(i));
+        }
+        final List<String> permissions = new ArrayList<>(permissionCount);
+        for (int i = 0; i < permissionCount; i++)
+        {
+            permissions.add(permissionValue(i));
+        }
+        return new DefaultSubject("benchmark",
+                                  roles,
+                                  permissions);
+    }
+
+    static final class StubDeadboltHandler implements DeadboltHandler
+    {
+        private final CompletableFuture<Optional<Result>> beforeAuthCheck = CompletableFuture.completedFuture(Optional.empty());
+        private final CompletableFuture<Optional<? extends Subject>> subject;
+        private final CompletableFuture<Result> authFailure = CompletableFuture.completedFuture(Results.forbidden());
+        private final CompletableFuture<Optional<DynamicResourceHandler>> dynamicResourceHandler = CompletableFuture.completedFuture(Optional.of(new StubDynamicResourceHandler()));
+        private final CompletableFuture<List<? extends Permission>> rolePermissions;
+
+        StubDeadboltHandler(final Subject subject,
+                            final List<? extends Permission> rolePermissions)
+        {
+            this.subject = CompletableFuture.completedFuture(Optional.ofNullable(subject));
+            this.rolePermissions = CompletableFuture.completedFuture(rolePermissions);
+        }
+
+        @Override
+        public long getId()
+        {
+            return 0;
+        }
+
+        @Override
+        public CompletionStage<Optional<Result>> beforeAuthCheck(final Http.RequestHeader requestHeader,
+                                                                 final Optional<String> content)
+        {
+            return beforeAuthCheck;
+        }
+
+        @Override
+        public CompletionStage<Optional<? extends Subject>> getSubject(final Http.RequestHeader requestHeader)
+        {
+            return subject;
+        }
+
+        @Override
+        public CompletionStage<Result> onAuthFailure(final Http.RequestHeader requestHeader,
+                                                     final Optional<String> content)
+        {
+            return authFailure;
+        }
+
+        @Override
+        public CompletionStage<Optional<DynamicResourceHandler>> getDynamicResourceHandler(final Http.RequestHeader requestHeader)
+        {
+            return dynamicResourceHandler;
+        }
+
+        @Override
+        public CompletionStage<List<? extends Permission>> getPermissionsForRole(final String roleName)
+        {
+            return rolePermissions;
+        }
+    }
+
+    static final class StubDynamicResourceHandler implements DynamicResourceHandler
+    {
+        @Override
+        public CompletionStage<Boolean> isAllowed(final String name,
+                                                  final Optional<String> meta,
+                                                  final DeadboltHandler deadboltHandler,
+                                                  final Http.RequestHeader requestHeader)
+        {
+            return PASSED;
+        }
+
+        @Override
+        public CompletionStage<Boolean> checkPermission(final String permissionValue,
+                                                        final Optional<String> meta,
+                                                        final DeadboltHandler deadboltHandler,
+                                                        final Http.RequestHeader requestHeader)
+        {
+            return PASSED;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.benchmarks;
+
+import be.objectify.deadbolt.java.ConstraintLogic;
+import be.objectify.deadbolt.java.ConstraintMode;
+import be.objectify.deadbolt.java.ConstraintPoint;
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.RoleGroup;
+import be.objectify.deadbolt.java.models.Permission;
+import be.objectify.deadbolt.java.models.PatternType;
+import be.objectify.deadbolt.java.utils.TriFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import play.mvc.Http;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Measures each {@link ConstraintLogic} entry point, from the subject lookup to the pass/fail decision.  The subject
+ * holds roleCount roles and permissionCount permissions, and every check is written so it has to examine all of them
+ * before it passes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintLogicBenchmark
+{
+    private static final Function<Http.RequestHeader, CompletionStage<Boolean>> PASS = rh -> BenchmarkSupport.PASSED;
+
+    private static final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<Boolean>> PRESENT = (rh, handler, content) -> BenchmarkSupport.PASSED;
+
+    private static final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<Boolean>> FAIL = (rh, handler, content) -> BenchmarkSupport.FAILED;
+
+    @Param({"1", "10", "100"})
+    public int roleCount;
+
+    @Param({"1", "10", "100"})
+    public int permissionCount;
+
+    private ConstraintLogic constraintLogic;
+
+    private DeadboltHandler handler;
+
+    private DeadboltHandler anonymousHandler;
+
+    private Http.RequestHeader requestHeader;
+
+    /**
+     * The request header as it is after a first check, i.e. carrying the subject index.
+     */
+    private Http.RequestHeader checkedRequestHeader;
+
+    private Supplier<List<String[]>> roleGroups;
+
+    private List<RoleGroup> parsedRoleGroups;
+
+    private String lastPermission;
+
+    private String lastPermissionRegex;
+
+    private String[] allPermissions;
+
+    @Setup
+    public void setUp()
+    {
+        final String lastRole = BenchmarkSupport.roleName(roleCount - 1);
+        final List<String[]> groups = Collections.singletonList(new String[]{lastRole, "!missing"});
+        final List<? extends Permission> rolePermissions = Collections.singletonList((Permission) () -> "resource\\." + (permissionCount - 1) + "\\.edit");
+
+        constraintLogic = BenchmarkSupport.constraintLogic();
+        handler = new BenchmarkSupport.StubDeadboltHandler(BenchmarkSupport.subject(roleCount,
+                                                                                    permissionCount),
+                                                           rolePermissions);
+        anonymousHandler = new BenchmarkSupport.StubDeadboltHandler(null,
+                                                                    rolePermissions);
+        requestHeader = BenchmarkSupport.requestHeader();
+        roleGroups = () -> groups;
+        parsedRoleGroups = RoleGroup.of(groups);
+        lastPermission = BenchmarkSupport.permissionValue(permissionCount - 1);
+        lastPermissionRegex = "resource\\." + (permissionCount - 1) + "\\.edit";
+        allPermissions = new String[permissionCount];
+        for (int i = 0; i < permissionCount; i++)
+        {
+            allPermissions[i] = BenchmarkSupport.permissionValue(i);
+        }
+        checkedRequestHeader = constraintLogic.<Http.RequestHeader>restrict(requestHeader,
+                                                                            handler,
+                                                                            Optional.empty(),
+                                                                            parsedRoleGroups,
+                                                                            CompletableFuture::completedFuture,
+                                                                            (rh, h, content) -> CompletableFuture.completedFuture(rh),
+                                                                            ConstraintPoint.CONTROLLER)
+                                              .toCompletableFuture()
+                                              .join();
+    }
+
+    @Benchmark
+    public Boolean subjectPresent()
+    {
+        return constraintLogic.subjectPresent(requestHeader,
+                                              handler,
+                                              Optional.empty(),
+                                              PRESENT,
+                                              FAIL,
+                                              ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean subjectNotPresent()
+    {
+        return constraintLogic.subjectNotPresent(requestHeader,
+                                                 anonymousHandler,
+                                                 Optional.empty(),
+                                                 FAIL,
+                                                 PRESENT,
+                                                 ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean restrict()
+    {
+        return constraintLogic.restrict(requestHeader,
+                                        handler,
+                                        Optional.empty(),
+                                        roleGroups,
+                                        PASS,
+                                        FAIL,
+                                        ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean restrictPreParsed()
+    {
+        return constraintLogic.restrict(requestHeader,
+                                        handler,
+                                        Optional.empty(),
+                                        parsedRoleGroups,
+                                        PASS,
+                                        FAIL,
+                                        ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    /**
+     * A later restrict check in the same request, which reuses the subject index built by the first.
+     */
+    @Benchmark
+    public Boolean restrictPreParsedSameRequest()
+    {
+        return constraintLogic.restrict(checkedRequestHeader,
+                                        handler,
+                                        Optional.empty(),
+                                        parsedRoleGroups,
+                                        PASS,
+                                        FAIL,
+                                        ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean roleBasedPermissions()
+    {
+        return constraintLogic.roleBasedPermissions(requestHeader,
+                                                    handler,
+                                                    Optional.empty(),
+                                                    "editor",
+                                                    PASS,
+                                                    FAIL,
+                                                    ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean patternEquality()
+    {
+        return pattern(lastPermission,
+                       PatternType.EQUALITY);
+    }
+
+    /**
+     * A later equality check in the same request, which reuses the subject index built by the first.
+     */
+    @Benchmark
+    public Boolean patternEqualitySameRequest()
+    {
+        return constraintLogic.pattern(checkedRequestHeader,
+                                       handler,
+                                       Optional.empty(),
+                                       lastPermission,
+                                       PatternType.EQUALITY,
+                                       Optional.empty(),
+                                       false,
+                                       PASS,
+                                       FAIL,
+                                       ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean patternRegex()
+    {
+        return pattern(lastPermissionRegex,
+                       PatternType.REGEX);
+    }
+
+    @Benchmark
+    public Boolean patternCustom()
+    {
+        return pattern(lastPermission,
+                       PatternType.CUSTOM);
+    }
+
+    @Benchmark
+    public Boolean patternEqualityAll()
+    {
+        return constraintLogic.pattern(requestHeader,
+                                       handler,
+                                       Optional.empty(),
+                                       allPermissions,
+                                       ConstraintMode.AND,
+                                       PatternType.EQUALITY,
+                                       Optional.empty(),
+                                       false,
+                                       PASS,
+                                       FAIL,
+                                       ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    @Benchmark
+    public Boolean dynamic()
+    {
+        return constraintLogic.dynamic(requestHeader,
+                                       handler,
+                                       Optional.empty(),
+                                       "benchmark",
+                                       Optional.empty(),
+                                       PASS,
+                                       FAIL,
+                                       ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+
+    private Boolean pattern(final String value,
+                            final PatternType patternType)
+    {
+        return constraintLogic.pattern(requestHeader,
+                                       handler,
+                                       Optional.empty(),
+                                       value,
+                                       patternType,
+                                       Optional.empty(),
+                                       false,
+                                       PASS,
+                                       FAIL,
+                                       ConstraintPoint.CONTROLLER)
+                              .toCompletableFuture()
+                              .join();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.benchmarks;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.composite.Constraint;
+import be.objectify.deadbolt.java.composite.ConstraintBuilders;
+import be.objectify.deadbolt.java.composite.ConstraintTree;
+import be.objectify.deadbolt.java.composite.Operator;
+import be.objectify.deadbolt.java.models.PatternType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import play.mvc.Http;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures nested {@link ConstraintTree}s.  Each level of the tree combines two leaf constraints with the next level
+ * down.  For AND every leaf passes and for OR every leaf but the deepest fails, so in both cases every constraint in
+ * the tree is evaluated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintTreeBenchmark
+{
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    @Param({"AND", "OR"})
+    public Operator operator;
+
+    private Constraint tree;
+
+    private DeadboltHandler handler;
+
+    private Http.RequestHeader requestHeader;
+
+    @Setup
+    public void setUp()
+    {
+        final ConstraintBuilders builders = new ConstraintBuilders(BenchmarkSupport.constraintLogic());
+        final boolean leavesPass = operator == Operator.AND;
+
+        Constraint current = builders.subjectPresent().build();
+        for (int i = 0; i < depth; i++)
+        {
+            current = new ConstraintTree(operator,
+                                         builders.restrict(Collections.singletonList(new String[]{leavesPass ? BenchmarkSupport.roleName(i) : "missing"}))
+                                                 .build(),
+                                         builders.pattern(leavesPass ? BenchmarkSupport.permissionValue(i) : "missing",
+                                                          PatternType.EQUALITY)
+                                                 .build(),
+                                         current);
+        }
+
+        tree = current;
+        handler = new BenchmarkSupport.StubDeadboltHandler(BenchmarkSupport.subject(depth,
+                                                                                    depth),
+                                                           Collections.emptyList());
+        requestHeader = BenchmarkSupport.requestHeader();
+    }
+
+    @Benchmark
+    public Boolean test()
+    {
+        return tree.test(requestHeader,
+                         handler)
+                   .toCompletableFuture()
+                   .join()._1;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.benchmarks;
+
+import be.objectify.deadbolt.java.DeadboltAnalyzer;
+import be.objectify.deadbolt.java.RoleGroup;
+import be.objectify.deadbolt.java.models.Subject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the {@link DeadboltAnalyzer} checks in isolation, across different numbers of roles and permissions.  Each
+ * check targets the last role or permission the subject holds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeadboltAnalyzerBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int roleCount;
+
+    @Param({"1", "10", "100"})
+    public int permissionCount;
+
+    private DeadboltAnalyzer analyzer;
+
+    private Optional<? extends Subject> subject;
+
+    private String lastRole;
+
+    private String[] roleNames;
+
+    private List<RoleGroup> roleGroups;
+
+    private Optional<String> lastPermission;
+
+    private Optional<Pattern> lastPermissionPattern;
+
+    @Setup
+    public void setUp()
+    {
+        analyzer = new DeadboltAnalyzer();
+        subject = Optional.of(BenchmarkSupport.subject(roleCount,
+                                                       permissionCount));
+        lastRole = BenchmarkSupport.roleName(roleCount - 1);
+        roleNames = new String[]{BenchmarkSupport.roleName(0), lastRole, "!missing"};
+        roleGroups = Arrays.asList(RoleGroup.of("missing"),
+                                   RoleGroup.of(roleNames));
+        lastPermission = Optional.of(BenchmarkSupport.permissionValue(permissionCount - 1));
+        lastPermissionPattern = Optional.of(Pattern.compile("resource\\." + (permissionCount - 1) + "\\.edit"));
+    }
+
+    @Benchmark
+    public boolean hasRole()
+    {
+        return analyzer.hasRole(subject,
+                                lastRole);
+    }
+
+    @Benchmark
+    public boolean hasAllRoles()
+    {
+        return analyzer.hasAllRoles(subject,
+                                    roleNames);
+    }
+
+    @Benchmark
+    public boolean checkRoles()
+    {
+        return analyzer.checkRoles(subject,
+                                   roleGroups);
+    }
+
+    @Benchmark
+    public List<String> getRoleNames()
+    {
+        return analyzer.getRoleNames(subject);
+    }
+
+    @Benchmark
+    public boolean checkPatternEquality()
+    {
+        return analyzer.checkPatternEquality(subject,
+                                             lastPermission);
+    }
+
+    @Benchmark
+    public boolean checkRegexPattern()
+    {
+        return analyzer.checkRegexPattern(subject,
+                                          lastPermissionPattern);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+import play.libs.concurrent.ClassLoaderExecutionContext;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs blocking work, such as waiting for a {@link DeadboltHandler} when deadbolt.java.blocking is true, on virtual
+ * threads if deadbolt.java.virtual-threads.enabled is true and the JDK supports them.  Otherwise, or on older JDKs, the
+ * work runs on the calling thread.  With {@link #supplyThen(Callable, Function)}, only the blocking work runs on a
+ * virtual thread, and whatever follows it goes back to Play's executor.
+ * <p>
+ * Templates are rendered synchronously, so template tags always wait on the rendering thread.  To keep those waits
+ * off Play's default dispatcher, render the template with {@link #supply(Callable)}.
+ * <p>
+ * Virtual threads are created reflectively, so Deadbolt still runs on JDKs that don't have them.  If metrics are
+ * enabled, virtual threads that pin their carrier thread are recorded with
+ * {@link DeadboltMetrics#recordPinnedThread(long)}, using JDK Flight Recorder.
+ */
+@Singleton
+public class BlockingExecution
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingExecution.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final ExecutorService executor;
+
+    private final AutoCloseable pinnedThreads;
+
+    private final ClassLoaderExecutionContext executionContext;
+
+    /**
+     * Creates an instance that runs blocking work on the calling thread.
+     */
+    public BlockingExecution()
+    {
+        this.executor = null;
+        this.pinnedThreads = null;
+        this.executionContext = null;
+    }
+
+    /**
+     * Creates an instance that doesn't know Play's executor, so work that follows blocking work runs on the thread
+     * that did the blocking work.
+     */
+    public BlockingExecution(final Config config,
+                             final DeadboltMetrics metrics,
+                             final ApplicationLifecycle lifecycle)
+    {
+        this(config,
+             metrics,
+             lifecycle,
+             null);
+    }
+
+    @Inject
+    public BlockingExecution(final Config config,
+                             final DeadboltMetrics metrics,
+                             final ApplicationLifecycle lifecycle,
+                             final ClassLoaderExecutionContext executionContext)
+    {
+        this.executionContext = executionContext;
+        final boolean enabled = config.getBoolean("deadbolt.java.virtual-threads.enabled");
+        this.executor = enabled ? virtualThreadExecutor().orElse(null)
+                                : null;
+        if (enabled && executor == null)
+        {
+            LOGGER.warn("Virtual threads are not supported by this JDK, so blocking waits will happen on the calling thread");
+        }
+        this.pinnedThreads = executor != null && metrics.enabled() ? recordPinnedThreads(metrics,
+                                                                                         config.getDuration("deadbolt.java.virtual-threads.pinned-threshold")).orElse(null)
+                                                                   : null;
+        lifecycle.addStopHook(() ->
+                              {
+                                  close();
+                                  return CompletableFuture.completedFuture(null);
+                              });
+    }
+
+    /**
+     * @return true if blocking work runs on virtual threads
+     */
+    public boolean isVirtual()
+    {
+        return executor != null;
+    }
+
+    /**
+     * Run blocking work.  If the work throws an {@link ExecutionException}, e.g. from {@link CompletableFuture#get},
+     * the returned stage is completed with its cause.
+     *
+     * @param task the work
+     * @param <T>  the result type
+     * @return a stage that completes when the work does.  If the work doesn't run on a virtual thread, the stage is
+     * already complete.
+     */
+    public <T> CompletionStage<T> supply(final Callable<T> task)
+    {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Runnable run = () ->
+        {
+            try
+            {
+                result.complete(task.call());
+            }
+            catch (ExecutionException e)
+            {
+                result.completeExceptionally(e.getCause() == null ? e
+                                                                  : e.getCause());
+            }
+            catch (Throwable t)
+            {
+                result.completeExceptionally(t);
+            }
+        };
+        if (executor == null)
+        {
+            run.run();
+        }
+        else
+        {
+            executor.execute(run);
+        }
+        return result;
+    }
+
+    /**
+     * Run blocking work, and then continue with its result.  If the work runs on a virtual thread, the continuation
+     * runs on Play's executor for the calling thread, so only the blocking work is moved to the virtual thread.
+     *
+     * @param task the work
+     * @param then the continuation
+     * @param <T>  the result type of the work
+     * @param <R>  the result type of the continuation
+     * @return a stage that completes when the continuation does
+     */
+    public <T, R> CompletionStage<R> supplyThen(final Callable<T> task,
+                                                final Function<T, CompletionStage<R>> then)
+    {
+        final CompletionStage<T> result = supply(task);
+        return executor == null || executionContext == null ? result.thenCompose(then)
+                                                             : result.thenComposeAsync(then,
+                                                                                       executionContext.current());
+    }
+
+    private void close()
+    {
+        if (pinnedThreads != null)
+        {
+            try
+            {
+                pinnedThreads.close();
+            }
+            catch (Exception e)
+            {
+                LOGGER.debug("Could not stop recording pinned virtual threads",
+                             e);
+            }
+        }
+        if (executor != null)
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task, if the JDK supports virtual threads
+     */
+    static Optional<ExecutorService> virtualThreadExecutor()
+    {
+        try
+        {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                                .invoke(null));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // not present before JDK 21, or a preview feature that isn't enabled
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stream the pinned virtual thread events of JDK Flight Recorder to the metrics.
+     *
+     * @return the stream, to close when the application stops
+     */
+    private static Optional<AutoCloseable> recordPinnedThreads(final DeadboltMetrics metrics,
+                                                               final Duration threshold)
+    {
+        try
+        {
+            final Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+            final Method getDuration = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getDuration");
+            final Object stream = streamClass.getConstructor().newInstance();
+            final Object settings = streamClass.getMethod("enable",
+                                                          String.class)
+                                               .invoke(stream,
+                                                       PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold",
+                                                             Duration.class)
+                 .invoke(settings,
+                         threshold);
+            final Consumer<Object> onPinned = event ->
+            {
+                try
+                {
+                    metrics.recordPinnedThread(((Duration) getDuration.invoke(event)).toNanos());
+                }
+                catch (ReflectiveOperationException e)
+                {
+                    LOGGER.debug("Could not read the duration of a pinned virtual thread",
+                                 e);
+                }
+            };
+            streamClass.getMethod("onEvent",
+                                  String.class,
+                                  Consumer.class)
+                       .invoke(stream,
+                               PINNED_EVENT,
+                               onPinned);
+            streamClass.getMethod("startAsync").invoke(stream);
+            return Optional.of((AutoCloseable) stream);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            LOGGER.warn("Could not record pinned virtual threads with JDK Flight Recorder",
+                        e);
+            return Optional.empty();
+        }
+    }
+}
@@ -15,20 +15,40 @@
  */
 package be.objectify.deadbolt.java;
 
+import be.objectify.deadbolt.java.cache.DefaultDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DefaultDynamicResourceHandlerCache;
+import be.objectify.deadbolt.java.cache.DefaultRolePermissionCache;
+import be.objectify.deadbolt.java.cache.DynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DynamicResourceHandlerCache;
 import be.objectify.deadbolt.java.cache.PatternCache;
+import be.objectify.deadbolt.java.cache.RolePermissionCache;
 import be.objectify.deadbolt.java.cache.SubjectCache;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.HandlerCall;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
 import be.objectify.deadbolt.java.models.PatternType;
+import be.objectify.deadbolt.java.models.Permission;
 import be.objectify.deadbolt.java.models.Subject;
 import be.objectify.deadbolt.java.utils.TriFunction;
 import play.libs.F;
+import play.libs.typedmap.TypedKey;
 import play.mvc.Http;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -40,20 +60,98 @@ import java.util.function.Supplier;
 @Singleton
 public class ConstraintLogic
 {
+    /**
+     * Whether a dynamic resource handler class overrides
+     * {@link DynamicResourceHandler#checkPermissions(List, Optional, DeadboltHandler, Http.RequestHeader)}.
+     */
+    private static final ClassValue<Boolean> BATCHES_PERMISSION_CHECKS = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(final Class<?> type)
+        {
+            try
+            {
+                return type.getMethod("checkPermissions",
+                                      List.class,
+                                      Optional.class,
+                                      DeadboltHandler.class,
+                                      Http.RequestHeader.class).getDeclaringClass() != DynamicResourceHandler.class;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Whether a handler class overrides {@link DeadboltHandler#getDynamicDecisionKey(Optional, String, Optional)}.  The
+     * default never returns a key, so for other handlers there is no point in loading the subject to look for one.
+     */
+    private static final ClassValue<Boolean> PROVIDES_DECISION_KEYS = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(final Class<?> type)
+        {
+            try
+            {
+                return type.getMethod("getDynamicDecisionKey",
+                                      Optional.class,
+                                      String.class,
+                                      Optional.class).getDeclaringClass() != DeadboltHandler.class;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        }
+    };
+
     private final DeadboltAnalyzer analyzer;
 
     private final SubjectCache subjectCache;
 
     private final PatternCache patternCache;
 
-    @Inject
+    private final DeadboltMetrics metrics;
+
+    private final RolePermissionCache rolePermissionCache;
+
+    private final DynamicResourceHandlerCache dynamicResourceHandlerCache;
+
+    private final DynamicDecisionCache dynamicDecisionCache;
+
+    private final ConcurrentMap<Long, TypedKey<SubjectIndex>> indexKeys = new ConcurrentHashMap<>();
+
     public ConstraintLogic(final DeadboltAnalyzer analyzer,
                            final SubjectCache subjectCache,
                            final PatternCache patternCache)
+    {
+        this(analyzer,
+             subjectCache,
+             patternCache,
+             NoOpDeadboltMetrics.INSTANCE,
+             new DefaultRolePermissionCache(),
+             new DefaultDynamicResourceHandlerCache(false),
+             new DefaultDynamicDecisionCache());
+    }
+
+    @Inject
+    public ConstraintLogic(final DeadboltAnalyzer analyzer,
+                           final SubjectCache subjectCache,
+                           final PatternCache patternCache,
+                           final DeadboltMetrics metrics,
+                           final RolePermissionCache rolePermissionCache,
+                           final DynamicResourceHandlerCache dynamicResourceHandlerCache,
+                           final DynamicDecisionCache dynamicDecisionCache)
     {
         this.analyzer = analyzer;
         this.subjectCache = subjectCache;
         this.patternCache = patternCache;
+        this.metrics = metrics;
+        this.rolePermissionCache = rolePermissionCache;
+        this.dynamicResourceHandlerCache = dynamicResourceHandlerCache;
+        this.dynamicDecisionCache = dynamicDecisionCache;
     }
 
     public <T> CompletionStage<T> subjectPresent(final Http.RequestHeader requestHeader,
@@ -63,6 +161,12 @@ public class ConstraintLogic
                                                  final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> notPresent,
                                                  final ConstraintPoint constraintPoint)
     {
+        final long start = startNanos();
+        final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> measuredPresent = measured(present,
+                                                                                                                            true,
+                                                                                                                            "subjectPresent",
+                                                                                                                            constraintPoint,
+                                                                                                                            start);
         return subjectTest(requestHeader,
                            deadboltHandler,
                            content,
@@ -71,11 +175,15 @@ public class ConstraintLogic
                                handler.onAuthSuccess(rh,
                                                      "subjectPresent",
                                                      constraintPoint);
-                               return present.apply(rh,
-                                                    handler,
-                                                    cnt);
+                               return measuredPresent.apply(rh,
+                                                            handler,
+                                                            cnt);
                            },
-                           notPresent);
+                           measured(notPresent,
+                                    false,
+                                    "subjectPresent",
+                                    constraintPoint,
+                                    start));
     }
 
     public <T> CompletionStage<T> subjectNotPresent(final Http.RequestHeader requestHeader,
@@ -85,18 +193,28 @@ public class ConstraintLogic
                                                     final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> notPresent,
                                                     final ConstraintPoint constraintPoint)
     {
+        final long start = startNanos();
+        final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> measuredNotPresent = measured(notPresent,
+                                                                                                                               true,
+                                                                                                                               "subjectNotPresent",
+                                                                                                                               constraintPoint,
+                                                                                                                               start);
         return subjectTest(requestHeader,
                            deadboltHandler,
                            content,
-                           present,
+                           measured(present,
+                                    false,
+                                    "subjectNotPresent",
+                                    constraintPoint,
+                                    start),
                            (rh, handler, cnt) ->
                            {
                                handler.onAuthSuccess(rh,
                                                      "subjectNotPresent",
                                                      constraintPoint);
-                               return notPresent.apply(rh,
-                                                    handler,
-                                                    cnt);
+                               return measuredNotPresent.apply(rh,
+                                                               handler,
+                                                               cnt);
                            });
     }
 
@@ -106,14 +224,14 @@ public class ConstraintLogic
                                                final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> present,
                                                final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> notPresent)
     {
-        return getSubject(requestHeader,
-                          deadboltHandler)
-                .thenCompose(maybeSubject -> maybeSubject._1.map(subject -> present.apply(maybeSubject._2,
-                                                                                       deadboltHandler,
-                                                                                       content))
-                                                         .orElseGet(() -> notPresent.apply(maybeSubject._2,
-                                                                                           deadboltHandler,
-                                                                                           content)));
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           maybeSubject -> maybeSubject._1.map(subject -> present.apply(maybeSubject._2,
+                                                                                     deadboltHandler,
+                                                                                     content))
+                                                       .orElseGet(() -> notPresent.apply(maybeSubject._2,
+                                                                                         deadboltHandler,
+                                                                                         content)));
     }
 
     public <T> CompletionStage<T> restrict(final Http.RequestHeader requestHeader,
@@ -124,29 +242,115 @@ public class ConstraintLogic
                                            final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
                                            final ConstraintPoint constraintPoint)
     {
-        return getSubject(requestHeader,
-                          deadboltHandler)
-                .thenCompose(subjectOption ->
-                                  {
-                                      boolean roleOk = false;
-                                      if (subjectOption._1.isPresent())
-                                      {
-                                          final List<String[]> roleGroups = roleGroupSupplier.get();
-                                          for (int i = 0; !roleOk && i < roleGroups.size(); i++)
-                                          {
-                                              roleOk = analyzer.checkRole(subjectOption._1,
-                                                                          roleGroups.get(i));
-                                          }
-                                      }
-                                      return roleOk ? pass(subjectOption._2,
-                                                           deadboltHandler,
-                                                           pass,
-                                                           constraintPoint,
-                                                           "restrict")
-                                                    : fail.apply(subjectOption._2,
-                                                                 deadboltHandler,
-                                                                 content);
-                                  });
+        final long start = startNanos();
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           subjectOption -> restrict(subjectOption,
+                                                     deadboltHandler,
+                                                     content,
+                                                     subjectOption._1.isPresent() ? RoleGroup.of(roleGroupSupplier.get())
+                                                                                  : Collections.emptyList(),
+                                                     measured(pass,
+                                                              "restrict",
+                                                              constraintPoint,
+                                                              start),
+                                                     measured(fail,
+                                                              false,
+                                                              "restrict",
+                                                              constraintPoint,
+                                                              start),
+                                                     constraintPoint));
+    }
+
+    /**
+     * Checks the subject against role groups that have already been parsed, e.g. when a constraint is defined once and
+     * evaluated for many requests.
+     *
+     * @param requestHeader   the HTTP request header
+     * @param deadboltHandler the Deadbolt handler
+     * @param content         the content type hint
+     * @param roleGroups      the pre-parsed role groups.  Within a group, roles are ANDed; the groups are ORed.
+     * @param pass            invoked if the subject meets the restrictions of any group
+     * @param fail            invoked if the subject is not present or does not meet the restrictions of any group
+     * @param constraintPoint the point at which the constraint is applied
+     * @return the result of pass or fail
+     */
+    public <T> CompletionStage<T> restrict(final Http.RequestHeader requestHeader,
+                                           final DeadboltHandler deadboltHandler,
+                                           final Optional<String> content,
+                                           final List<RoleGroup> roleGroups,
+                                           final Function<Http.RequestHeader, CompletionStage<T>> pass,
+                                           final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
+                                           final ConstraintPoint constraintPoint)
+    {
+        final long start = startNanos();
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           subjectOption -> restrict(subjectOption,
+                                                     deadboltHandler,
+                                                     content,
+                                                     roleGroups,
+                                                     measured(pass,
+                                                              "restrict",
+                                                              constraintPoint,
+                                                              start),
+                                                     measured(fail,
+                                                              false,
+                                                              "restrict",
+                                                              constraintPoint,
+                                                              start),
+                                                     constraintPoint));
+    }
+
+    private <T> CompletionStage<T> restrict(final F.Tuple<Optional<? extends Subject>, Http.RequestHeader> subjectOption,
+                                            final DeadboltHandler deadboltHandler,
+                                            final Optional<String> content,
+                                            final List<RoleGroup> roleGroups,
+                                            final Function<Http.RequestHeader, CompletionStage<T>> pass,
+                                            final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
+                                            final ConstraintPoint constraintPoint)
+    {
+        if (!subjectOption._1.isPresent())
+        {
+            return fail.apply(subjectOption._2,
+                              deadboltHandler,
+                              content);
+        }
+        final F.Tuple<SubjectIndex, Http.RequestHeader> index = index(subjectOption._1.get(),
+                                                                      subjectOption._2,
+                                                                      deadboltHandler);
+        return analyzer.checkRoles(index._1,
+                                   roleGroups) ? pass(index._2,
+                                                      deadboltHandler,
+                                                      pass,
+                                                      constraintPoint,
+                                                      "restrict")
+                                               : fail.apply(index._2,
+                                                            deadboltHandler,
+                                                            content);
+    }
+
+    /**
+     * Gets the index of the subject for this request.  The index is attached to the request the first time a constraint
+     * needs it, keyed by handler in the same way as the per-request subject cache, and reused by later constraints as
+     * long as the request still carries the subject it was built for.
+     */
+    private F.Tuple<SubjectIndex, Http.RequestHeader> index(final Subject subject,
+                                                            final Http.RequestHeader requestHeader,
+                                                            final DeadboltHandler deadboltHandler)
+    {
+        final TypedKey<SubjectIndex> key = indexKeys.computeIfAbsent(deadboltHandler.getId(),
+                                                                     k -> TypedKey.create("deadbolt.java.subject-index." + k));
+        final Optional<SubjectIndex> attached = requestHeader.attrs().getOptional(key);
+        if (attached.isPresent() && attached.get().subject() == subject)
+        {
+            return F.Tuple(attached.get(),
+                           requestHeader);
+        }
+        final SubjectIndex index = analyzer.index(subject);
+        return F.Tuple(index,
+                       requestHeader.addAttr(key,
+                                             index));
     }
 
     public <T> CompletionStage<T> roleBasedPermissions(final Http.RequestHeader requestHeader,
@@ -157,29 +361,74 @@ public class ConstraintLogic
                                                        final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
                                                        final ConstraintPoint constraintPoint)
     {
+        return roleBasedPermissions(requestHeader,
+                                    deadboltHandler,
+                                    content,
+                                    Collections.singletonList(roleName),
+                                    pass,
+                                    fail,
+                                    constraintPoint);
+    }
+
+    /**
+     * Passes if the subject holds a permission that matches any permission associated with any of the roles.  The
+     * permissions of every role are obtained together, via the {@link RolePermissionCache}.
+     */
+    public <T> CompletionStage<T> roleBasedPermissions(final Http.RequestHeader requestHeader,
+                                                       final DeadboltHandler deadboltHandler,
+                                                       final Optional<String> content,
+                                                       final List<String> roleNames,
+                                                       final Function<Http.RequestHeader, CompletionStage<T>> pass,
+                                                       final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
+                                                       final ConstraintPoint constraintPoint)
+    {
+        final long start = startNanos();
         return getSubject(requestHeader,
                           deadboltHandler)
-                .thenCompose(maybeSubject -> maybeSubject._1.isPresent() ? deadboltHandler.getPermissionsForRole(roleName)
-                                                                                       .thenApply(permissions -> F.Tuple(permissions.stream()
-                                                                                                                            .map(permission -> Optional.ofNullable(patternCache.apply(permission.getValue())))
-                                                                                                                            .map(maybePattern -> analyzer.checkRegexPattern(maybeSubject._1,
-                                                                                                                                                                                      maybePattern))
-                                                                                                                            .filter(matches -> matches)
-                                                                                                                            .findFirst()
-                                                                                                                            .isPresent(), maybeSubject._2))
+                .thenCompose(maybeSubject -> maybeSubject._1.isPresent() ? getPermissionsForRoles(deadboltHandler,
+                                                                                                  roleNames)
+                                                                                       .thenApply(permissions -> F.Tuple(matchesRolePermissions(maybeSubject._1,
+                                                                                                                                                permissions),
+                                                                                                                         maybeSubject._2))
 
                                                                       : CompletableFuture.completedFuture(F.Tuple(false, maybeSubject._2)))
                 .thenCompose(allowed -> allowed._1 ? pass(allowed._2,
                                                             deadboltHandler,
-                                                            pass,
+                                                            measured(pass,
+                                                                     "roleBasedPermissions",
+                                                                     constraintPoint,
+                                                                     start),
                                                             constraintPoint,
                                                             "roleBasedPermissions")
-                                                     : fail.apply(allowed._2,
-                                                                  deadboltHandler,
-                                                                  content));
+                                                     : measured(fail,
+                                                                false,
+                                                                "roleBasedPermissions",
+                                                                constraintPoint,
+                                                                start).apply(allowed._2,
+                                                                             deadboltHandler,
+                                                                             content));
 
     }
 
+    /**
+     * Checks the subject's permissions against the permissions of each role in turn.  Each role has its own matcher, so
+     * a matcher can be cached and reused whichever other roles it is checked with.
+     */
+    private boolean matchesRolePermissions(final Optional<? extends Subject> subject,
+                                           final Map<String, List<? extends Permission>> permissionsByRole)
+    {
+        for (Map.Entry<String, List<? extends Permission>> role : permissionsByRole.entrySet())
+        {
+            if (analyzer.checkRegexPatterns(subject,
+                                            patternCache.roleMatcher(role.getKey(),
+                                                                     role.getValue())))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public <T> CompletionStage<T> pattern(final Http.RequestHeader requestHeader,
                                           final DeadboltHandler deadboltHandler,
                                           final Optional<String> content,
@@ -207,6 +456,19 @@ public class ConstraintLogic
                                           final ConstraintPoint constraintPoint)
     {
         final CompletionStage<T> result;
+        final long start = startNanos();
+
+        if (values == null || values.length == 0)
+        {
+            // with nothing to check, AND mode would otherwise pass without looking at the subject
+            return measured(fail,
+                            false,
+                            "pattern - " + patternType.name().toLowerCase(Locale.ENGLISH),
+                            constraintPoint,
+                            start).apply(requestHeader,
+                                         deadboltHandler,
+                                         content);
+        }
 
         switch (patternType)
         {
@@ -215,11 +477,17 @@ public class ConstraintLogic
                                   deadboltHandler,
                                   content,
                                   values,
-                                  0,
                                   mode,
                                   invert,
-                                  pass,
-                                  fail,
+                                  measured(pass,
+                                           "pattern - equality",
+                                           constraintPoint,
+                                           start),
+                                  measured(fail,
+                                           false,
+                                           "pattern - equality",
+                                           constraintPoint,
+                                           start),
                                   constraintPoint);
                 break;
             case REGEX:
@@ -227,11 +495,17 @@ public class ConstraintLogic
                                deadboltHandler,
                                content,
                                values,
-                               0,
                                mode,
                                invert,
-                               pass,
-                               fail,
+                               measured(pass,
+                                        "pattern - regex",
+                                        constraintPoint,
+                                        start),
+                               measured(fail,
+                                        false,
+                                        "pattern - regex",
+                                        constraintPoint,
+                                        start),
                                constraintPoint);
                 break;
             case CUSTOM:
@@ -239,14 +513,38 @@ public class ConstraintLogic
                                 deadboltHandler,
                                 content,
                                 values,
-                                0,
                                 mode,
                                 meta,
                                 invert,
-                                pass,
-                                fail,
+                                measured(pass,
+                                         "pattern - custom",
+                                         constraintPoint,
+                                         start),
+                                measured(fail,
+                                         false,
+                                         "pattern - custom",
+                                         constraintPoint,
+                                         start),
                                 constraintPoint);
                 break;
+            case WILDCARD:
+                result = wildcard(requestHeader,
+                                  deadboltHandler,
+                                  content,
+                                  values,
+                                  mode,
+                                  invert,
+                                  measured(pass,
+                                           "pattern - wildcard",
+                                           constraintPoint,
+                                           start),
+                                  measured(fail,
+                                           false,
+                                           "pattern - wildcard",
+                                           constraintPoint,
+                                           start),
+                                  constraintPoint);
+                break;
             default:
                 throw new RuntimeException("Unknown pattern type: " + patternType);
         }
@@ -263,27 +561,250 @@ public class ConstraintLogic
                                           final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
                                           final ConstraintPoint constraintPoint)
     {
-        return deadboltHandler.getDynamicResourceHandler(requestHeader)
-                              .thenApply(option -> option.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE))
-                              .thenCompose(drh -> drh.isAllowed(name,
-                                                                meta,
-                                                                deadboltHandler,
-                                                                requestHeader))
-                              .thenCompose(allowed -> allowed ? pass(requestHeader,
-                                                                          deadboltHandler,
-                                                                          pass,
-                                                                          constraintPoint,
-                                                                          "dynamic")
-                                                                   : fail.apply(requestHeader,
-                                                                                deadboltHandler,
-                                                                                content));
+        final long start = startNanos();
+        return isAllowed(requestHeader,
+                         deadboltHandler,
+                         name,
+                         meta)
+                              .thenCompose(allowed -> allowed._1 ? pass(allowed._2,
+                                                                        deadboltHandler,
+                                                                        measured(pass,
+                                                                                 "dynamic",
+                                                                                 constraintPoint,
+                                                                                 start),
+                                                                        constraintPoint,
+                                                                        "dynamic")
+                                                                 : measured(fail,
+                                                                            false,
+                                                                            "dynamic",
+                                                                            constraintPoint,
+                                                                            start).apply(allowed._2,
+                                                                                         deadboltHandler,
+                                                                                         content));
+    }
+
+    /**
+     * Decides several dynamic constraints that share the same meta information, with a single call to
+     * {@link DynamicResourceHandler#isAllowed(List, Optional, DeadboltHandler, Http.RequestHeader)}.  Each constraint is
+     * reported to the handler and the metrics as if it had been decided on its own.
+     *
+     * @param requestHeader   the request header
+     * @param deadboltHandler the handler
+     * @param names           the resource names
+     * @param meta            additional information on the resources
+     * @param constraintPoint the point at which the constraints are applied
+     * @return a map from each name to true if access to the resource is allowed
+     */
+    public CompletionStage<Map<String, Boolean>> dynamicDecisions(final Http.RequestHeader requestHeader,
+                                                                  final DeadboltHandler deadboltHandler,
+                                                                  final List<String> names,
+                                                                  final Optional<String> meta,
+                                                                  final ConstraintPoint constraintPoint)
+    {
+        final long start = startNanos();
+        return isAllowed(requestHeader,
+                         deadboltHandler,
+                         names,
+                         meta)
+                .thenApply(results -> decisions(requestHeader,
+                                                deadboltHandler,
+                                                names,
+                                                results,
+                                                false,
+                                                "dynamic",
+                                                constraintPoint,
+                                                start));
+    }
+
+    /**
+     * Decides several single-value {@link PatternType#CUSTOM} patterns that share the same meta information and
+     * inversion, with a single call to
+     * {@link DynamicResourceHandler#checkPermissions(List, Optional, DeadboltHandler, Http.RequestHeader)}.  Each pattern
+     * is reported to the handler and the metrics as if it had been decided on its own.
+     *
+     * @param requestHeader   the request header
+     * @param deadboltHandler the handler
+     * @param values          the pattern values
+     * @param meta            additional information on the resources
+     * @param invert          if true, a pattern passes when its permission is not allowed
+     * @param constraintPoint the point at which the constraints are applied
+     * @return a map from each value to true if the pattern passes
+     */
+    public CompletionStage<Map<String, Boolean>> customPatternDecisions(final Http.RequestHeader requestHeader,
+                                                                        final DeadboltHandler deadboltHandler,
+                                                                        final List<String> values,
+                                                                        final Optional<String> meta,
+                                                                        final boolean invert,
+                                                                        final ConstraintPoint constraintPoint)
+    {
+        final long start = startNanos();
+        final Http.RequestHeader requestHeaderWithAttr = requestHeader.addAttr(Constants.PATTERN_INVERT,
+                                                                               invert);
+        return getDynamicResourceHandler(requestHeaderWithAttr,
+                                         deadboltHandler)
+                .thenCompose(drh -> drh._1.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE)
+                                          .checkPermissions(values,
+                                                            meta,
+                                                            deadboltHandler,
+                                                            drh._2))
+                .thenApply(results -> decisions(requestHeaderWithAttr,
+                                                deadboltHandler,
+                                                values,
+                                                results,
+                                                invert,
+                                                "pattern - custom",
+                                                constraintPoint,
+                                                start));
+    }
+
+    /**
+     * Asks the dynamic resource handler if access to a resource is allowed, unless the decision is cached.  If the
+     * handler is asked, the request header it was given, which may carry the cached dynamic resource handler, is
+     * returned with the decision.
+     */
+    private CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> isAllowed(final Http.RequestHeader requestHeader,
+                                                                            final DeadboltHandler deadboltHandler,
+                                                                            final String name,
+                                                                            final Optional<String> meta)
+    {
+        if (cachesDecisions(deadboltHandler))
+        {
+            return getSubject(requestHeader,
+                              deadboltHandler)
+                    .thenCompose(subject -> {
+                        final AtomicReference<Http.RequestHeader> decidedWith = new AtomicReference<>(subject._2);
+                        return cachedDecisions(subject,
+                                               deadboltHandler,
+                                               Collections.singletonList(name),
+                                               meta,
+                                               decidedWith)
+                                .thenApply(decided -> F.Tuple(Boolean.TRUE.equals(decided.get(name)),
+                                                              decidedWith.get()));
+                    });
+        }
+        return getDynamicResourceHandler(requestHeader,
+                                         deadboltHandler)
+                .thenCompose(drh -> drh._1.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE)
+                                          .isAllowed(name,
+                                                     meta,
+                                                     deadboltHandler,
+                                                     drh._2)
+                                          .thenApply(allowed -> F.Tuple(allowed,
+                                                                        drh._2)));
     }
 
+    /**
+     * Asks the dynamic resource handler if access to several resources is allowed, except for the decisions that are
+     * cached.
+     */
+    private CompletionStage<Map<String, Boolean>> isAllowed(final Http.RequestHeader requestHeader,
+                                                            final DeadboltHandler deadboltHandler,
+                                                            final List<String> names,
+                                                            final Optional<String> meta)
+    {
+        if (cachesDecisions(deadboltHandler))
+        {
+            return getSubject(requestHeader,
+                              deadboltHandler)
+                    .thenCompose(subject -> cachedDecisions(subject,
+                                                            deadboltHandler,
+                                                            names,
+                                                            meta,
+                                                            new AtomicReference<>(subject._2)));
+        }
+        return getDynamicResourceHandler(requestHeader,
+                                         deadboltHandler)
+                .thenCompose(drh -> drh._1.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE)
+                                          .isAllowed(names,
+                                                     meta,
+                                                     deadboltHandler,
+                                                     drh._2));
+    }
+
+    /**
+     * The decision cache is only consulted if it is enabled and the handler can provide decision keys.
+     */
+    private boolean cachesDecisions(final DeadboltHandler deadboltHandler)
+    {
+        return dynamicDecisionCache.enabled() && PROVIDES_DECISION_KEYS.get(deadboltHandler.getClass());
+    }
+
+    /**
+     * Decides the constraints through the decision cache.  If the dynamic resource handler has to be asked, the request
+     * header it was given is recorded in decidedWith.
+     */
+    private CompletionStage<Map<String, Boolean>> cachedDecisions(final F.Tuple<Optional<? extends Subject>, Http.RequestHeader> subject,
+                                                                  final DeadboltHandler deadboltHandler,
+                                                                  final List<String> names,
+                                                                  final Optional<String> meta,
+                                                                  final AtomicReference<Http.RequestHeader> decidedWith)
+    {
+        return dynamicDecisionCache.apply(deadboltHandler,
+                                          subject._1,
+                                          names,
+                                          meta,
+                                          uncached -> getDynamicResourceHandler(subject._2,
+                                                                                deadboltHandler)
+                                                  .thenCompose(drh -> {
+                                                      decidedWith.set(drh._2);
+                                                      return drh._1.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE)
+                                                                   .isAllowed(uncached,
+                                                                              meta,
+                                                                              deadboltHandler,
+                                                                              drh._2);
+                                                  }));
+    }
+
+    private Map<String, Boolean> decisions(final Http.RequestHeader requestHeader,
+                                           final DeadboltHandler deadboltHandler,
+                                           final List<String> keys,
+                                           final Map<String, Boolean> results,
+                                           final boolean invert,
+                                           final String constraintType,
+                                           final ConstraintPoint constraintPoint,
+                                           final long start)
+    {
+        if (results == null)
+        {
+            throw new NullPointerException("A batch check completed with null");
+        }
+        final long duration = metrics.enabled() ? System.nanoTime() - start
+                                                : 0L;
+        final Map<String, Boolean> decisions = new LinkedHashMap<>();
+        for (String key : keys)
+        {
+            final boolean allowed = Boolean.TRUE.equals(results.get(key));
+            final boolean passed = invert ? !allowed : allowed;
+            if (decisions.put(key,
+                              passed) == null)
+            {
+                if (metrics.enabled())
+                {
+                    metrics.recordConstraint(constraintType,
+                                             constraintPoint,
+                                             passed,
+                                             duration);
+                }
+                if (passed)
+                {
+                    deadboltHandler.onAuthSuccess(requestHeader,
+                                                  constraintType,
+                                                  constraintPoint);
+                }
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * Checks every value with the dynamic resource handler, which is fetched once.  The values are checked in order and
+     * the check stops as soon as the outcome is known; checks that complete immediately are made in a plain loop, and
+     * the loop only continues asynchronously when a check has to wait.
+     */
     private <T> CompletionStage<T> custom(final Http.RequestHeader requestHeader,
                                           final DeadboltHandler deadboltHandler,
                                           final Optional<String> content,
                                           final String[] values,
-                                          final int valueIndex,
                                           final ConstraintMode mode,
                                           final Optional<String> meta,
                                           final boolean invert,
@@ -293,174 +814,410 @@ public class ConstraintLogic
     {
         final Http.RequestHeader requestHeaderWithAttr = requestHeader.addAttr(Constants.PATTERN_INVERT,
                      invert);
-        return deadboltHandler.getDynamicResourceHandler(requestHeaderWithAttr)
-                              .thenApply(option -> option.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE))
-                              .thenCompose(resourceHandler -> resourceHandler.checkPermission(values[valueIndex],
-                                                                                              meta,
-                                                                                              deadboltHandler,
-                                                                                              requestHeaderWithAttr))
-                              .thenCompose(allowed -> (invert ? !allowed : allowed) ? (successCallAgain(mode, values, valueIndex) ? custom(requestHeaderWithAttr,
-                                                                                                                                           deadboltHandler,
-                                                                                                                                           content,
-                                                                                                                                           values,
-                                                                                                                                           valueIndex + 1,
-                                                                                                                                           mode,
-                                                                                                                                           meta,
-                                                                                                                                           invert,
-                                                                                                                                           pass,
-                                                                                                                                           fail,
-                                                                                                                                           constraintPoint)
-                                                                                                                                  : pass(requestHeaderWithAttr,
-                                                                                                                                         deadboltHandler,
-                                                                                                                                         pass,
-                                                                                                                                         constraintPoint,
-                                                                                                                                         "pattern - custom"))
-                                                                                    : (failCallAgain(mode, values, valueIndex) ? custom(requestHeaderWithAttr,
-                                                                                                                                        deadboltHandler,
-                                                                                                                                        content,
-                                                                                                                                        values,
-                                                                                                                                        valueIndex + 1,
-                                                                                                                                        mode,
-                                                                                                                                        meta,
-                                                                                                                                        invert,
-                                                                                                                                        pass,
-                                                                                                                                        fail,
-                                                                                                                                        constraintPoint)
-                                                                                                                               : fail.apply(requestHeaderWithAttr,
-                                                                                                                                            deadboltHandler,
-                                                                                                                                            content)));
+        return getDynamicResourceHandler(requestHeaderWithAttr,
+                                         deadboltHandler)
+                              .thenCompose(drh ->
+                                           {
+                                               final DynamicResourceHandler resourceHandler = drh._1.orElseGet(() -> ExceptionThrowingDynamicResourceHandler.INSTANCE);
+                                               final Http.RequestHeader rh = drh._2;
+                                               if (values.length > 1 && BATCHES_PERMISSION_CHECKS.get(resourceHandler.getClass()))
+                                               {
+                                                   return resourceHandler.checkPermissions(Arrays.asList(values),
+                                                                                           meta,
+                                                                                           deadboltHandler,
+                                                                                           rh)
+                                                                         .thenApply(results -> F.Tuple(passes(values,
+                                                                                                              results,
+                                                                                                              ConstraintMode.OR.equals(mode),
+                                                                                                              invert),
+                                                                                                       rh));
+                                               }
+                                               final CompletableFuture<Boolean> passed = new CompletableFuture<>();
+                                               checkPermissions(resourceHandler,
+                                                                deadboltHandler,
+                                                                rh,
+                                                                values,
+                                                                0,
+                                                                ConstraintMode.OR.equals(mode),
+                                                                meta,
+                                                                invert,
+                                                                passed);
+                                               return passed.thenApply(result -> F.Tuple(result,
+                                                                                         rh));
+                                           })
+                              .thenCompose(passed -> passed._1 ? pass(passed._2,
+                                                                      deadboltHandler,
+                                                                      pass,
+                                                                      constraintPoint,
+                                                                      "pattern - custom")
+                                                               : fail.apply(passed._2,
+                                                                            deadboltHandler,
+                                                                            content));
+    }
+
+    private static boolean passes(final String[] values,
+                                  final Map<String, Boolean> results,
+                                  final boolean any,
+                                  final boolean invert)
+    {
+        if (results == null)
+        {
+            throw new NullPointerException("checkPermissions completed with null");
+        }
+        for (String value : values)
+        {
+            final boolean allowed = Boolean.TRUE.equals(results.get(value));
+            if ((invert ? !allowed : allowed) == any)
+            {
+                return any;
+            }
+        }
+        // in AND mode every value passed; in OR mode none did
+        return !any;
+    }
+
+    private static void checkPermissions(final DynamicResourceHandler resourceHandler,
+                                         final DeadboltHandler deadboltHandler,
+                                         final Http.RequestHeader requestHeader,
+                                         final String[] values,
+                                         final int from,
+                                         final boolean any,
+                                         final Optional<String> meta,
+                                         final boolean invert,
+                                         final CompletableFuture<Boolean> passed)
+    {
+        try
+        {
+            for (int i = from; i < values.length; i++)
+            {
+                final CompletableFuture<Boolean> check = resourceHandler.checkPermission(values[i],
+                                                                                         meta,
+                                                                                         deadboltHandler,
+                                                                                         requestHeader)
+                                                                        .toCompletableFuture();
+                if (!check.isDone())
+                {
+                    final int next = i + 1;
+                    check.whenComplete((allowed, error) ->
+                                       {
+                                           if (error != null)
+                                           {
+                                               passed.completeExceptionally(error);
+                                           }
+                                           else if (allowed == null)
+                                           {
+                                               passed.completeExceptionally(new NullPointerException("checkPermission completed with null"));
+                                           }
+                                           else if ((invert ? !allowed : allowed) == any)
+                                           {
+                                               passed.complete(any);
+                                           }
+                                           else
+                                           {
+                                               checkPermissions(resourceHandler,
+                                                                deadboltHandler,
+                                                                requestHeader,
+                                                                values,
+                                                                next,
+                                                                any,
+                                                                meta,
+                                                                invert,
+                                                                passed);
+                                           }
+                                       });
+                    return;
+                }
+                final boolean allowed = check.join();
+                if ((invert ? !allowed : allowed) == any)
+                {
+                    passed.complete(any);
+                    return;
+                }
+            }
+            // in AND mode every value passed; in OR mode none did
+            passed.complete(!any);
+        }
+        catch (CompletionException e)
+        {
+            passed.completeExceptionally(e.getCause());
+        }
+        catch (RuntimeException e)
+        {
+            passed.completeExceptionally(e);
+        }
     }
 
+    /**
+     * Checks every value against the permission values of the subject index of the request, so the values are hashed at
+     * most once per request.  In AND mode, the first value that doesn't match fails the check; in OR mode, the first
+     * value that matches passes it.
+     */
     private <T> CompletionStage<T> equality(final Http.RequestHeader requestHeader,
                                             final DeadboltHandler deadboltHandler,
                                             final Optional<String> content,
                                             final String[] values,
-                                            final int valueIndex,
                                             final ConstraintMode mode,
                                             final boolean invert,
                                             final Function<Http.RequestHeader, CompletionStage<T>> pass,
                                             final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
                                             final ConstraintPoint constraintPoint)
     {
-        return getSubject(requestHeader,
-                          deadboltHandler)
-                .thenCompose(subject -> {
-                                      final boolean equal = subject._1.isPresent() ? analyzer.checkPatternEquality(subject._1,
-                                                                                                                Optional.ofNullable(values[valueIndex]))
-                                                                                : invert; // this is a little clumsy - it means no subject + invert is still denied
-                                      return (invert ? !equal : equal) ? (successCallAgain(mode, values, valueIndex) ? equality(subject._2,
-                                                                                                                                deadboltHandler,
-                                                                                                                                content,
-                                                                                                                                values,
-                                                                                                                                valueIndex + 1,
-                                                                                                                                mode,
-                                                                                                                                invert,
-                                                                                                                                pass,
-                                                                                                                                fail,
-                                                                                                                                constraintPoint)
-                                                                                                                     : pass(subject._2,
-                                                                                                                            deadboltHandler,
-                                                                                                                            pass,
-                                                                                                                            constraintPoint,
-                                                                                                                            "pattern - equality"))
-                                                                       : (failCallAgain(mode, values, valueIndex) ? equality(subject._2,
-                                                                                                                             deadboltHandler,
-                                                                                                                             content,
-                                                                                                                             values,
-                                                                                                                             valueIndex + 1,
-                                                                                                                             mode,
-                                                                                                                             invert,
-                                                                                                                             pass,
-                                                                                                                             fail,
-                                                                                                                             constraintPoint)
-                                                                                                                  : fail.apply(subject._2,
-                                                                                                                               deadboltHandler,
-                                                                                                                               content));
-                });
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           subject -> {
+                               final F.Tuple<SubjectIndex, Http.RequestHeader> index = subject._1.isPresent() ? index(subject._1.get(),
+                                                                                                                       subject._2,
+                                                                                                                       deadboltHandler)
+                                                                                                              : F.Tuple(null,
+                                                                                                                        subject._2);
+                               final boolean any = ConstraintMode.OR.equals(mode);
+                               boolean passed = !any;
+                               for (String value : values)
+                               {
+                                   final boolean equal = index._1 != null ? analyzer.checkPatternEquality(index._1,
+                                                                                                          value)
+                                                                          : invert; // this is a little clumsy - it means no subject + invert is still denied
+                                   if ((invert ? !equal : equal) == any)
+                                   {
+                                       passed = any;
+                                       break;
+                                   }
+                               }
+                               return passed ? pass(index._2,
+                                                    deadboltHandler,
+                                                    pass,
+                                                    constraintPoint,
+                                                    "pattern - equality")
+                                             : fail.apply(index._2,
+                                                          deadboltHandler,
+                                                          content);
+                           });
+    }
+
+    /**
+     * Checks every value, as a wildcard pattern, against a trie of the subject's permissions.  The trie is taken from
+     * the subject index of the request, so it is built at most once per request rather than once per value.  In AND
+     * mode the first value that doesn't match fails the check; in OR mode, the first value that matches passes it.
+     */
+    private <T> CompletionStage<T> wildcard(final Http.RequestHeader requestHeader,
+                                            final DeadboltHandler deadboltHandler,
+                                            final Optional<String> content,
+                                            final String[] values,
+                                            final ConstraintMode mode,
+                                            final boolean invert,
+                                            final Function<Http.RequestHeader, CompletionStage<T>> pass,
+                                            final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
+                                            final ConstraintPoint constraintPoint)
+    {
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           subject -> {
+                               final F.Tuple<SubjectIndex, Http.RequestHeader> index = subject._1.isPresent() ? index(subject._1.get(),
+                                                                                                                       subject._2,
+                                                                                                                       deadboltHandler)
+                                                                                                              : F.Tuple(null,
+                                                                                                                        subject._2);
+                               final boolean any = ConstraintMode.OR.equals(mode);
+                               boolean passed = !any;
+                               for (String value : values)
+                               {
+                                   final boolean matched = index._1 != null ? analyzer.checkWildcardPattern(index._1,
+                                                                                                            value)
+                                                                            : invert; // this is a little clumsy - it means no subject + invert is still denied
+                                   if ((invert ? !matched : matched) == any)
+                                   {
+                                       passed = any;
+                                       break;
+                                   }
+                               }
+                               return passed ? pass(index._2,
+                                                    deadboltHandler,
+                                                    pass,
+                                                    constraintPoint,
+                                                    "pattern - wildcard")
+                                             : fail.apply(index._2,
+                                                          deadboltHandler,
+                                                          content);
+                           });
     }
 
     protected CompletionStage<F.Tuple<Optional<? extends Subject>, Http.RequestHeader>> getSubject(final Http.RequestHeader requestHeader,
                                                                                                    final DeadboltHandler deadboltHandler)
     {
-        return subjectCache.apply(deadboltHandler,
-                                  requestHeader);
+        if (!metrics.enabled())
+        {
+            return subjectCache.apply(deadboltHandler,
+                                      requestHeader);
+        }
+        final long start = System.nanoTime();
+        return metrics.timeHandlerCall(HandlerCall.GET_SUBJECT,
+                                       start,
+                                       subjectCache.apply(deadboltHandler,
+                                                          requestHeader));
+    }
+
+    private CompletionStage<F.Tuple<Optional<DynamicResourceHandler>, Http.RequestHeader>> getDynamicResourceHandler(final Http.RequestHeader requestHeader,
+                                                                                                                     final DeadboltHandler deadboltHandler)
+    {
+        if (!metrics.enabled())
+        {
+            return dynamicResourceHandlerCache.apply(deadboltHandler,
+                                                     requestHeader);
+        }
+        final long start = System.nanoTime();
+        return metrics.timeHandlerCall(HandlerCall.GET_DYNAMIC_RESOURCE_HANDLER,
+                                       start,
+                                       dynamicResourceHandlerCache.apply(deadboltHandler,
+                                                                         requestHeader));
+    }
+
+    private CompletionStage<Map<String, List<? extends Permission>>> getPermissionsForRoles(final DeadboltHandler deadboltHandler,
+                                                                                           final List<String> roleNames)
+    {
+        if (!metrics.enabled())
+        {
+            return rolePermissionCache.apply(deadboltHandler,
+                                             roleNames);
+        }
+        final long start = System.nanoTime();
+        return metrics.timeHandlerCall(HandlerCall.GET_PERMISSIONS_FOR_ROLE,
+                                       start,
+                                       rolePermissionCache.apply(deadboltHandler,
+                                                                 roleNames));
     }
 
     /**
-     * Checks access to the resource based on the regex
-     *
-     * @param requestHeader             the HTTP request header
-     * @param deadboltHandler the Deadbolt handler
-     * @param invert          if true, invert the application of the constraint
-     * @return the necessary result
+     * Checks every value, as a regular expression, against the subject's permissions.  The subject is fetched once, and
+     * in AND mode the first value that doesn't match fails the check; in OR mode, the first value that matches passes it.
      */
     private <T> CompletionStage<T> regex(final Http.RequestHeader requestHeader,
                                          final DeadboltHandler deadboltHandler,
                                          final Optional<String> content,
                                          final String[] values,
-                                         final int valueIndex,
                                          final ConstraintMode mode,
                                          final boolean invert,
                                          final Function<Http.RequestHeader, CompletionStage<T>> pass,
                                          final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> fail,
                                          final ConstraintPoint constraintPoint)
     {
-        return CompletableFuture.completedFuture(patternCache.apply(values[valueIndex]))
-                                .thenCombine(getSubject(requestHeader,
-                                                             deadboltHandler),
-                                             (patternValue, subject) ->
-                                                     F.Tuple(subject._1.isPresent() ? analyzer.checkRegexPattern(subject._1,
-                                                                                                      Optional.ofNullable(patternValue))
-                                                                         : invert, subject._2)) // this is a little clumsy - it means no subject + invert is still denied
-
-                                .thenCompose(hasPassed -> (invert ? !hasPassed._1 : hasPassed._1) ? (successCallAgain(mode, values, valueIndex) ? regex(hasPassed._2,
-                                                                                                                                                  deadboltHandler,
-                                                                                                                                                  content,
-                                                                                                                                                  values,
-                                                                                                                                                  valueIndex + 1,
-                                                                                                                                                  mode,
-                                                                                                                                                  invert,
-                                                                                                                                                  pass,
-                                                                                                                                                  fail,
-                                                                                                                                                  constraintPoint)
-                                                                                                                                          : pass(hasPassed._2,
-                                                                                                                                                 deadboltHandler,
-                                                                                                                                                 pass,
-                                                                                                                                                 constraintPoint,
-                                                                                                                                                 "pattern - regex"))
-                                                                                            : (failCallAgain(mode, values, valueIndex) ? regex(hasPassed._2,
-                                                                                                                                               deadboltHandler,
-                                                                                                                                               content,
-                                                                                                                                               values,
-                                                                                                                                               valueIndex + 1,
-                                                                                                                                               mode,
-                                                                                                                                               invert,
-                                                                                                                                               pass,
-                                                                                                                                               fail,
-                                                                                                                                               constraintPoint)
-                                                                                                                                       : fail.apply(hasPassed._2,
-                                                                                                                                                    deadboltHandler,
-                                                                                                                                                    content)));
-    }
-
-    private static boolean successCallAgain(final ConstraintMode mode, final String values[], final int valueIndex) {
-        if(mode == null || ConstraintMode.AND.equals(mode)) { // null check because AND is the default mode
-            if(values.length > (valueIndex + 1)) {
-                // there is at least another check left - that one has to pass too in AND mode
-                return true;
+        return withSubject(requestHeader,
+                           deadboltHandler,
+                           subject -> {
+                               final boolean any = ConstraintMode.OR.equals(mode);
+                               boolean passed = !any;
+                               if (any && !invert && values.length > 1)
+                               {
+                                   // any value matching any permission passes, so all the values can be matched in one scan
+                                   passed = analyzer.checkRegexPatterns(subject._1,
+                                                                        patternCache.matcher(Arrays.asList(values)));
+                               }
+                               else
+                               {
+                                   for (String value : values)
+                                   {
+                                       final boolean matched = subject._1.isPresent() ? analyzer.checkRegexPattern(subject._1,
+                                                                                                                   Optional.ofNullable(patternCache.apply(value)))
+                                                                                      : invert; // this is a little clumsy - it means no subject + invert is still denied
+                                       if ((invert ? !matched : matched) == any)
+                                       {
+                                           passed = any;
+                                           break;
+                                       }
+                                   }
+                               }
+                               return passed ? pass(subject._2,
+                                                    deadboltHandler,
+                                                    pass,
+                                                    constraintPoint,
+                                                    "pattern - regex")
+                                             : fail.apply(subject._2,
+                                                          deadboltHandler,
+                                                          content);
+                           });
+    }
+
+    /**
+     * Applies a function to the subject.  When the subject is already available, which is usually the case once it has
+     * been cached, the function is applied straight away and its stage is returned as it is, rather than composing a
+     * new stage onto the subject's.  Either way, an exception thrown by the function completes the result exceptionally.
+     */
+    private <T> CompletionStage<T> withSubject(final Http.RequestHeader requestHeader,
+                                               final DeadboltHandler deadboltHandler,
+                                               final Function<F.Tuple<Optional<? extends Subject>, Http.RequestHeader>, CompletionStage<T>> fn)
+    {
+        final CompletionStage<F.Tuple<Optional<? extends Subject>, Http.RequestHeader>> subject = getSubject(requestHeader,
+                                                                                                            deadboltHandler);
+        // stages such as minimalCompletionStage() don't support isDone, so check a CompletableFuture view of the stage
+        final CompletableFuture<F.Tuple<Optional<? extends Subject>, Http.RequestHeader>> future = subject.toCompletableFuture();
+        if (future.isDone() && !future.isCompletedExceptionally())
+        {
+            try
+            {
+                return fn.apply(future.join());
+            }
+            catch (RuntimeException e)
+            {
+                final CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
             }
         }
-        return false;
+        return future.thenCompose(fn);
     }
 
-    private static boolean failCallAgain(final ConstraintMode mode, final String values[], final int valueIndex) {
-        if(ConstraintMode.OR.equals(mode)) {
-            if(values.length > (valueIndex + 1)) {
-                // there is at least another check left - give that one the chance to pass
-                return true;
-            }
+    private long startNanos()
+    {
+        return metrics.enabled() ? System.nanoTime()
+                                 : 0L;
+    }
+
+    /**
+     * Wraps a pass callback so the decision is recorded before the callback is invoked.  If metrics are disabled, the
+     * callback is returned unchanged.
+     */
+    private <T> Function<Http.RequestHeader, CompletionStage<T>> measured(final Function<Http.RequestHeader, CompletionStage<T>> pass,
+                                                                          final String constraintType,
+                                                                          final ConstraintPoint constraintPoint,
+                                                                          final long start)
+    {
+        if (!metrics.enabled())
+        {
+            return pass;
         }
-        return false;
+        return requestHeader ->
+        {
+            metrics.recordConstraint(constraintType,
+                                     constraintPoint,
+                                     true,
+                                     System.nanoTime() - start);
+            return pass.apply(requestHeader);
+        };
+    }
+
+    /**
+     * Wraps a pass or fail callback so the decision is recorded before the callback is invoked.  If metrics are
+     * disabled, the callback is returned unchanged.
+     */
+    private <T> TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> measured(final TriFunction<Http.RequestHeader, DeadboltHandler, Optional<String>, CompletionStage<T>> callback,
+                                                                                                               final boolean passed,
+                                                                                                               final String constraintType,
+                                                                                                               final ConstraintPoint constraintPoint,
+                                                                                                               final long start)
+    {
+        if (!metrics.enabled())
+        {
+            return callback;
+        }
+        return (requestHeader, handler, content) ->
+        {
+            metrics.recordConstraint(constraintType,
+                                     constraintPoint,
+                                     passed,
+                                     System.nanoTime() - start);
+            return callback.apply(requestHeader,
+                                  handler,
+                                  content);
+        };
     }
 
     private <T> CompletionStage<T> pass(final Http.RequestHeader requestHeader,
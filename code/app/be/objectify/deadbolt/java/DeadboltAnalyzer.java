@@ -21,10 +21,13 @@ import be.objectify.deadbolt.java.models.Subject;
 
 import javax.inject.Singleton;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -51,6 +54,79 @@ public class DeadboltAnalyzer
                            roleNames);
     }
 
+    /**
+     * Checks if the subject meets the requirements of the role group.
+     *
+     * @param subjectOption an option for the subject
+     * @param roleGroup     the pre-parsed role group
+     * @return true if the subject meets the restrictions (so access will be allowed), otherwise false
+     */
+    public boolean checkRole(final Optional<? extends Subject> subjectOption,
+                             final RoleGroup roleGroup)
+    {
+        return roleGroup.test(heldRoles(subjectOption));
+    }
+
+    /**
+     * Checks if the subject meets the requirements of at least one of the role groups.  In other words, this gives
+     * OR support between groups, while roles within a group are ANDed.  The subject's roles are only resolved once,
+     * regardless of the number of groups.
+     *
+     * @param subjectOption an option for the subject
+     * @param roleGroups    the pre-parsed role groups
+     * @return true if the subject meets the restrictions of any group, otherwise false
+     */
+    public boolean checkRoles(final Optional<? extends Subject> subjectOption,
+                              final List<RoleGroup> roleGroups)
+    {
+        return checkRoles(heldRoles(subjectOption),
+                          roleGroups);
+    }
+
+    /**
+     * Checks if the indexed subject meets the requirements of at least one of the role groups.  The role names are taken
+     * from the index, so checks that share the index don't resolve them again.
+     *
+     * @param index      the index of the subject
+     * @param roleGroups the pre-parsed role groups
+     * @return true if the subject meets the restrictions of any group, otherwise false
+     */
+    public boolean checkRoles(final SubjectIndex index,
+                              final List<RoleGroup> roleGroups)
+    {
+        return checkRoles(index.roleNames(),
+                          roleGroups);
+    }
+
+    private static boolean checkRoles(final Set<String> heldRoles,
+                                      final List<RoleGroup> roleGroups)
+    {
+        boolean roleOk = false;
+        for (int i = 0; !roleOk && i < roleGroups.size(); i++)
+        {
+            roleOk = roleGroups.get(i).test(heldRoles);
+        }
+        return roleOk;
+    }
+
+    /**
+     * Creates an index for the subject.  Subjects can outlive a request, e.g. in the expiring subject cache, and their
+     * roles and permissions may change in between, so an index should not be kept beyond the request it was made for.
+     *
+     * @param subject the subject
+     * @return a new index for the subject
+     */
+    public SubjectIndex index(final Subject subject)
+    {
+        return new SubjectIndex(subject);
+    }
+
+    private Set<String> heldRoles(final Optional<? extends Subject> subjectOption)
+    {
+        return subjectOption.isPresent() ? index(subjectOption.get()).roleNames()
+                                         : Collections.emptySet();
+    }
+
 
     /**
      * Gets the role name of each role held.
@@ -86,7 +162,21 @@ public class DeadboltAnalyzer
     public boolean hasRole(final Optional<? extends Subject> subjectOption,
                            final String roleName)
     {
-        return getRoleNames(subjectOption).contains(roleName);
+        final List<? extends Role> roles = subjectOption.isPresent() ? subjectOption.get().getRoles()
+                                                                     : null;
+        if (roles != null)
+        {
+            // a single lookup doesn't pay for building an index
+            for (Role role : roles)
+            {
+                if (role != null && Objects.equals(roleName,
+                                                   role.getName()))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -100,26 +190,7 @@ public class DeadboltAnalyzer
     public boolean hasAllRoles(final Optional<? extends Subject> subjectOption,
                                final String[] roleNames)
     {
-        final List<String> heldRoles = getRoleNames(subjectOption);
-
-        boolean roleCheckResult = roleNames != null && roleNames.length > 0;
-        for (int i = 0; roleCheckResult && i < roleNames.length; i++)
-        {
-            boolean invert = false;
-            String roleName = roleNames[i];
-            if (roleName.startsWith("!"))
-            {
-                invert = true;
-                roleName = roleName.substring(1);
-            }
-            roleCheckResult = heldRoles.contains(roleName);
-
-            if (invert)
-            {
-                roleCheckResult = !roleCheckResult;
-            }
-        }
-        return roleCheckResult;
+        return RoleGroup.of(roleNames).test(heldRoles(subjectOption));
     }
 
     /**
@@ -138,11 +209,13 @@ public class DeadboltAnalyzer
                                                                        final List<? extends Permission> permissions = subject.getPermissions();
                                                                        if (permissions != null)
                                                                        {
+                                                                           // one matcher is reset for each permission instead of creating a matcher per permission
+                                                                           final Matcher matcher = pattern.matcher("");
                                                                            for (Iterator<? extends Permission> iterator = permissions.iterator(); !roleOk[0] && iterator
                                                                                    .hasNext(); )
                                                                            {
                                                                                final Permission permission = iterator.next();
-                                                                               roleOk[0] = pattern.matcher(permission.getValue()).matches();
+                                                                               roleOk[0] = matcher.reset(permission.getValue()).matches();
                                                                            }
                                                                        }
                                                                    }));
@@ -150,6 +223,20 @@ public class DeadboltAnalyzer
         return roleOk[0];
     }
 
+    /**
+     * Check a set of patterns for a match against the {@link Permission}s of the user.  Each permission is scanned
+     * once, however many patterns there are.
+     *
+     * @param subjectOption an option for the subject
+     * @param matcher       the combined patterns
+     * @return true iff at least one of the patterns matches at least one of the subject's permissions
+     */
+    public boolean checkRegexPatterns(final Optional<? extends Subject> subjectOption,
+                                      final PermissionMatcher matcher)
+    {
+        return subjectOption.isPresent() && matcher.matchesAny(subjectOption.get().getPermissions());
+    }
+
     /**
      * Check the pattern for equality against the {@link Permission}s of the user.
      *
@@ -160,21 +247,82 @@ public class DeadboltAnalyzer
     public boolean checkPatternEquality(final Optional<? extends Subject> subjectOption,
                                         final Optional<String> patternValueOption)
     {
-        final boolean[] roleOk = {false};
-        subjectOption.ifPresent(subject -> patternValueOption.ifPresent(patternValue ->
-                                                                        {
-                                                                            final List<? extends Permission> permissions = subject.getPermissions();
-                                                                            if (permissions != null)
-                                                                            {
-                                                                                for (Iterator<? extends Permission> iterator = permissions.iterator(); !roleOk[0] && iterator
-                                                                                        .hasNext(); )
-                                                                                {
-                                                                                    final Permission permission = iterator.next();
-                                                                                    roleOk[0] = patternValue.equals(permission.getValue());
-                                                                                }
-                                                                            }
-                                                                        }));
+        final List<? extends Permission> permissions = subjectOption.isPresent() && patternValueOption.isPresent() ? subjectOption.get().getPermissions()
+                                                                                                                   : null;
+        if (permissions != null)
+        {
+            // a single lookup doesn't pay for building an index
+            for (Permission permission : permissions)
+            {
+                if (permission != null && patternValueOption.get().equals(permission.getValue()))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        return roleOk[0];
+    /**
+     * Check the pattern for equality against the {@link Permission}s of the indexed subject.  The permission values are
+     * hashed the first time the index is asked for them, so further values checked against the same index are
+     * constant-time lookups.
+     *
+     * @param index        the index of the subject
+     * @param patternValue the pattern value
+     * @return true iff the pattern is equal to at least one of the subject's permissions
+     */
+    public boolean checkPatternEquality(final SubjectIndex index,
+                                        final String patternValue)
+    {
+        return patternValue != null && index.permissionValues().contains(patternValue);
+    }
+
+    /**
+     * Check a wildcard pattern against the {@link Permission}s of the user.  The permissions are built into a trie for
+     * this call only; to check several patterns against the same subject, use
+     * {@link #checkWildcardPattern(SubjectIndex, String)} with a shared index.
+     *
+     * @param subjectOption      an option for the subject
+     * @param patternValueOption an option for the wildcard pattern
+     * @return true iff the pattern matches at least one of the subject's permissions
+     * @see PermissionTrie
+     */
+    public boolean checkWildcardPattern(final Optional<? extends Subject> subjectOption,
+                                        final Optional<String> patternValueOption)
+    {
+        return subjectOption.isPresent()
+               && patternValueOption.isPresent()
+               && checkWildcardPattern(index(subjectOption.get()),
+                                       patternValueOption.get());
+    }
+
+    /**
+     * Check a wildcard pattern against the {@link Permission}s of the indexed subject.  The trie is built the first time
+     * the index is asked for it, so further patterns checked against the same index cost only the number of segments in
+     * the pattern, not the number of permissions.
+     *
+     * @param index        the index of the subject
+     * @param patternValue the wildcard pattern
+     * @return true iff the pattern matches at least one of the subject's permissions
+     * @see PermissionTrie
+     */
+    public boolean checkWildcardPattern(final SubjectIndex index,
+                                        final String patternValue)
+    {
+        return patternValue != null && index.permissionTrie().matches(patternValue);
+    }
+
+    /**
+     * Gets the value of each permission held.  The set is built for this call only; checks that look up several values
+     * should share a {@link SubjectIndex} instead.
+     *
+     * @param subjectOption an option for the subject
+     * @return a non-null, unmodifiable set of permission values
+     */
+    public Set<String> getPermissionValues(final Optional<? extends Subject> subjectOption)
+    {
+        return subjectOption.isPresent() ? index(subjectOption.get()).permissionValues()
+                                         : Collections.emptySet();
     }
 }
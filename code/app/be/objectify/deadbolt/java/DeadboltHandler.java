@@ -20,8 +20,11 @@ import be.objectify.deadbolt.java.models.Subject;
 import play.mvc.Http;
 import play.mvc.Result;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -63,6 +66,41 @@ public interface DeadboltHandler
      */
     CompletionStage<Optional<? extends Subject>> getSubject(Http.RequestHeader requestHeader);
 
+    /**
+     * Gets a key that identifies the current {@link Subject} across requests, e.g. a session id or a hash of an
+     * authentication token.  If a key is present and cross-request subject caching is enabled with
+     * deadbolt.java.subject-cache.enabled, the subject returned by {@link #getSubject(Http.RequestHeader)} is cached
+     * against the key and shared by subsequent requests.  The key must change when the subject changes, e.g. on login.
+     * Defaults to an empty key, which disables cross-request caching for this handler.
+     *
+     * @param requestHeader the HTTP request header
+     * @return a key for the current subject, if one can be determined without loading the subject
+     */
+    default Optional<String> getSubjectKey(final Http.RequestHeader requestHeader)
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * Gets a key for the decision of a dynamic constraint, that identifies everything the decision depends on besides
+     * the subject and the constraint name, e.g. the meta information or the part of it that matters.  If a key is present
+     * and cross-request decision caching is enabled with deadbolt.java.dynamic-decision-cache.enabled, the decision made
+     * by the {@link DynamicResourceHandler} is cached against the subject, the name and the key, and shared by
+     * subsequent requests.  Defaults to an empty key, which disables cross-request caching for this handler; a handler
+     * that doesn't override this method has its dynamic constraints decided without loading the subject.
+     *
+     * @param subjectIdentifier the identifier of the current subject, if there is one
+     * @param name              the name of the constraint
+     * @param meta              the meta information of the constraint
+     * @return a key for the decision, if it can be cached
+     */
+    default Optional<String> getDynamicDecisionKey(final Optional<String> subjectIdentifier,
+                                                   final String name,
+                                                   final Optional<String> meta)
+    {
+        return Optional.empty();
+    }
+
     /**
      * Invoked when an access failure is detected on <i>controllerClassName</i>.
      *
@@ -115,4 +153,30 @@ public interface DeadboltHandler
     {
         return CompletableFuture.completedFuture(Collections.emptyList());
     }
+
+    /**
+     * Get the permissions associated with several roles.  This is used when the permissions of more than one role are
+     * needed at once, so a handler that loads them from a remote store can override it to load every role in one round
+     * trip.  By default, {@link #getPermissionsForRole(String)} is called for each role.
+     *
+     * @param roleNames the roles the permissions are associated with
+     * @return a non-null map containing the non-null list of permissions associated with each role
+     */
+    default CompletionStage<Map<String, List<? extends Permission>>> getPermissionsForRoles(final Collection<String> roleNames)
+    {
+        final Map<String, CompletableFuture<List<? extends Permission>>> futures = new LinkedHashMap<>();
+        for (String roleName : roleNames)
+        {
+            futures.computeIfAbsent(roleName,
+                                    name -> getPermissionsForRole(name).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                                .thenApply(ignored ->
+                                           {
+                                               final Map<String, List<? extends Permission>> permissions = new LinkedHashMap<>();
+                                               futures.forEach((roleName, future) -> permissions.put(roleName,
+                                                                                                    future.join()));
+                                               return permissions;
+                                           });
+    }
 }
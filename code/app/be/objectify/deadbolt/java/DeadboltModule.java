@@ -17,14 +17,26 @@ package be.objectify.deadbolt.java;
 
 import be.objectify.deadbolt.java.cache.CompositeCache;
 import be.objectify.deadbolt.java.cache.DefaultCompositeCache;
+import be.objectify.deadbolt.java.cache.DefaultDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DefaultDynamicResourceHandlerCache;
 import be.objectify.deadbolt.java.cache.DefaultPatternCache;
+import be.objectify.deadbolt.java.cache.DefaultRolePermissionCache;
 import be.objectify.deadbolt.java.cache.DefaultSubjectCache;
 import be.objectify.deadbolt.java.cache.DefaultBeforeAuthCheckCache;
+import be.objectify.deadbolt.java.cache.DynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DynamicResourceHandlerCache;
+import be.objectify.deadbolt.java.cache.ExpiringDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.ExpiringRolePermissionCache;
+import be.objectify.deadbolt.java.cache.ExpiringSubjectCache;
 import be.objectify.deadbolt.java.cache.PatternCache;
+import be.objectify.deadbolt.java.cache.RolePermissionCache;
 import be.objectify.deadbolt.java.cache.SubjectCache;
 import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
 import be.objectify.deadbolt.java.composite.ConstraintBuilders;
 import be.objectify.deadbolt.java.filters.FilterConstraints;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.SimpleDeadboltMetrics;
 import com.typesafe.config.Config;
 import play.Environment;
 import play.inject.Binding;
@@ -43,16 +55,21 @@ public class DeadboltModule extends Module
     public List<Binding<?>> bindings(final Environment environment,
                                      final Config config)
     {
-        return Arrays.asList(subjectCache(),
+        return Arrays.asList(subjectCache(config),
                    beforeAuthCheckCache(),
+                   dynamicResourceHandlerCache(),
+                   dynamicDecisionCache(config),
                    patternCache(),
+                   rolePermissionCache(config),
                    analyzer(),
                    viewSupport(),
                    templateFailureListenerProvider(),
                    constraintLogic(),
                    compositeCache(),
                    constraintBuilders(),
-                   filterConstraints());
+                   filterConstraints(),
+                   metrics(config),
+                   blockingExecution());
     }
 
     /**
@@ -105,6 +122,19 @@ public class DeadboltModule extends Module
         return bindClass(PatternCache.class).to(DefaultPatternCache.class).in(Singleton.class);
     }
 
+    /**
+     * Create a binding for {@link RolePermissionCache}.  If deadbolt.java.role-permission-cache.enabled is true, the
+     * permissions of roles are cached across requests.
+     *
+     * @param config the configuration
+     * @return the binding
+     */
+    public Binding<RolePermissionCache> rolePermissionCache(final Config config)
+    {
+        return config.getBoolean("deadbolt.java.role-permission-cache.enabled") ? bindClass(RolePermissionCache.class).to(ExpiringRolePermissionCache.class).in(Singleton.class)
+                                                                                 : bindClass(RolePermissionCache.class).to(DefaultRolePermissionCache.class).in(Singleton.class);
+    }
+
     /**
      * Create a binding for {@link CompositeCache}.
      *
@@ -125,6 +155,19 @@ public class DeadboltModule extends Module
         return bindClass(SubjectCache.class).to(DefaultSubjectCache.class).in(Singleton.class);
     }
 
+    /**
+     * Create a binding for {@link SubjectCache}.  If deadbolt.java.subject-cache.enabled is true, subjects are cached
+     * across requests.
+     *
+     * @param config the configuration
+     * @return the binding
+     */
+    public Binding<SubjectCache> subjectCache(final Config config)
+    {
+        return config.getBoolean("deadbolt.java.subject-cache.enabled") ? bindClass(SubjectCache.class).to(ExpiringSubjectCache.class).in(Singleton.class)
+                                                                         : subjectCache();
+    }
+
     /**
      * Create a binding for {@link BeforeAuthCheckCache}.
      *
@@ -135,6 +178,29 @@ public class DeadboltModule extends Module
         return bindClass(BeforeAuthCheckCache.class).to(DefaultBeforeAuthCheckCache.class).in(Singleton.class);
     }
 
+    /**
+     * Create a binding for {@link DynamicResourceHandlerCache}.
+     *
+     * @return the binding
+     */
+    public Binding<DynamicResourceHandlerCache> dynamicResourceHandlerCache()
+    {
+        return bindClass(DynamicResourceHandlerCache.class).to(DefaultDynamicResourceHandlerCache.class).in(Singleton.class);
+    }
+
+    /**
+     * Create a binding for {@link DynamicDecisionCache}.  If deadbolt.java.dynamic-decision-cache.enabled is true, the
+     * decisions of dynamic constraints are cached across requests.
+     *
+     * @param config the configuration
+     * @return the binding
+     */
+    public Binding<DynamicDecisionCache> dynamicDecisionCache(final Config config)
+    {
+        return config.getBoolean("deadbolt.java.dynamic-decision-cache.enabled") ? bindClass(DynamicDecisionCache.class).to(ExpiringDynamicDecisionCache.class).in(Singleton.class)
+                                                                                  : bindClass(DynamicDecisionCache.class).to(DefaultDynamicDecisionCache.class).in(Singleton.class);
+    }
+
     /**
      * Create a binding for {@link ConstraintLogic}.
      *
@@ -145,6 +211,29 @@ public class DeadboltModule extends Module
         return bindClass(ConstraintLogic.class).toSelf().in(Singleton.class);
     }
 
+    /**
+     * Create a binding for {@link DeadboltMetrics}.  If deadbolt.java.metrics.enabled is true, constraint evaluations are
+     * recorded by {@link SimpleDeadboltMetrics}; otherwise nothing is recorded.
+     *
+     * @param config the configuration
+     * @return the binding
+     */
+    public Binding<DeadboltMetrics> metrics(final Config config)
+    {
+        return config.getBoolean("deadbolt.java.metrics.enabled") ? bindClass(DeadboltMetrics.class).to(SimpleDeadboltMetrics.class).in(Singleton.class)
+                                                                   : bindClass(DeadboltMetrics.class).to(NoOpDeadboltMetrics.class).in(Singleton.class);
+    }
+
+    /**
+     * Create a binding for {@link BlockingExecution}.
+     *
+     * @return the binding
+     */
+    public Binding<BlockingExecution> blockingExecution()
+    {
+        return bindClass(BlockingExecution.class).toSelf().in(Singleton.class);
+    }
+
     /**
      * Create a binding for {@link FilterConstraints}.
      *
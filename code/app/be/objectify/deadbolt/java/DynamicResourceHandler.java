@@ -17,7 +17,11 @@ package be.objectify.deadbolt.java;
 
 import play.mvc.Http;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -84,4 +88,73 @@ public interface DynamicResourceHandler
                                              Optional<String> meta,
                                              DeadboltHandler deadboltHandler,
                                              Http.RequestHeader requestHeader);
-}
\ No newline at end of file
+
+    /**
+     * Check the access of several named resources at once.  Override this to answer every check in one round trip to a
+     * policy backend; by default, {@link #isAllowed(String, Optional, DeadboltHandler, Http.RequestHeader)} is called
+     * for each name.
+     *
+     * @param names           the resource names
+     * @param meta            additional information on the resources
+     * @param deadboltHandler the current {@link DeadboltHandler}
+     * @param requestHeader   the current request header
+     * @return a map from each name to true if access to the resource is allowed.  A missing name is not allowed.
+     */
+    default CompletionStage<Map<String, Boolean>> isAllowed(final List<String> names,
+                                                            final Optional<String> meta,
+                                                            final DeadboltHandler deadboltHandler,
+                                                            final Http.RequestHeader requestHeader)
+    {
+        final Map<String, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+        for (String name : names)
+        {
+            checks.computeIfAbsent(name,
+                                   key -> isAllowed(key,
+                                                    meta,
+                                                    deadboltHandler,
+                                                    requestHeader).toCompletableFuture());
+        }
+        return collect(checks);
+    }
+
+    /**
+     * Invoked when several custom patterns need checking.  Override this to answer every check in one round trip to a
+     * policy backend; by default, {@link #checkPermission(String, Optional, DeadboltHandler, Http.RequestHeader)} is
+     * called for each value.  When this is not overridden, the values of a multi-value pattern are checked one at a time
+     * and the check stops as soon as the outcome is known.
+     *
+     * @param permissionValues the permission values
+     * @param meta             additional information on the resource
+     * @param deadboltHandler  the current {@link DeadboltHandler}
+     * @param requestHeader    the current request header
+     * @return a map from each value to true if access based on the permission is allowed.  A missing value is not allowed.
+     */
+    default CompletionStage<Map<String, Boolean>> checkPermissions(final List<String> permissionValues,
+                                                                   final Optional<String> meta,
+                                                                   final DeadboltHandler deadboltHandler,
+                                                                   final Http.RequestHeader requestHeader)
+    {
+        final Map<String, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+        for (String permissionValue : permissionValues)
+        {
+            checks.computeIfAbsent(permissionValue,
+                                   key -> checkPermission(key,
+                                                          meta,
+                                                          deadboltHandler,
+                                                          requestHeader).toCompletableFuture());
+        }
+        return collect(checks);
+    }
+
+    private static CompletionStage<Map<String, Boolean>> collect(final Map<String, CompletableFuture<Boolean>> checks)
+    {
+        return CompletableFuture.allOf(checks.values().toArray(new CompletableFuture<?>[0]))
+                                .thenApply(ignored ->
+                                           {
+                                               final Map<String, Boolean> results = new LinkedHashMap<>();
+                                               checks.forEach((key, check) -> results.put(key,
+                                                                                          check.join()));
+                                               return results;
+                                           });
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.models.Permission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Tests values against a set of regular expressions at once, so a value is scanned once however many patterns there
+ * are.  A value matches if any of the patterns matches the whole value, exactly as {@link Matcher#matches()} would for
+ * each pattern on its own.
+ * <p>
+ * Patterns without regex metacharacters are looked up in a hash set.  The others are combined into a single
+ * alternation; patterns that can't be combined, e.g. because they use back references that would be renumbered, are
+ * matched separately.  Instances are immutable and thread-safe, so they can be cached and shared.
+ */
+public final class PermissionMatcher
+{
+    private static final Pattern METACHARACTERS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    // back references would be renumbered in the alternation, and a comment in COMMENTS mode would swallow the rest of it
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\(?:[1-9]|k<)|\\(\\?[a-zA-Z]*x");
+
+    private static final Pattern[] NO_PATTERNS = new Pattern[0];
+
+    private final Set<String> literals;
+
+    private final Pattern union;
+
+    private final Pattern[] separate;
+
+    private PermissionMatcher(final Set<String> literals,
+                              final Pattern union,
+                              final Pattern[] separate)
+    {
+        this.literals = literals;
+        this.union = union;
+        this.separate = separate;
+    }
+
+    /**
+     * Build a matcher for a set of patterns.
+     *
+     * @param patternValues the patterns
+     * @param compiler      compiles, and possibly caches, individual patterns
+     * @return the matcher
+     * @throws PatternSyntaxException if any of the patterns is invalid
+     */
+    public static PermissionMatcher of(final Collection<String> patternValues,
+                                       final Function<String, Pattern> compiler)
+    {
+        final Set<String> literals = new HashSet<>();
+        final List<String> combinable = new ArrayList<>();
+        final List<Pattern> separate = new ArrayList<>();
+        for (String patternValue : patternValues)
+        {
+            if (!METACHARACTERS.matcher(patternValue).find())
+            {
+                literals.add(patternValue);
+            }
+            else
+            {
+                // compiling each pattern on its own reports syntax errors against the pattern that caused them
+                final Pattern pattern = compiler.apply(patternValue);
+                if (NOT_COMBINABLE.matcher(patternValue).find())
+                {
+                    separate.add(pattern);
+                }
+                else
+                {
+                    combinable.add(patternValue);
+                }
+            }
+        }
+
+        Pattern union = null;
+        if (combinable.size() == 1)
+        {
+            union = compiler.apply(combinable.get(0));
+        }
+        else if (!combinable.isEmpty())
+        {
+            try
+            {
+                union = Pattern.compile("(?:" + String.join(")|(?:",
+                                                            combinable) + ")");
+            }
+            catch (PatternSyntaxException e)
+            {
+                // e.g. the same group name is used by more than one pattern
+                for (String patternValue : combinable)
+                {
+                    separate.add(compiler.apply(patternValue));
+                }
+            }
+        }
+
+        return new PermissionMatcher(literals.isEmpty() ? Collections.emptySet()
+                                                        : literals,
+                                     union,
+                                     separate.toArray(NO_PATTERNS));
+    }
+
+    /**
+     * Build a matcher for the values of a set of permissions.
+     *
+     * @param permissions the permissions.  Null permissions and values are ignored.
+     * @param compiler    compiles, and possibly caches, individual patterns
+     * @return the matcher
+     * @throws PatternSyntaxException if any of the values is an invalid pattern
+     */
+    public static PermissionMatcher ofPermissions(final Collection<? extends Permission> permissions,
+                                                  final Function<String, Pattern> compiler)
+    {
+        final List<String> values = new ArrayList<>(permissions.size());
+        for (Permission permission : permissions)
+        {
+            if (permission != null && permission.getValue() != null)
+            {
+                values.add(permission.getValue());
+            }
+        }
+        return of(values,
+                  compiler);
+    }
+
+    /**
+     * @param value the value
+     * @return true if any of the patterns matches the whole value
+     */
+    public boolean matches(final String value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+        if (literals.contains(value) || (union != null && union.matcher(value).matches()))
+        {
+            return true;
+        }
+        for (Pattern pattern : separate)
+        {
+            if (pattern.matcher(value).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any of the patterns matches the value of any of the permissions.  Each matcher is created once and
+     * reset for every permission.
+     *
+     * @param permissions the permissions.  May be null.
+     * @return true if any permission matches
+     */
+    public boolean matchesAny(final Collection<? extends Permission> permissions)
+    {
+        if (permissions == null || isEmpty())
+        {
+            return false;
+        }
+        final Matcher unionMatcher = union == null ? null
+                                                   : union.matcher("");
+        final Matcher[] separateMatchers = new Matcher[separate.length];
+        for (int i = 0; i < separate.length; i++)
+        {
+            separateMatchers[i] = separate[i].matcher("");
+        }
+
+        for (Permission permission : permissions)
+        {
+            final String value = permission == null ? null
+                                                     : permission.getValue();
+            if (value == null)
+            {
+                continue;
+            }
+            if (literals.contains(value) || (unionMatcher != null && unionMatcher.reset(value).matches()))
+            {
+                return true;
+            }
+            for (Matcher matcher : separateMatchers)
+            {
+                if (matcher.reset(value).matches())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if there are no patterns, in which case nothing matches
+     */
+    public boolean isEmpty()
+    {
+        return literals.isEmpty() && union == null && separate.length == 0;
+    }
+}
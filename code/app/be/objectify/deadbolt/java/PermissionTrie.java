@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.models.Permission;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The permissions of a subject, split into colon-separated segments and stored as a trie, so a
+ * {@link be.objectify.deadbolt.java.models.PatternType#WILDCARD} pattern is matched by walking one node per segment
+ * instead of testing every permission.
+ * <p>
+ * In a wildcard pattern, {@code *} matches any single segment, except as the last segment, where it matches one or more
+ * segments; every other segment must be equal.  For example, {@code invoice:*:view} matches {@code invoice:42:view},
+ * and {@code invoice:*} matches both {@code invoice:42} and {@code invoice:42:view}, but not {@code invoice}.
+ */
+public final class PermissionTrie
+{
+    public static final char SEPARATOR = ':';
+
+    public static final String WILDCARD = "*";
+
+    private final Node root = new Node();
+
+    PermissionTrie(final Collection<? extends Permission> permissions)
+    {
+        for (Permission permission : permissions)
+        {
+            if (permission != null && permission.getValue() != null)
+            {
+                add(permission.getValue());
+            }
+        }
+    }
+
+    private void add(final String permissionValue)
+    {
+        Node node = root;
+        int start = 0;
+        int end;
+        do
+        {
+            end = permissionValue.indexOf(SEPARATOR,
+                                          start);
+            final String segment = permissionValue.substring(start,
+                                                             end == -1 ? permissionValue.length()
+                                                                       : end);
+            node = node.children.computeIfAbsent(segment,
+                                                 key -> new Node());
+            start = end + 1;
+        }
+        while (end != -1);
+        node.terminal = true;
+    }
+
+    /**
+     * @param pattern the wildcard pattern
+     * @return true if the pattern matches at least one permission
+     */
+    public boolean matches(final String pattern)
+    {
+        return pattern != null && matches(root,
+                                          pattern,
+                                          0);
+    }
+
+    private static boolean matches(final Node node,
+                                   final String pattern,
+                                   final int start)
+    {
+        final int end = pattern.indexOf(SEPARATOR,
+                                        start);
+        final boolean last = end == -1;
+        final String segment = pattern.substring(start,
+                                                 last ? pattern.length()
+                                                      : end);
+        if (WILDCARD.equals(segment))
+        {
+            if (last)
+            {
+                // every branch ends in a permission, so any child means there is at least one more segment to match
+                return !node.children.isEmpty();
+            }
+            for (Node child : node.children.values())
+            {
+                if (matches(child,
+                            pattern,
+                            end + 1))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        final Node child = node.children.get(segment);
+        if (child == null)
+        {
+            return false;
+        }
+        return last ? child.terminal
+                    : matches(child,
+                              pattern,
+                              end + 1);
+    }
+
+    private static final class Node
+    {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private boolean terminal;
+    }
+}
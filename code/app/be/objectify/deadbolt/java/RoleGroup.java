@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A pre-parsed group of role names, as used by restrict constraints.  Within a group, all roles are ANDed.  Role names
+ * starting with ! are negated, so the subject must <b>not</b> hold them.  The negation prefix is resolved once, when the
+ * group is parsed, rather than on every check.
+ */
+public final class RoleGroup
+{
+    private static final String[] NO_ROLES = new String[0];
+
+    private final String[] required;
+
+    private final String[] excluded;
+
+    private RoleGroup(final String[] required,
+                      final String[] excluded)
+    {
+        this.required = required;
+        this.excluded = excluded;
+    }
+
+    /**
+     * Parse an array of role names into a role group.
+     *
+     * @param roleNames the role names.  Any role name starting with ! will be negated.
+     * @return the role group.  A null or empty array results in a group that never passes.
+     */
+    public static RoleGroup of(final String... roleNames)
+    {
+        if (roleNames == null || roleNames.length == 0)
+        {
+            return new RoleGroup(NO_ROLES,
+                                 NO_ROLES);
+        }
+
+        final List<String> required = new ArrayList<>(roleNames.length);
+        final List<String> excluded = new ArrayList<>(roleNames.length);
+        for (String roleName : roleNames)
+        {
+            if (roleName.startsWith("!"))
+            {
+                excluded.add(roleName.substring(1));
+            }
+            else
+            {
+                required.add(roleName);
+            }
+        }
+        return new RoleGroup(required.toArray(NO_ROLES),
+                             excluded.toArray(NO_ROLES));
+    }
+
+    /**
+     * Parse each array of role names into a role group.
+     *
+     * @param roleGroups the role groups.  Null entries are ignored.
+     * @return a non-null, unmodifiable list of parsed role groups
+     */
+    public static List<RoleGroup> of(final List<String[]> roleGroups)
+    {
+        if (roleGroups == null || roleGroups.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+
+        final List<RoleGroup> parsed = new ArrayList<>(roleGroups.size());
+        for (String[] roleGroup : roleGroups)
+        {
+            if (roleGroup != null)
+            {
+                parsed.add(of(roleGroup));
+            }
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * Test the group against a set of held role names.
+     *
+     * @param heldRoles the names of the roles held by the subject
+     * @return true iff all required roles are held and none of the negated roles are held
+     */
+    public boolean test(final Set<String> heldRoles)
+    {
+        boolean roleCheckResult = required.length > 0 || excluded.length > 0;
+        for (int i = 0; roleCheckResult && i < required.length; i++)
+        {
+            roleCheckResult = heldRoles.contains(required[i]);
+        }
+        for (int i = 0; roleCheckResult && i < excluded.length; i++)
+        {
+            roleCheckResult = !heldRoles.contains(excluded[i]);
+        }
+        return roleCheckResult;
+    }
+}
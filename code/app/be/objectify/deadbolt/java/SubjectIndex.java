@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.models.Permission;
+import be.objectify.deadbolt.java.models.Role;
+import be.objectify.deadbolt.java.models.Subject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lookup structures derived from a {@link Subject}.  Each structure is built lazily on first use and reused by later
+ * lookups against the same index.
+ * <p>
+ * An index is not refreshed if the subject's roles or permissions change, so it should only be kept for the duration
+ * of a request.  {@link ConstraintLogic} attaches the index to the request the first time a constraint needs it, so
+ * later constraints of the same request reuse it.
+ */
+public final class SubjectIndex
+{
+    private final Subject subject;
+
+    private volatile Set<String> roleNames;
+
+    private volatile Set<String> permissionValues;
+
+    private volatile PermissionTrie permissionTrie;
+
+    /**
+     * @param subject the subject to index
+     */
+    public SubjectIndex(final Subject subject)
+    {
+        this.subject = subject;
+    }
+
+    /**
+     * @return the subject this index belongs to
+     */
+    public Subject subject()
+    {
+        return subject;
+    }
+
+    /**
+     * Get the names of the roles held by the subject.
+     *
+     * @return a non-null, unmodifiable set of role names
+     */
+    public Set<String> roleNames()
+    {
+        Set<String> current = roleNames;
+        if (current == null)
+        {
+            current = indexRoleNames(orEmpty(subject.getRoles()));
+            roleNames = current;
+        }
+        return current;
+    }
+
+    /**
+     * Get the values of the permissions held by the subject.
+     *
+     * @return a non-null, unmodifiable set of permission values
+     */
+    public Set<String> permissionValues()
+    {
+        Set<String> current = permissionValues;
+        if (current == null)
+        {
+            current = indexPermissionValues(orEmpty(subject.getPermissions()));
+            permissionValues = current;
+        }
+        return current;
+    }
+
+    /**
+     * Get the permissions held by the subject as a trie of colon-separated segments.
+     *
+     * @return a non-null trie of the subject's permissions
+     */
+    public PermissionTrie permissionTrie()
+    {
+        PermissionTrie current = permissionTrie;
+        if (current == null)
+        {
+            current = new PermissionTrie(orEmpty(subject.getPermissions()));
+            permissionTrie = current;
+        }
+        return current;
+    }
+
+    private static <T> List<? extends T> orEmpty(final List<? extends T> list)
+    {
+        return list == null ? Collections.emptyList()
+                            : list;
+    }
+
+    private static Set<String> indexPermissionValues(final List<? extends Permission> permissions)
+    {
+        final Set<String> values = new HashSet<>(Math.max(16,
+                                                          (int) (permissions.size() / .75f) + 1));
+        for (Permission permission : permissions)
+        {
+            if (permission != null && permission.getValue() != null)
+            {
+                values.add(permission.getValue());
+            }
+        }
+        return Collections.unmodifiableSet(values);
+    }
+
+    private static Set<String> indexRoleNames(final List<? extends Role> roles)
+    {
+        final Set<String> names = new HashSet<>();
+        for (Role role : roles)
+        {
+            if (role != null)
+            {
+                names.add(role.getName());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.models.PatternType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Describes a constraint used by a template tag, so the decision can be made before the template is rendered.  Two
+ * view constraints are equal if the tags they describe would always reach the same decision for the same subject; the
+ * content hint is not part of the description, because it doesn't affect the decision.
+ *
+ * @see ViewSupport#prefetch(play.mvc.Http.Request, DeadboltHandler, java.util.Collection)
+ */
+public final class ViewConstraint
+{
+    /**
+     * The type of template tag.
+     */
+    public enum Type
+    {
+        SUBJECT_PRESENT,
+        SUBJECT_NOT_PRESENT,
+        RESTRICT,
+        DYNAMIC,
+        PATTERN,
+        ROLE_BASED_PERMISSIONS
+    }
+
+    private static final ViewConstraint SUBJECT_PRESENT = new ViewConstraint(Type.SUBJECT_PRESENT,
+                                                                             Collections.emptyList(),
+                                                                             null,
+                                                                             null,
+                                                                             Optional.empty(),
+                                                                             false);
+
+    private static final ViewConstraint SUBJECT_NOT_PRESENT = new ViewConstraint(Type.SUBJECT_NOT_PRESENT,
+                                                                                 Collections.emptyList(),
+                                                                                 null,
+                                                                                 null,
+                                                                                 Optional.empty(),
+                                                                                 false);
+
+    private final Type type;
+    private final List<String[]> roles;
+    private final List<List<String>> rolesForComparison;
+    private final String value;
+    private final PatternType patternType;
+    private final Optional<String> meta;
+    private final boolean invert;
+    private final int hash;
+
+    private ViewConstraint(final Type type,
+                           final List<String[]> roles,
+                           final String value,
+                           final PatternType patternType,
+                           final Optional<String> meta,
+                           final boolean invert)
+    {
+        this.type = type;
+        this.roles = roles;
+        this.value = value;
+        this.patternType = patternType;
+        this.meta = meta == null ? Optional.empty()
+                                 : meta;
+        this.invert = invert;
+
+        final List<List<String>> rolesForComparison = new ArrayList<>(roles.size());
+        for (String[] roleGroup : roles)
+        {
+            rolesForComparison.add(Arrays.asList(roleGroup));
+        }
+        this.rolesForComparison = rolesForComparison;
+        this.hash = Objects.hash(type,
+                                 rolesForComparison,
+                                 value,
+                                 patternType,
+                                 this.meta,
+                                 invert);
+    }
+
+    /**
+     * @return a description of a subjectPresent tag
+     */
+    public static ViewConstraint subjectPresent()
+    {
+        return SUBJECT_PRESENT;
+    }
+
+    /**
+     * @return a description of a subjectNotPresent tag
+     */
+    public static ViewConstraint subjectNotPresent()
+    {
+        return SUBJECT_NOT_PRESENT;
+    }
+
+    /**
+     * @param roles a list of String arrays.  Within an array, the roles are ANDed.  The arrays in the list are OR'd.
+     * @return a description of a restrict tag
+     */
+    public static ViewConstraint restrict(final List<String[]> roles)
+    {
+        final List<String[]> copy = new ArrayList<>();
+        if (roles != null)
+        {
+            for (String[] roleGroup : roles)
+            {
+                if (roleGroup != null)
+                {
+                    copy.add(roleGroup.clone());
+                }
+            }
+        }
+        return new ViewConstraint(Type.RESTRICT,
+                                  Collections.unmodifiableList(copy),
+                                  null,
+                                  null,
+                                  Optional.empty(),
+                                  false);
+    }
+
+    /**
+     * @param name the name of the resource
+     * @param meta meta information on the resource
+     * @return a description of a dynamic tag
+     */
+    public static ViewConstraint dynamic(final String name,
+                                         final Optional<String> meta)
+    {
+        return new ViewConstraint(Type.DYNAMIC,
+                                  Collections.emptyList(),
+                                  Objects.requireNonNull(name),
+                                  null,
+                                  meta,
+                                  false);
+    }
+
+    /**
+     * @param value       the pattern value
+     * @param patternType the pattern type
+     * @param meta        meta information on the pattern
+     * @param invert      true if the result of the pattern check is inverted
+     * @return a description of a pattern tag
+     */
+    public static ViewConstraint pattern(final String value,
+                                         final PatternType patternType,
+                                         final Optional<String> meta,
+                                         final boolean invert)
+    {
+        return new ViewConstraint(Type.PATTERN,
+                                  Collections.emptyList(),
+                                  Objects.requireNonNull(value),
+                                  Objects.requireNonNull(patternType),
+                                  meta,
+                                  invert);
+    }
+
+    /**
+     * @param roleName the role name that is the key for the permission set
+     * @return a description of a roleBasedPermissions tag
+     */
+    public static ViewConstraint roleBasedPermissions(final String roleName)
+    {
+        return new ViewConstraint(Type.ROLE_BASED_PERMISSIONS,
+                                  Collections.emptyList(),
+                                  Objects.requireNonNull(roleName),
+                                  null,
+                                  Optional.empty(),
+                                  false);
+    }
+
+    public Type type()
+    {
+        return type;
+    }
+
+    /**
+     * @return the role groups of a restrict tag, otherwise an empty list
+     */
+    public List<String[]> roles()
+    {
+        return roles;
+    }
+
+    /**
+     * @return the resource name of a dynamic tag, the value of a pattern tag or the role name of a roleBasedPermissions
+     * tag, otherwise null
+     */
+    public String value()
+    {
+        return value;
+    }
+
+    /**
+     * @return the pattern type of a pattern tag, otherwise null
+     */
+    public PatternType patternType()
+    {
+        return patternType;
+    }
+
+    public Optional<String> meta()
+    {
+        return meta;
+    }
+
+    public boolean invert()
+    {
+        return invert;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (!(o instanceof ViewConstraint))
+        {
+            return false;
+        }
+        final ViewConstraint other = (ViewConstraint) o;
+        return hash == other.hash
+               && type == other.type
+               && invert == other.invert
+               && patternType == other.patternType
+               && Objects.equals(value,
+                                 other.value)
+               && meta.equals(other.meta)
+               && rolesForComparison.equals(other.rolesForComparison);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ViewConstraint{type=%s, roles=%s, value=%s, patternType=%s, meta=%s, invert=%s}",
+                             type,
+                             rolesForComparison,
+                             value,
+                             patternType,
+                             meta,
+                             invert);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import play.libs.typedmap.TypedKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the decisions made by template tags while a single request is rendered, so repeated identical tags, e.g.
+ * in a loop, are only evaluated once.  A memo is attached to a request under {@link #KEY} by
+ * {@link ViewSupport#memoize(play.mvc.Http.Request)} and must not be shared between requests.
+ */
+public final class ViewDecisionMemo
+{
+    public static final TypedKey<ViewDecisionMemo> KEY = TypedKey.create("deadbolt.java.view-decision-memo");
+
+    private final ConcurrentMap<Key, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @return the number of tags that were answered from the memo
+     */
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of decisions in the memo
+     */
+    public int size()
+    {
+        return decisions.size();
+    }
+
+    /**
+     * @return the decision, or null if no decision has been made for the constraint
+     */
+    Boolean get(final long handlerId,
+                final ViewConstraint constraint)
+    {
+        final Boolean decision = decisions.get(new Key(handlerId,
+                                                       constraint));
+        if (decision != null)
+        {
+            hits.increment();
+        }
+        return decision;
+    }
+
+    void put(final long handlerId,
+             final ViewConstraint constraint,
+             final boolean decision)
+    {
+        decisions.put(new Key(handlerId,
+                              constraint),
+                      decision);
+    }
+
+    private static final class Key
+    {
+        private final long handlerId;
+        private final ViewConstraint constraint;
+
+        private Key(final long handlerId,
+                    final ViewConstraint constraint)
+        {
+            this.handlerId = handlerId;
+            this.constraint = constraint;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key other = (Key) o;
+            return handlerId == other.handlerId && constraint.equals(other.constraint);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Long.hashCode(handlerId) + constraint.hashCode();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import play.libs.typedmap.TypedKey;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable set of view constraint decisions made before a template is rendered.  The decisions are attached to the
+ * request under {@link #KEY} by {@link ViewSupport#prefetch(play.mvc.Http.Request, DeadboltHandler, java.util.Collection)},
+ * and the template tags read them instead of blocking on the constraint.
+ */
+public final class ViewDecisions
+{
+    public static final TypedKey<ViewDecisions> KEY = TypedKey.create("deadbolt.java.view-decisions");
+
+    static final ViewDecisions EMPTY = new ViewDecisions(Collections.emptyMap());
+
+    private static final Optional<Boolean> ALLOWED = Optional.of(Boolean.TRUE);
+
+    private static final Optional<Boolean> DENIED = Optional.of(Boolean.FALSE);
+
+    private final Map<Long, Map<ViewConstraint, Boolean>> decisions;
+
+    private ViewDecisions(final Map<Long, Map<ViewConstraint, Boolean>> decisions)
+    {
+        this.decisions = decisions;
+    }
+
+    /**
+     * Get the decision for a constraint.
+     *
+     * @param handlerId  the id of the handler the constraint is evaluated with
+     * @param constraint the constraint
+     * @return the decision, or an empty option if the constraint was not prefetched
+     */
+    public Optional<Boolean> decision(final long handlerId,
+                                      final ViewConstraint constraint)
+    {
+        final Map<ViewConstraint, Boolean> handlerDecisions = decisions.get(handlerId);
+        final Boolean decision = handlerDecisions == null ? null
+                                                          : handlerDecisions.get(constraint);
+        return decision == null ? Optional.empty()
+                                : decision ? ALLOWED
+                                           : DENIED;
+    }
+
+    /**
+     * @return the number of decisions
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Map<ViewConstraint, Boolean> handlerDecisions : decisions.values())
+        {
+            size += handlerDecisions.size();
+        }
+        return size;
+    }
+
+    /**
+     * Combine these decisions with new decisions for a handler.  New decisions replace existing decisions for the same
+     * constraint.
+     *
+     * @param handlerId the id of the handler the decisions were made with
+     * @param decisions the new decisions
+     * @return a new set of decisions
+     */
+    ViewDecisions with(final long handlerId,
+                       final Map<ViewConstraint, Boolean> decisions)
+    {
+        final Map<Long, Map<ViewConstraint, Boolean>> combined = new HashMap<>(this.decisions);
+        final Map<ViewConstraint, Boolean> handlerDecisions = new HashMap<>(combined.getOrDefault(handlerId,
+                                                                                                 Collections.emptyMap()));
+        handlerDecisions.putAll(decisions);
+        combined.put(handlerId,
+                     Collections.unmodifiableMap(handlerDecisions));
+        return new ViewDecisions(Collections.unmodifiableMap(combined));
+    }
+}
@@ -16,6 +16,8 @@
 package be.objectify.deadbolt.java;
 
 import be.objectify.deadbolt.java.cache.HandlerCache;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
 import be.objectify.deadbolt.java.models.PatternType;
 import com.typesafe.config.Config;
 import org.slf4j.Logger;
@@ -24,16 +26,30 @@ import play.mvc.Http;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * Provides the entry point for view-level annotations.
+ * <p>
+ * Templates are rendered synchronously, so each tag waits for its constraint on the rendering thread, for at most the
+ * tag's timeout.  To keep those waits off Play's default dispatcher when virtual threads are enabled, render the
+ * template with {@link BlockingExecution#supply(java.util.concurrent.Callable)}.
  *
  * @author Steve Chaloner (steve@objectify.be)
  */
@@ -52,15 +68,31 @@ public class ViewSupport
 
     private final ConstraintLogic constraintLogic;
 
-    @Inject
+    private final DeadboltMetrics metrics;
+
     public ViewSupport(final Config config,
                        final HandlerCache handlerCache,
                        final TemplateFailureListenerProvider failureListener,
                        final ConstraintLogic constraintLogic)
+    {
+        this(config,
+             handlerCache,
+             failureListener,
+             constraintLogic,
+             NoOpDeadboltMetrics.INSTANCE);
+    }
+
+    @Inject
+    public ViewSupport(final Config config,
+                       final HandlerCache handlerCache,
+                       final TemplateFailureListenerProvider failureListener,
+                       final ConstraintLogic constraintLogic,
+                       final DeadboltMetrics metrics)
     {
         this.handlerCache = handlerCache;
         this.failureListener = failureListener.get();
         this.constraintLogic = constraintLogic;
+        this.metrics = metrics;
         this.timeout = config.getLong("deadbolt.java.view-timeout");
         LOGGER.info("Default timeout period for blocking views is [{}]ms", this.timeout);
         this.timeoutHandler = (timeoutInMillis, e) ->
@@ -74,6 +106,266 @@ public class ViewSupport
         };
     }
 
+    /**
+     * Attach a decision memo to the request, so repeated identical tags in a template rendered for the request are
+     * only evaluated once.  If the request already has a memo, it is returned unchanged.
+     *
+     * @param request the request the template will be rendered for
+     * @return the request, with a memo attached
+     */
+    public Http.Request memoize(final Http.Request request)
+    {
+        return request.attrs().containsKey(ViewDecisionMemo.KEY) ? request
+                                                                 : request.addAttr(ViewDecisionMemo.KEY,
+                                                                                   new ViewDecisionMemo());
+    }
+
+    /**
+     * Attach a decision memo to the request header.
+     *
+     * @param requestHeader the request header the template will be rendered for
+     * @return the request header, with a memo attached
+     * @see #memoize(Http.Request)
+     */
+    public Http.RequestHeader memoize(final Http.RequestHeader requestHeader)
+    {
+        return requestHeader.attrs().containsKey(ViewDecisionMemo.KEY) ? requestHeader
+                                                                       : requestHeader.addAttr(ViewDecisionMemo.KEY,
+                                                                                               new ViewDecisionMemo());
+    }
+
+    /**
+     * Make the decisions for view constraints before a template is rendered.  The constraints are evaluated
+     * concurrently, and the decisions are attached to the returned request so the template tags can read them without
+     * blocking.  Tags whose constraints were not prefetched are evaluated when the template is rendered, as usual.
+     * <p>
+     * The decisions are only used by tags that are given the returned request, and that use the same handler.  A
+     * decision memo is also attached, as with {@link #memoize(Http.Request)}.
+     *
+     * @param request     the request the template will be rendered for
+     * @param handler     the handler the tags use, or null for the default handler
+     * @param constraints the constraints used by the template
+     * @return the request, with the decisions attached
+     */
+    public CompletionStage<Http.Request> prefetch(final Http.Request request,
+                                                  final DeadboltHandler handler,
+                                                  final Collection<ViewConstraint> constraints)
+    {
+        return decide(request,
+                      handler(handler),
+                      constraints).thenApply(decisions -> memoize(request.addAttr(ViewDecisions.KEY,
+                                                                                  decisions)));
+    }
+
+    /**
+     * Make the decisions for view constraints before a template is rendered.
+     *
+     * @param requestHeader the request header the template will be rendered for
+     * @param handler       the handler the tags use, or null for the default handler
+     * @param constraints   the constraints used by the template
+     * @return the request header, with the decisions attached
+     * @see #prefetch(Http.Request, DeadboltHandler, Collection)
+     */
+    public CompletionStage<Http.RequestHeader> prefetch(final Http.RequestHeader requestHeader,
+                                                        final DeadboltHandler handler,
+                                                        final Collection<ViewConstraint> constraints)
+    {
+        return decide(requestHeader,
+                      handler(handler),
+                      constraints).thenApply(decisions -> memoize(requestHeader.addAttr(ViewDecisions.KEY,
+                                                                                        decisions)));
+    }
+
+    private CompletionStage<ViewDecisions> decide(final Http.RequestHeader requestHeader,
+                                                  final DeadboltHandler handler,
+                                                  final Collection<ViewConstraint> constraints)
+    {
+        final ViewDecisions existing = requestHeader.attrs().getOptional(ViewDecisions.KEY)
+                                                    .orElse(ViewDecisions.EMPTY);
+        final List<ViewConstraint> distinct = new ArrayList<>(new LinkedHashSet<>(constraints));
+
+        // resolve the subject first, so the constraints don't all fetch it
+        return constraintLogic.getSubject(requestHeader,
+                                          handler)
+                              .thenCompose(subject ->
+                                           {
+                                               final CompletableFuture<?>[] decisions = new CompletableFuture<?>[distinct.size()];
+                                               batch(distinct,
+                                                     handler,
+                                                     subject._2,
+                                                     decisions);
+                                               for (int i = 0; i < decisions.length; i++)
+                                               {
+                                                   if (decisions[i] != null)
+                                                   {
+                                                       continue;
+                                                   }
+                                                   try
+                                                   {
+                                                       decisions[i] = evaluate(distinct.get(i),
+                                                                               handler,
+                                                                               Optional.empty(),
+                                                                               subject._2).toCompletableFuture();
+                                                   }
+                                                   catch (RuntimeException e)
+                                                   {
+                                                       final CompletableFuture<Boolean> failed = new CompletableFuture<>();
+                                                       failed.completeExceptionally(e);
+                                                       decisions[i] = failed;
+                                                   }
+                                               }
+                                               return CompletableFuture.allOf(decisions)
+                                                                       .handle((ignored, error) ->
+                                                                               {
+                                                                                   final Map<ViewConstraint, Boolean> decided = new HashMap<>();
+                                                                                   for (int i = 0; i < decisions.length; i++)
+                                                                                   {
+                                                                                       // failed constraints are left to the tag, which reports the failure as usual
+                                                                                       if (!decisions[i].isCompletedExceptionally())
+                                                                                       {
+                                                                                           decided.put(distinct.get(i),
+                                                                                                       (Boolean) decisions[i].join());
+                                                                                       }
+                                                                                   }
+                                                                                   return existing.with(handler.getId(),
+                                                                                                        decided);
+                                                                               });
+                                           });
+    }
+
+    /**
+     * Dynamic constraints that share meta information, and custom patterns that share meta information and inversion,
+     * are decided together with one call to the dynamic resource handler per group.  The decisions of the grouped
+     * constraints are put into the array, and the other constraints are left for {@link #evaluate}.
+     */
+    private void batch(final List<ViewConstraint> constraints,
+                       final DeadboltHandler handler,
+                       final Http.RequestHeader requestHeader,
+                       final CompletableFuture<?>[] decisions)
+    {
+        final Map<Optional<String>, List<Integer>> dynamic = new LinkedHashMap<>();
+        final Map<Boolean, Map<Optional<String>, List<Integer>>> custom = new HashMap<>();
+        for (int i = 0; i < constraints.size(); i++)
+        {
+            final ViewConstraint constraint = constraints.get(i);
+            if (constraint.type() == ViewConstraint.Type.DYNAMIC)
+            {
+                dynamic.computeIfAbsent(constraint.meta(),
+                                        meta -> new ArrayList<>()).add(i);
+            }
+            else if (constraint.type() == ViewConstraint.Type.PATTERN && constraint.patternType() == PatternType.CUSTOM)
+            {
+                custom.computeIfAbsent(constraint.invert(),
+                                       invert -> new LinkedHashMap<>())
+                      .computeIfAbsent(constraint.meta(),
+                                       meta -> new ArrayList<>()).add(i);
+            }
+        }
+
+        dynamic.forEach((meta, indices) -> batch(constraints,
+                                                 indices,
+                                                 decisions,
+                                                 names -> constraintLogic.dynamicDecisions(requestHeader,
+                                                                                           handler,
+                                                                                           names,
+                                                                                           meta,
+                                                                                           ConstraintPoint.TEMPLATE)));
+        custom.forEach((invert, byMeta) -> byMeta.forEach((meta, indices) -> batch(constraints,
+                                                                                   indices,
+                                                                                   decisions,
+                                                                                   values -> constraintLogic.customPatternDecisions(requestHeader,
+                                                                                                                                    handler,
+                                                                                                                                    values,
+                                                                                                                                    meta,
+                                                                                                                                    invert,
+                                                                                                                                    ConstraintPoint.TEMPLATE))));
+    }
+
+    private static void batch(final List<ViewConstraint> constraints,
+                              final List<Integer> indices,
+                              final CompletableFuture<?>[] decisions,
+                              final Function<List<String>, CompletionStage<Map<String, Boolean>>> decide)
+    {
+        if (indices.size() < 2)
+        {
+            // a single constraint is evaluated as usual
+            return;
+        }
+        final List<String> values = new ArrayList<>(indices.size());
+        for (Integer index : indices)
+        {
+            values.add(constraints.get(index).value());
+        }
+
+        CompletableFuture<Map<String, Boolean>> decided;
+        try
+        {
+            decided = decide.apply(values).toCompletableFuture();
+        }
+        catch (RuntimeException e)
+        {
+            decided = new CompletableFuture<>();
+            decided.completeExceptionally(e);
+        }
+        for (int i = 0; i < indices.size(); i++)
+        {
+            final String value = values.get(i);
+            decisions[indices.get(i)] = decided.thenApply(results -> results.get(value));
+        }
+    }
+
+    private CompletionStage<Boolean> evaluate(final ViewConstraint constraint,
+                                              final DeadboltHandler handler,
+                                              final Optional<String> content,
+                                              final Http.RequestHeader requestHeader)
+    {
+        final CompletionStage<Boolean> result;
+        switch (constraint.type())
+        {
+            case SUBJECT_PRESENT:
+                result = subjectPresent(handler,
+                                        content,
+                                        requestHeader);
+                break;
+            case SUBJECT_NOT_PRESENT:
+                result = subjectNotPresent(handler,
+                                           content,
+                                           requestHeader);
+                break;
+            case RESTRICT:
+                result = restrict(constraint.roles(),
+                                  handler,
+                                  content,
+                                  requestHeader);
+                break;
+            case DYNAMIC:
+                result = dynamic(constraint.value(),
+                                 constraint.meta(),
+                                 handler,
+                                 content,
+                                 requestHeader);
+                break;
+            case PATTERN:
+                result = pattern(constraint.value(),
+                                 constraint.patternType(),
+                                 constraint.meta(),
+                                 constraint.invert(),
+                                 handler,
+                                 content,
+                                 requestHeader);
+                break;
+            case ROLE_BASED_PERMISSIONS:
+                result = roleBasedPermissions(constraint.value(),
+                                              handler,
+                                              content,
+                                              requestHeader);
+                break;
+            default:
+                throw new RuntimeException("Unknown view constraint type: " + constraint.type());
+        }
+        return result;
+    }
+
     /**
      * Used for restrict tags in the template.
      *
@@ -86,27 +378,29 @@ public class ViewSupport
                                 final long timeoutInMillis,
                                 final Http.RequestHeader requestHeader) throws Throwable
     {
-        boolean allowed;
-        try
-        {
-            allowed = constraintLogic.restrict(requestHeader,
-                                               handler(handler),
-                                               content,
-                                               () -> roles,
-                                               rh -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                               (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                               ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      () -> ViewConstraint.restrict(roles),
+                      () -> restrict(roles,
+                                     deadboltHandler,
+                                     content,
+                                     requestHeader),
+                      timeoutInMillis);
+    }
 
-        }
-        catch (TimeoutException e)
-        {
-            allowed = timeoutHandler.apply(timeoutInMillis,
-                                           e);
-        }
-        return allowed;
+    private CompletionStage<Boolean> restrict(final List<String[]> roles,
+                                              final DeadboltHandler handler,
+                                              final Optional<String> content,
+                                              final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.restrict(requestHeader,
+                                        handler,
+                                        content,
+                                        () -> roles,
+                                        rh -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                        (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                        ConstraintPoint.TEMPLATE);
     }
 
     /**
@@ -123,27 +417,33 @@ public class ViewSupport
                                final long timeoutInMillis,
                                final Http.RequestHeader requestHeader) throws Throwable
     {
-        boolean allowed;
-        try
-        {
-            allowed = constraintLogic.dynamic(requestHeader,
-                                              handler(handler),
-                                              content,
-                                              name,
-                                              meta,
-                                              rh -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                              (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                              ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
-        }
-        catch (TimeoutException e)
-        {
-            allowed = timeoutHandler.apply(timeoutInMillis,
-                                           e);
-        }
-        return allowed;
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      () -> ViewConstraint.dynamic(name,
+                                                   meta),
+                      () -> dynamic(name,
+                                    meta,
+                                    deadboltHandler,
+                                    content,
+                                    requestHeader),
+                      timeoutInMillis);
+    }
+
+    private CompletionStage<Boolean> dynamic(final String name,
+                                             final Optional<String> meta,
+                                             final DeadboltHandler handler,
+                                             final Optional<String> content,
+                                             final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.dynamic(requestHeader,
+                                       handler,
+                                       content,
+                                       name,
+                                       meta,
+                                       rh -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                       (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                       ConstraintPoint.TEMPLATE);
     }
 
     /**
@@ -156,26 +456,26 @@ public class ViewSupport
                                       final long timeoutInMillis,
                                       final Http.RequestHeader requestHeader) throws Throwable
     {
-        boolean allowed;
-        try
-        {
-            allowed = constraintLogic.subjectPresent(requestHeader,
-                                                     handler == null ? handlerCache.get()
-                                                                     : handler,
-                                                     content,
-                                                     (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                                     (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                                     ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
-        }
-        catch (TimeoutException e)
-        {
-            allowed = timeoutHandler.apply(timeoutInMillis,
-                                           e);
-        }
-        return allowed;
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      ViewConstraint::subjectPresent,
+                      () -> subjectPresent(deadboltHandler,
+                                           content,
+                                           requestHeader),
+                      timeoutInMillis);
+    }
+
+    private CompletionStage<Boolean> subjectPresent(final DeadboltHandler handler,
+                                                    final Optional<String> content,
+                                                    final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.subjectPresent(requestHeader,
+                                              handler,
+                                              content,
+                                              (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                              (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                              ConstraintPoint.TEMPLATE);
     }
 
     /**
@@ -188,25 +488,26 @@ public class ViewSupport
                                          final long timeoutInMillis,
                                          final Http.RequestHeader requestHeader) throws Throwable
     {
-        boolean allowed;
-        try
-        {
-            allowed = constraintLogic.subjectNotPresent(requestHeader,
-                                                        handler(handler),
-                                                        content,
-                                                        (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                                        (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                                        ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
-        }
-        catch (TimeoutException e)
-        {
-            allowed = timeoutHandler.apply(timeoutInMillis,
-                                           e);
-        }
-        return allowed;
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      ViewConstraint::subjectNotPresent,
+                      () -> subjectNotPresent(deadboltHandler,
+                                              content,
+                                              requestHeader),
+                      timeoutInMillis);
+    }
+
+    private CompletionStage<Boolean> subjectNotPresent(final DeadboltHandler handler,
+                                                       final Optional<String> content,
+                                                       final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.subjectNotPresent(requestHeader,
+                                                 handler,
+                                                 content,
+                                                 (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                                 (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                                 ConstraintPoint.TEMPLATE);
     }
 
     public boolean viewPattern(final String value,
@@ -218,30 +519,41 @@ public class ViewSupport
                                final long timeoutInMillis,
                                final Http.RequestHeader requestHeader) throws Exception
     {
-        boolean allowed;
-        try
-        {
-            allowed = constraintLogic.pattern(requestHeader,
-                                              handler(handler),
-                                              content,
-                                              value,
-                                              patternType,
-                                              meta,
-                                              invert,
-                                              rh -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                              (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                              ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
-        }
-        catch (TimeoutException e)
-        {
-            allowed = timeoutHandler.apply(timeoutInMillis,
-                                           e);
-        }
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      () -> ViewConstraint.pattern(value,
+                                                   patternType,
+                                                   meta,
+                                                   invert),
+                      () -> pattern(value,
+                                    patternType,
+                                    meta,
+                                    invert,
+                                    deadboltHandler,
+                                    content,
+                                    requestHeader),
+                      timeoutInMillis);
+    }
 
-        return allowed;
+    private CompletionStage<Boolean> pattern(final String value,
+                                             final PatternType patternType,
+                                             final Optional<String> meta,
+                                             final boolean invert,
+                                             final DeadboltHandler handler,
+                                             final Optional<String> content,
+                                             final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.pattern(requestHeader,
+                                       handler,
+                                       content,
+                                       value,
+                                       patternType,
+                                       meta,
+                                       invert,
+                                       rh -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                       (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                       ConstraintPoint.TEMPLATE);
     }
 
     /**
@@ -256,32 +568,126 @@ public class ViewSupport
                                             final long timeoutInMillis,
                                             final Http.RequestHeader requestHeader) throws Throwable
     {
+        final DeadboltHandler deadboltHandler = handler(handler);
+        return decide(requestHeader,
+                      deadboltHandler,
+                      () -> ViewConstraint.roleBasedPermissions(roleName),
+                      () -> roleBasedPermissions(roleName,
+                                                 deadboltHandler,
+                                                 content,
+                                                 requestHeader),
+                      timeoutInMillis);
+    }
+
+    private CompletionStage<Boolean> roleBasedPermissions(final String roleName,
+                                                          final DeadboltHandler handler,
+                                                          final Optional<String> content,
+                                                          final Http.RequestHeader requestHeader)
+    {
+        return constraintLogic.roleBasedPermissions(requestHeader,
+                                                    handler,
+                                                    content,
+                                                    roleName,
+                                                    rh -> CompletableFuture.completedFuture(Boolean.TRUE),
+                                                    (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
+                                                    ConstraintPoint.TEMPLATE);
+    }
+
+    /**
+     * Make the decision for a template tag.  A decision that was prefetched or memoized for the request is used if
+     * present; otherwise, the constraint is evaluated and the decision is memoized if the request has a memo.
+     *
+     * @param constraint describes the constraint, and is only created if the request has prefetched decisions or a memo
+     * @param evaluation evaluates the constraint
+     * @return true if the view can be accessed, otherwise false
+     */
+    private boolean decide(final Http.RequestHeader requestHeader,
+                           final DeadboltHandler handler,
+                           final Supplier<ViewConstraint> constraint,
+                           final Supplier<CompletionStage<Boolean>> evaluation,
+                           final long timeoutInMillis) throws InterruptedException, ExecutionException
+    {
+        final Optional<ViewDecisions> decisions = requestHeader.attrs().getOptional(ViewDecisions.KEY);
+        final Optional<ViewDecisionMemo> memo = requestHeader.attrs().getOptional(ViewDecisionMemo.KEY);
+
+        final ViewConstraint viewConstraint = decisions.isPresent() || memo.isPresent() ? constraint.get()
+                                                                                        : null;
+        if (decisions.isPresent())
+        {
+            final Optional<Boolean> prefetched = decisions.get().decision(handler.getId(),
+                                                                          viewConstraint);
+            if (prefetched.isPresent())
+            {
+                return prefetched.get();
+            }
+        }
+        if (memo.isPresent())
+        {
+            final Boolean memoized = memo.get().get(handler.getId(),
+                                                    viewConstraint);
+            if (memoized != null)
+            {
+                return memoized;
+            }
+        }
+
         boolean allowed;
         try
         {
-            allowed = constraintLogic.roleBasedPermissions(requestHeader,
-                                                           handler(handler),
-                                                           content,
-                                                           roleName,
-                                                           rh -> CompletableFuture.completedFuture(Boolean.TRUE),
-                                                           (rh, dh, cnt) -> CompletableFuture.completedFuture(Boolean.FALSE),
-                                                           ConstraintPoint.TEMPLATE)
-                                     .toCompletableFuture()
-                                     .get(timeoutInMillis,
-                                          TimeUnit.MILLISECONDS);
-
+            allowed = evaluation.get()
+                                .toCompletableFuture()
+                                .get(timeoutInMillis,
+                                     TimeUnit.MILLISECONDS);
+            if (memo.isPresent())
+            {
+                memo.get().put(handler.getId(),
+                               viewConstraint,
+                               allowed);
+            }
         }
         catch (TimeoutException e)
         {
+            // timeouts aren't memoized, so each tag reports its own failure
+            if (metrics.enabled())
+            {
+                metrics.recordTimeout(constraintType(viewConstraint == null ? constraint.get()
+                                                                            : viewConstraint),
+                                      ConstraintPoint.TEMPLATE);
+            }
             allowed = timeoutHandler.apply(timeoutInMillis,
                                            e);
         }
         return allowed;
     }
 
+    /**
+     * @return the constraint type used by {@link ConstraintLogic} for the constraint, so timeouts are recorded against
+     * the same type as decisions
+     */
+    private static String constraintType(final ViewConstraint constraint)
+    {
+        switch (constraint.type())
+        {
+            case SUBJECT_PRESENT:
+                return "subjectPresent";
+            case SUBJECT_NOT_PRESENT:
+                return "subjectNotPresent";
+            case RESTRICT:
+                return "restrict";
+            case DYNAMIC:
+                return "dynamic";
+            case PATTERN:
+                return "pattern - " + constraint.patternType().name().toLowerCase(Locale.ENGLISH);
+            case ROLE_BASED_PERMISSIONS:
+                return "roleBasedPermissions";
+            default:
+                throw new IllegalArgumentException("Unknown view constraint type: " + constraint.type());
+        }
+    }
+
     private DeadboltHandler handler(final DeadboltHandler handler)
     {
         return handler == null ? handlerCache.get()
                                : handler;
     }
-}
\ No newline at end of file
+}
@@ -15,11 +15,15 @@
  */
 package be.objectify.deadbolt.java.actions;
 
+import be.objectify.deadbolt.java.BlockingExecution;
 import be.objectify.deadbolt.java.Constants;
 import be.objectify.deadbolt.java.ConstraintAnnotationMode;
 import be.objectify.deadbolt.java.DeadboltHandler;
 import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
 import be.objectify.deadbolt.java.cache.HandlerCache;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.HandlerCall;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
 import com.typesafe.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +34,13 @@ import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
 
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.function.Function;
 
 /**
  * Provides some convenience methods for concrete Deadbolt actions, such as getting the correct {@link DeadboltHandler},
@@ -63,6 +67,20 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
 
     private boolean authorised = false;
 
+    private ActionChain chain;
+
+    private ActionChains actionChains;
+
+    private ConstraintDescriptors constraintDescriptors;
+
+    private BlockingExecution blockingExecution;
+
+    private ConstraintDescriptor descriptor;
+
+    private volatile CompletableFuture<Http.Request> nextRequest;
+
+    private DeadboltMetrics metrics = NoOpDeadboltMetrics.INSTANCE;
+
     protected AbstractDeadboltAction(final HandlerCache handlerCache,
                                      final BeforeAuthCheckCache beforeAuthCheckCache,
                                      final Config config)
@@ -74,6 +92,80 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
         this.constraintAnnotationMode = ConstraintAnnotationMode.valueOf(config.getString("deadbolt.java.constraint-mode"));
     }
 
+    /**
+     * Sets the metrics that measurements taken by the action are recorded to.  This is injected after construction,
+     * so subclasses don't need to declare it; actions that are created directly record nothing unless it is called.
+     *
+     * @param metrics the metrics
+     */
+    @Inject
+    public void setMetrics(final DeadboltMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    protected DeadboltMetrics metrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Sets the descriptors that are shared between the actions created for the same annotation.  Like the metrics,
+     * this is injected after construction; actions that are created directly compile their own descriptor.
+     *
+     * @param constraintDescriptors the descriptors
+     */
+    @Inject
+    public void setConstraintDescriptors(final ConstraintDescriptors constraintDescriptors)
+    {
+        this.constraintDescriptors = constraintDescriptors;
+    }
+
+    /**
+     * Sets the chain shapes that are shared between the actions created for the same route.  Actions that are created
+     * directly work out the shape of their chain themselves.
+     *
+     * @param actionChains the chain shapes
+     */
+    @Inject
+    public void setActionChains(final ActionChains actionChains)
+    {
+        this.actionChains = actionChains;
+    }
+
+    /**
+     * Sets where the action waits for its result when deadbolt.java.blocking is true.  Actions that are created directly
+     * block the request thread.
+     *
+     * @param blockingExecution the blocking execution
+     */
+    @Inject
+    public void setBlockingExecution(final BlockingExecution blockingExecution)
+    {
+        this.blockingExecution = blockingExecution;
+    }
+
+    /**
+     * @return the handler, content type hint and role groups of the annotation
+     */
+    ConstraintDescriptor descriptor()
+    {
+        if (descriptor == null)
+        {
+            descriptor = constraintDescriptors == null ? ConstraintDescriptor.of(this)
+                                                       : constraintDescriptors.get(this);
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return the role groups that are parsed into the descriptor.  Only restrict constraints have role groups.
+     */
+    List<String[]> roleGroups()
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * Gets the current {@link DeadboltHandler}.  This can come from one of two places:
      * - a handler key is provided in the annotation.  A cached instance of that class will be used. This has the highest priority.
@@ -98,13 +190,15 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
 
         try
         {
-            if (isDeferred(request))
+            final ActionChain chain = actionChain(request);
+            if (chain.deferrals && isDeferred(request))
             {
                 final F.Tuple<AbstractDeadboltAction<?>, Http.RequestHeader> deferredAction = getDeferredAction(request);
                 LOGGER.debug("Executing deferred action [{}]", deferredAction._1.getClass().getName());
                 result = deferredAction._1.call((Http.Request)deferredAction._2);
             }
-            else if (!request.attrs().containsKey(IGNORE_DEFERRED_FLAG)
+            else if (chain.deferrals
+                    && !request.attrs().containsKey(IGNORE_DEFERRED_FLAG)
                     && deferred())
             {
                 result = delegate.call((Http.Request)defer(request,
@@ -118,16 +212,21 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
                 }
                 else
                 {
-                    result = maybeBlock(execute(request));
+                    result = maybeBlock(request);
                 }
             }
             return result.thenCompose(r -> {
-                if(constraintAnnotationMode == ConstraintAnnotationMode.OR && !deadboltActionLeftInActionChain(this) && !this.isAuthorised() && !isAuthorised(request) && (isConstraintInActionChain(this, action -> action.precursor) || isConstraintInActionChain(this, action -> action.delegate))) {
-                    // We are in OR mode and "this" was the last deadbolt-action that ran and no constraint marked the targeted action-method as authorised yet -> we finally have to fail now.
-                    // If there was no "real" constraint, we don't come here, e.g. just calling @BeforeAccess or/and @DeferredDeadboltAction doesn't count as constraint
-                    return onAuthFailure(getDeadboltHandler(getHandlerKey()),
-                            getContent(),
-                            request);
+                if(constraintAnnotationMode == ConstraintAnnotationMode.OR && !this.isAuthorised() && !isAuthorised(request)) {
+                    // the chain is re-read here because running a deferred action can re-link it
+                    final ActionChain current = actionChain(request);
+                    if (!current.deadboltActionLeft && current.constraintInChain) {
+                        // We are in OR mode and "this" was the last deadbolt-action that ran and no constraint marked the targeted action-method as authorised yet -> we finally have to fail now.
+                        // If there was no "real" constraint, we don't come here, e.g. just calling @BeforeAccess or/and @DeferredDeadboltAction doesn't count as constraint
+                        final ConstraintDescriptor descriptor = descriptor();
+                        return onAuthFailure(descriptor.handler,
+                                descriptor.content,
+                                request);
+                    }
                 }
                 return CompletableFuture.completedFuture(r);
             });
@@ -261,8 +360,18 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
                                                                                   final Optional<String> content,
                                                                                   final DeadboltHandler deadboltHandler)
     {
-        return forcePreAuthCheck ? beforeAuthCheckCache.apply(deadboltHandler, request, content)
-                                 : CompletableFuture.completedFuture(F.Tuple(Optional.empty(), request));
+        if (!forcePreAuthCheck)
+        {
+            return CompletableFuture.completedFuture(F.Tuple(Optional.empty(), request));
+        }
+        if (!metrics.enabled())
+        {
+            return beforeAuthCheckCache.apply(deadboltHandler, request, content);
+        }
+        final long start = System.nanoTime();
+        return metrics.timeHandlerCall(HandlerCall.BEFORE_AUTH_CHECK,
+                                       start,
+                                       beforeAuthCheckCache.apply(deadboltHandler, request, content));
     }
 
     /**
@@ -277,9 +386,9 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
         if(constraintAnnotationMode != ConstraintAnnotationMode.AND)
         {
             // In AND mode we don't mark an action as authorised because we want ALL (remaining) constraints to be evaluated as well!
-            return delegate.call((Http.Request)markAsAuthorised(request));
+            return callDelegate((Http.Request)markAsAuthorised(request));
         }
-        return delegate.call((Http.Request)request);
+        return callDelegate((Http.Request)request);
     }
 
     /**
@@ -295,10 +404,10 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
                                                          final DeadboltHandler handler,
                                                          final Optional<String> content)
     {
-        if(constraintAnnotationMode == ConstraintAnnotationMode.OR && deadboltActionLeftInActionChain(this))
+        if(constraintAnnotationMode == ConstraintAnnotationMode.OR && actionChain(request).deadboltActionLeft)
         {
             // In OR mode we don't fail immediately but also check remaining constraints (it there is any left). Maybe one of these next ones authorizes...
-            return delegate.call((Http.Request)request);
+            return callDelegate((Http.Request)request);
         }
 
         return onAuthFailure(handler,
@@ -306,44 +415,59 @@ public abstract class AbstractDeadboltAction<T> extends Action<T>
                              request);
     }
 
-    private CompletionStage<Result> maybeBlock(CompletionStage<Result> eventualResult) throws InterruptedException,
-                                                                                      ExecutionException,
-                                                                                      TimeoutException
+    /**
+     * Call the next action in the chain.  While the constraint is tested on a virtual thread, the request is only
+     * recorded, and the next action is called once the constraint has been decided; see {@link #maybeBlock}.
+     *
+     * @param request the request to pass on
+     * @return the result of the next action, or null if it will be called later
+     */
+    CompletionStage<Result> callDelegate(final Http.Request request)
     {
-        return blocking ? CompletableFuture.completedFuture(eventualResult.toCompletableFuture().get(blockingTimeout,
-                                                                                                     TimeUnit.MILLISECONDS))
-                        : eventualResult;
+        final CompletableFuture<Http.Request> next = nextRequest;
+        if (next != null)
+        {
+            next.complete(request);
+            return CompletableFuture.completedFuture(null);
+        }
+        return delegate.call(request);
     }
 
-    /**
-     * Recursive method to determine if there is another deadbolt action further down the action chain
-     */
-    private static boolean deadboltActionLeftInActionChain(final Action<?> action) {
-        if(action != null) {
-            if(action.delegate instanceof AbstractDeadboltAction) {
-                return true; // yes, there is at least one deadbolt action remaining
-            }
-            // action.delegate wasn't a deadbolt action, let's check the next one in the chain
-            return deadboltActionLeftInActionChain(action.delegate);
+    private CompletionStage<Result> maybeBlock(final Http.RequestHeader request) throws Exception
+    {
+        if (blocking && blockingExecution != null && blockingExecution.isVirtual())
+        {
+            // the request thread is released, and a virtual thread makes the handler calls and waits for them.  The
+            // rest of the chain, including the controller, is called afterwards on Play's executor
+            final CompletableFuture<Http.Request> next = new CompletableFuture<>();
+            nextRequest = next;
+            return blockingExecution.supplyThen(() -> execute(request).toCompletableFuture().get(blockingTimeout,
+                                                                                                 TimeUnit.MILLISECONDS),
+                                                result -> next.isDone() ? delegate.call(next.join())
+                                                                        : CompletableFuture.completedFuture(result));
         }
-        return false;
+        final CompletionStage<Result> eventualResult = execute(request);
+        return blocking ? CompletableFuture.completedFuture(eventualResult.toCompletableFuture().get(blockingTimeout,
+                                                                                                     TimeUnit.MILLISECONDS))
+                        : eventualResult;
     }
 
     /**
-     * Be aware: Not every deadbolt-annotation is a constraint, but every constraint is a deadbolt-annotation ;)
-     * @BeforeAccess and @DeferredDeadboltAction do NOT count as constraint, because they just pass trough (=they do NOT call markAsAuthorised() in success case)
+     * Get the shape of the action chain this action is part of.  If the chain can defer actions, it may have been
+     * re-linked since the shape was last computed, so it's computed again.
+     *
+     * @param request the request
+     * @return the shape of the chain
      */
-    private static boolean isConstraintInActionChain(final Action<?> action, final Function<Action<?>, Action<?>> nextAction) {
-        if(action != null) {
-            if(action instanceof AbstractDeadboltAction &&
-                    !(action instanceof BeforeAccessAction) &&
-                    !(action instanceof DeferredDeadboltAction)) {
-                return true;
-            }
-            // that wasn't a deadbolt constraint, let's go and check the next action in the chain
-            return isConstraintInActionChain(nextAction.apply(action), nextAction);
+    private ActionChain actionChain(final Http.RequestHeader request)
+    {
+        if (chain == null || chain.deferrals)
+        {
+            chain = actionChains == null ? ActionChain.of(this)
+                                         : actionChains.get(this,
+                                                            request);
         }
-        return false;
+        return chain;
     }
 
     public abstract Optional<String> getContent();
@@ -50,10 +50,11 @@ public abstract class AbstractRestrictiveAction<T> extends AbstractDeadboltActio
     @Override
     public CompletionStage<Result> execute(final Http.RequestHeader request) throws Exception
     {
-        final DeadboltHandler deadboltHandler = getDeadboltHandler(getHandlerKey());
+        final ConstraintDescriptor descriptor = descriptor();
+        final DeadboltHandler deadboltHandler = descriptor.handler;
         return preAuth(true,
                          request,
-                         getContent(),
+                         descriptor.content,
                          deadboltHandler)
                 .thenCompose(preAuthResult -> preAuthResult._1.map(value -> (CompletionStage<Result>) CompletableFuture.completedFuture(value))
                                                            .orElseGet(() -> applyRestriction(preAuthResult._2,
@@ -48,10 +48,11 @@ public abstract class AbstractSubjectAction<T> extends AbstractDeadboltAction<T>
     @Override
     public CompletionStage<Result> execute(final Http.RequestHeader request) throws Exception
     {
-        final DeadboltHandler deadboltHandler = getDeadboltHandler(getHandlerKey());
+        final ConstraintDescriptor descriptor = descriptor();
+        final DeadboltHandler deadboltHandler = descriptor.handler;
         return preAuth(isForceBeforeAuthCheck(),
                          request,
-                         getContent(),
+                         descriptor.content,
                          deadboltHandler)
                 .thenCompose(preAuthResult -> preAuthResult._1.map(CompletableFuture::completedFuture)
                                                            .orElseGet(testSubject(constraintLogic,
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import play.mvc.Action;
+
+/**
+ * The shape of a Play action chain, as seen from one Deadbolt action in it.  Action chains are built from the
+ * annotations of a controller method, so {@link ActionChains} shares the shape between the actions of later requests.
+ */
+final class ActionChain
+{
+    /**
+     * True if there is another Deadbolt action further down the chain.
+     */
+    final boolean deadboltActionLeft;
+
+    /**
+     * True if there is a constraint before or after the action, see {@link #isConstraint(Action)}.
+     */
+    final boolean constraintInChain;
+
+    /**
+     * True if an action in the chain defers, or runs deferred actions.
+     */
+    final boolean deferrals;
+
+    private ActionChain(final boolean deadboltActionLeft,
+                        final boolean constraintInChain,
+                        final boolean deferrals)
+    {
+        this.deadboltActionLeft = deadboltActionLeft;
+        this.constraintInChain = constraintInChain;
+        this.deferrals = deferrals;
+    }
+
+    /**
+     * Get the shape of the chain that an action is part of.
+     *
+     * @param action the action
+     * @return the shape of the chain
+     */
+    static ActionChain of(final AbstractDeadboltAction<?> action)
+    {
+        boolean deadboltActionLeft = false;
+        boolean constraintInChain = false;
+        boolean deferrals = false;
+        for (Action<?> next = action.delegate; next != null; next = next.delegate)
+        {
+            deadboltActionLeft |= next instanceof AbstractDeadboltAction;
+            constraintInChain |= isConstraint(next);
+            deferrals |= defers(next);
+        }
+        for (Action<?> previous = action; previous != null; previous = previous.precursor)
+        {
+            constraintInChain |= isConstraint(previous);
+            deferrals |= defers(previous);
+        }
+        return new ActionChain(deadboltActionLeft,
+                               constraintInChain,
+                               deferrals);
+    }
+
+    /**
+     * Be aware: Not every deadbolt-annotation is a constraint, but every constraint is a deadbolt-annotation ;)
+     * &#64;BeforeAccess and &#64;DeferredDeadboltAction do NOT count as constraint, because they just pass trough (=they do NOT call markAsAuthorised() in success case)
+     */
+    private static boolean isConstraint(final Action<?> action)
+    {
+        return action instanceof AbstractDeadboltAction
+               && !(action instanceof BeforeAccessAction)
+               && !(action instanceof DeferredDeadboltAction);
+    }
+
+    private static boolean defers(final Action<?> action)
+    {
+        return action instanceof DeferredDeadboltAction
+               || (action instanceof AbstractDeadboltAction && ((AbstractDeadboltAction<?>) action).deferred());
+    }
+}
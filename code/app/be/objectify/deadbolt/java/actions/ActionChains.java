@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import play.api.routing.HandlerDef;
+import play.mvc.Http;
+import play.routing.Router;
+
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the {@link ActionChain} of a route and annotation between all the actions created for it.  The shapes belong
+ * to the application, so they are released with it rather than kept for the life of the class loader.
+ * <p>
+ * Deferring an action re-links the chain while the request is processed, so chains that can defer are not shared;
+ * their shape is computed again whenever it is needed.
+ */
+@Singleton
+public class ActionChains
+{
+    private final ConcurrentMap<Key, ActionChain> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Get the shape of the chain that an action is part of.
+     *
+     * @param action  the action
+     * @param request the request, which identifies the route
+     * @return the shape of the chain
+     */
+    ActionChain get(final AbstractDeadboltAction<?> action,
+                    final Http.RequestHeader request)
+    {
+        final Annotation configuration = action.configuration instanceof Annotation ? (Annotation) action.configuration
+                                                                                    : null;
+        final Optional<HandlerDef> handlerDef = configuration == null ? Optional.empty()
+                                                                      : request.attrs().getOptional(Router.Attrs.HANDLER_DEF);
+        if (!handlerDef.isPresent())
+        {
+            // the action was created outside of a routed request
+            return ActionChain.of(action);
+        }
+
+        final Key key = new Key(handlerDef.get(),
+                                configuration);
+        final ActionChain chain = routes.get(key);
+        if (chain == null)
+        {
+            final ActionChain created = ActionChain.of(action);
+            routes.putIfAbsent(key,
+                               created);
+            return created;
+        }
+        return chain.deferrals ? ActionChain.of(action)
+                               : chain;
+    }
+
+    private static final class Key
+    {
+        private final HandlerDef handlerDef;
+
+        private final Annotation configuration;
+
+        private final int hashCode;
+
+        private Key(final HandlerDef handlerDef,
+                    final Annotation configuration)
+        {
+            this.handlerDef = handlerDef;
+            this.configuration = configuration;
+            // Play reads the annotations of a route once, so each annotation has a single instance
+            this.hashCode = 31 * handlerDef.hashCode() + System.identityHashCode(configuration);
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key key = (Key) o;
+            return configuration == key.configuration && Objects.equals(handlerDef,
+                                                                        key.handlerDef);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
@@ -48,13 +48,14 @@ public class BeforeAccessAction extends AbstractDeadboltAction<BeforeAccess>
     @Override
     public CompletionStage<Result> execute(final Http.RequestHeader request) throws Exception
     {
-        final DeadboltHandler deadboltHandler = getDeadboltHandler(getHandlerKey());
+        final ConstraintDescriptor descriptor = descriptor();
+        final DeadboltHandler deadboltHandler = descriptor.handler;
         return preAuth(true,
                          request,
-                         getContent(),
+                         descriptor.content,
                          deadboltHandler)
                 .thenCompose(preAuthResult -> preAuthResult._1.map(value -> (CompletionStage<Result>) CompletableFuture.completedFuture(value))
-                                                           .orElseGet(() -> delegate.call((Http.Request)preAuthResult._2)));
+                                                           .orElseGet(() -> callDelegate((Http.Request)preAuthResult._2)));
     }
 
     @Override
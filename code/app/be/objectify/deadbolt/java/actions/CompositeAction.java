@@ -21,6 +21,7 @@ import be.objectify.deadbolt.java.DeadboltHandler;
 import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
 import be.objectify.deadbolt.java.cache.CompositeCache;
 import be.objectify.deadbolt.java.cache.HandlerCache;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
 import com.typesafe.config.Config;
 import play.mvc.Http;
 import play.mvc.Result;
@@ -28,12 +29,17 @@ import play.mvc.Result;
 import javax.inject.Inject;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
 
 /**
  * @author Steve Chaloner (steve@objectify.be)
  */
 public class CompositeAction extends AbstractRestrictiveAction<Composite>
 {
+    private static final BiFunction<Optional<String>, Optional<String>, Optional<String>> PREFER_GLOBAL_META = (globalMd, localMd) -> globalMd.isPresent() ? globalMd : localMd;
+
+    private static final BiFunction<Optional<String>, Optional<String>, Optional<String>> PREFER_LOCAL_META = (globalMd, localMd) -> localMd.isPresent() ? localMd : globalMd;
+
     private final CompositeCache compositeCache;
 
     @Inject
@@ -54,24 +60,35 @@ public class CompositeAction extends AbstractRestrictiveAction<Composite>
     public CompletionStage<Result> applyRestriction(final Http.RequestHeader request,
                                                     final DeadboltHandler handler)
     {
+        final DeadboltMetrics metrics = metrics();
+        final long start = metrics.enabled() ? System.nanoTime()
+                                             : 0L;
         return compositeCache.apply(configuration.value())
                              .map(constraint ->
                                   {
-                                      final boolean preferGlobalMeta = configuration.preferGlobalMeta();
                                       return constraint.test(request,
                                                              handler,
                                                              Optional.ofNullable(configuration.meta()),
-                                                             (globalMd, localMd) -> preferGlobalMeta ? globalMd.isPresent() ? globalMd : localMd
-                                                                                                     : localMd.isPresent() ? localMd : globalMd)
-                                                       .thenCompose(allowed -> allowed._1 ? authorizeAndExecute(allowed._2,
-                                                                                                             handler)
-                                                                                       : unauthorizeAndFail(allowed._2,
-                                                                                                            handler,
-                                                                                                            getContent()));
+                                                             configuration.preferGlobalMeta() ? PREFER_GLOBAL_META
+                                                                                              : PREFER_LOCAL_META)
+                                                       .thenCompose(allowed -> {
+                                                           if (metrics.enabled())
+                                                           {
+                                                               metrics.recordConstraint("composite",
+                                                                                        ConstraintPoint.CONTROLLER,
+                                                                                        allowed._1,
+                                                                                        System.nanoTime() - start);
+                                                           }
+                                                           return allowed._1 ? authorizeAndExecute(allowed._2,
+                                                                                                   handler)
+                                                                             : unauthorizeAndFail(allowed._2,
+                                                                                                  handler,
+                                                                                                  descriptor().content);
+                                                       });
                                   })
                              .orElseGet(() -> unauthorizeAndFail(request,
                                                                  handler,
-                                                                 getContent()));
+                                                                 descriptor().content));
     }
 
     @Override
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.RoleGroup;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The configuration of a Deadbolt action, compiled from its annotation.  Annotation values don't change, so the
+ * handler is resolved, the content type hint is wrapped and the role groups are parsed once, rather than on every
+ * request.
+ */
+final class ConstraintDescriptor
+{
+    /**
+     * The handler named by the annotation, or the default handler.
+     */
+    final DeadboltHandler handler;
+
+    /**
+     * The content type hint.
+     */
+    final Optional<String> content;
+
+    /**
+     * The role groups of a restrict constraint, with negations resolved.  Empty for other constraints.
+     */
+    final List<RoleGroup> roleGroups;
+
+    private ConstraintDescriptor(final DeadboltHandler handler,
+                                 final Optional<String> content,
+                                 final List<RoleGroup> roleGroups)
+    {
+        this.handler = handler;
+        this.content = content;
+        this.roleGroups = roleGroups;
+    }
+
+    static ConstraintDescriptor of(final AbstractDeadboltAction<?> action)
+    {
+        return new ConstraintDescriptor(action.getDeadboltHandler(action.getHandlerKey()),
+                                        action.getContent(),
+                                        RoleGroup.of(action.roleGroups()));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import javax.inject.Singleton;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the {@link ConstraintDescriptor} of an annotation between all the actions created for it.  Play creates a new
+ * action for each request, but reads the annotations of a route only once, so an annotation instance and action class
+ * identify a descriptor.
+ * <p>
+ * An action class outside of Deadbolt that overrides how the handler, content type hint or role groups are found may
+ * give a different answer for each request, so its descriptors are not shared.
+ */
+@Singleton
+public class ConstraintDescriptors
+{
+    /**
+     * The methods that {@link ConstraintDescriptor#of(AbstractDeadboltAction)} reads the configuration from.
+     */
+    private static final Set<String> CONFIGURATION_METHODS = Set.of("getDeadboltHandler",
+                                                                    "getContent",
+                                                                    "getHandlerKey",
+                                                                    "getRoleGroups",
+                                                                    "roleGroups");
+
+    /**
+     * Deadbolt's own actions, which read the configuration from their annotation.
+     */
+    private static final Set<Class<?>> DEADBOLT_ACTIONS = Set.of(AbstractDeadboltAction.class,
+                                                                 AbstractRestrictiveAction.class,
+                                                                 AbstractSubjectAction.class,
+                                                                 BeforeAccessAction.class,
+                                                                 CompositeAction.class,
+                                                                 DeferredDeadboltAction.class,
+                                                                 DynamicAction.class,
+                                                                 PatternAction.class,
+                                                                 RestrictAction.class,
+                                                                 RoleBasedPermissionsAction.class,
+                                                                 SubjectNotPresentAction.class,
+                                                                 SubjectPresentAction.class,
+                                                                 UnrestrictedAction.class);
+
+    private final ConcurrentMap<Key, ConstraintDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, Boolean> shareable = new ConcurrentHashMap<>();
+
+    ConstraintDescriptor get(final AbstractDeadboltAction<?> action)
+    {
+        if (action.configuration == null || !shareable.computeIfAbsent(action.getClass(),
+                                                                       ConstraintDescriptors::isShareable))
+        {
+            return ConstraintDescriptor.of(action);
+        }
+
+        final Key key = new Key(action.getClass(),
+                                action.configuration);
+        final ConstraintDescriptor descriptor = descriptors.get(key);
+        return descriptor != null ? descriptor
+                                  : descriptors.computeIfAbsent(key,
+                                                                k -> ConstraintDescriptor.of(action));
+    }
+
+    /**
+     * @return true if neither the action class nor any of its superclasses outside of Deadbolt declares a method that
+     * the configuration is read from
+     */
+    private static boolean isShareable(final Class<?> actionClass)
+    {
+        for (Class<?> type = actionClass; type != null && !DEADBOLT_ACTIONS.contains(type); type = type.getSuperclass())
+        {
+            for (Method method : type.getDeclaredMethods())
+            {
+                if (CONFIGURATION_METHODS.contains(method.getName()))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static final class Key
+    {
+        private final Class<?> actionClass;
+
+        private final Object configuration;
+
+        private Key(final Class<?> actionClass,
+                    final Object configuration)
+        {
+            this.actionClass = actionClass;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key key = (Key) o;
+            return actionClass == key.actionClass && configuration == key.configuration;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * actionClass.hashCode() + System.identityHashCode(configuration);
+        }
+    }
+}
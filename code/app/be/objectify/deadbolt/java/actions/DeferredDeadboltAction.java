@@ -48,7 +48,7 @@ public class DeferredDeadboltAction extends AbstractDeadboltAction<DeferredDeadb
     @Override
     public CompletionStage<Result> execute(final Http.RequestHeader request) throws Exception
     {
-        return delegate.call((Http.Request)request);
+        return callDelegate((Http.Request)request);
     }
 
     @Override
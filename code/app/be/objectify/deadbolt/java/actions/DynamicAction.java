@@ -70,7 +70,7 @@ public class DynamicAction extends AbstractRestrictiveAction<Dynamic>
     {
         return constraintLogic.dynamic(request,
                                        deadboltHandler,
-                                       getContent(),
+                                       descriptor().content,
                                        configuration.value(),
                                        Optional.ofNullable(configuration.meta()),
                                        this::authorizeAndExecute,
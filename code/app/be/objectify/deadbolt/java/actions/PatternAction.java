@@ -67,7 +67,7 @@ public class PatternAction extends AbstractRestrictiveAction<Pattern>
     {
         return constraintLogic.pattern(request,
                                        deadboltHandler,
-                                       getContent(),
+                                       descriptor().content,
                                        configuration.value(),
                                        configuration.mode(),
                                        configuration.patternType(),
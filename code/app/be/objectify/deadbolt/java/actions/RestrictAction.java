@@ -70,10 +70,11 @@ public class RestrictAction extends AbstractRestrictiveAction<Restrict>
     public CompletionStage<Result> applyRestriction(final Http.RequestHeader request,
                                                     final DeadboltHandler deadboltHandler)
     {
+        final ConstraintDescriptor descriptor = descriptor();
         return constraintLogic.restrict(request,
                                         deadboltHandler,
-                                        getContent(),
-                                        this::getRoleGroups,
+                                        descriptor.content,
+                                        descriptor.roleGroups,
                                         this::authorizeAndExecute,
                                         this::unauthorizeAndFail,
                                         ConstraintPoint.CONTROLLER);
@@ -94,6 +95,12 @@ public class RestrictAction extends AbstractRestrictiveAction<Restrict>
         return roleGroups;
     }
 
+    @Override
+    List<String[]> roleGroups()
+    {
+        return getRoleGroups();
+    }
+
     @Override
     public Optional<String> getContent()
     {
@@ -44,7 +44,17 @@ public @interface RoleBasedPermissions
      *
      * @return the role name
      */
-    String value();
+    String value() default "";
+
+    /**
+     * Further role names, checked together with {@link #value()}.  Permissions associated with all the roles, obtained
+     * in a single call to
+     * {@link be.objectify.deadbolt.java.DeadboltHandler#getPermissionsForRoles(java.util.Collection)}, are used to test
+     * for authorization; a subject holding a permission that matches any of them is authorized.
+     *
+     * @return the role names
+     */
+    String[] roles() default {};
 
     /**
      * Indicates the expected response type.  Useful when working with non-HTML responses.  This is free text, which you
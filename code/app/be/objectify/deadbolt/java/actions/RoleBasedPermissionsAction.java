@@ -26,6 +26,9 @@ import play.mvc.Http;
 import play.mvc.Result;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
@@ -71,13 +74,30 @@ public class RoleBasedPermissionsAction extends AbstractRestrictiveAction<RoleBa
     {
         return constraintLogic.roleBasedPermissions(request,
                                                     deadboltHandler,
-                                                    getContent(),
-                                                    configuration.value(),
+                                                    descriptor().content,
+                                                    roleNames(configuration),
                                                     this::authorizeAndExecute,
                                                     this::unauthorizeAndFail,
                                                     ConstraintPoint.CONTROLLER);
     }
 
+    /**
+     * @return the role named by {@link RoleBasedPermissions#value()}, if any, followed by those named by
+     * {@link RoleBasedPermissions#roles()}
+     */
+    static List<String> roleNames(final RoleBasedPermissions configuration)
+    {
+        final String[] roles = configuration.roles();
+        final List<String> roleNames = new ArrayList<>(roles.length + 1);
+        if (!configuration.value().isEmpty())
+        {
+            roleNames.add(configuration.value());
+        }
+        Collections.addAll(roleNames,
+                           roles);
+        return roleNames;
+    }
+
     @Override
     protected boolean deferred() {
         return configuration.deferred();
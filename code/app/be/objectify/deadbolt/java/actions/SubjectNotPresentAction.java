@@ -75,7 +75,7 @@ public class SubjectNotPresentAction extends AbstractSubjectAction<SubjectNotPre
     {
         return () -> constraintLogic.subjectNotPresent(request,
                                                         deadboltHandler,
-                                                        getContent(),
+                                                        descriptor().content,
                                                         this::present,
                                                         this::notPresent,
                                                         ConstraintPoint.CONTROLLER).toCompletableFuture();
@@ -74,7 +74,7 @@ public class SubjectPresentAction extends AbstractSubjectAction<SubjectPresent>
     {
         return () -> constraintLogic.subjectPresent(request,
                                                      deadboltHandler,
-                                                     getContent(),
+                                                     descriptor().content,
                                                      this::present,
                                                      this::notPresent,
                                                      ConstraintPoint.CONTROLLER).toCompletableFuture();
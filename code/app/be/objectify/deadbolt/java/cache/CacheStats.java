@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+/**
+ * An immutable snapshot of the statistics of a cache.
+ */
+public final class CacheStats
+{
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    public CacheStats(final long hitCount,
+                      final long missCount,
+                      final long evictionCount,
+                      final long size)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of lookups that were answered from the cache
+     */
+    public long hitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that required a value to be loaded
+     */
+    public long missCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries removed to keep the cache within its bounds
+     */
+    public long evictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of entries in the cache when the snapshot was taken
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the ratio of hits to lookups, or 1.0 if there have been no lookups
+     */
+    public double hitRate()
+    {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0
+                                 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("CacheStats{hitCount=%d, missCount=%d, evictionCount=%d, size=%d}",
+                             hitCount,
+                             missCount,
+                             evictionCount,
+                             size);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, size-bounded map of values that are expensive to create.  Lookups never lock.  When the map grows
+ * beyond its maximum size, entries are evicted using the CLOCK algorithm, an approximation of least-recently-used:
+ * every entry that has been read since the last sweep gets a second chance, and the first one that hasn't is evicted.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class ClockCache<K, V>
+{
+    private final int maxSize;
+
+    private final ConcurrentMap<K, Entry<K, V>> cache = new ConcurrentHashMap<>();
+
+    private final Queue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ClockCache(final int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the value for a key, creating it if it is not present.  Two threads that miss at the same time may both
+     * create the value, but only one of them is cached and both return it.
+     */
+    V get(final K key,
+          final Function<? super K, ? extends V> factory)
+    {
+        final Entry<K, V> cached = cache.get(key);
+        if (cached != null)
+        {
+            hits.increment();
+            return cached.touch();
+        }
+
+        misses.increment();
+        final Entry<K, V> created = new Entry<>(key,
+                                                factory.apply(key));
+        final Entry<K, V> existing = cache.putIfAbsent(key,
+                                                       created);
+        if (existing != null)
+        {
+            return existing.touch();
+        }
+        clock.offer(created);
+        evictIfNecessary();
+        return created.value;
+    }
+
+    /**
+     * Get the value for a key, creating it if it is not present or if the cached value is not current for the argument,
+     * in which case the new value replaces it.  Two threads that miss at the same time may both create the value; one
+     * of them is cached, and the other is returned without being cached.
+     */
+    <A> V get(final K key,
+              final A argument,
+              final BiPredicate<? super V, ? super A> current,
+              final BiFunction<? super K, ? super A, ? extends V> factory)
+    {
+        final Entry<K, V> cached = cache.get(key);
+        if (cached != null && current.test(cached.value,
+                                           argument))
+        {
+            hits.increment();
+            return cached.touch();
+        }
+
+        misses.increment();
+        final Entry<K, V> created = new Entry<>(key,
+                                                factory.apply(key,
+                                                              argument));
+        final boolean stored = cached == null ? cache.putIfAbsent(key,
+                                                                  created) == null
+                                              : cache.replace(key,
+                                                              cached,
+                                                              created);
+        if (stored)
+        {
+            // a replaced entry stays in the clock until the next sweep reaches it, and is then dropped
+            clock.offer(created);
+            evictIfNecessary();
+        }
+        return created.value;
+    }
+
+    CacheStats stats()
+    {
+        return new CacheStats(hits.sum(),
+                              misses.sum(),
+                              evictions.sum(),
+                              cache.size());
+    }
+
+    private void evictIfNecessary()
+    {
+        if (cache.size() > maxSize)
+        {
+            synchronized (evictionLock)
+            {
+                Entry<K, V> candidate;
+                while (cache.size() > maxSize && (candidate = clock.poll()) != null)
+                {
+                    if (candidate.referenced)
+                    {
+                        candidate.referenced = false;
+                        clock.offer(candidate);
+                    }
+                    else if (cache.remove(candidate.key,
+                                          candidate))
+                    {
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Entry<K, V>
+    {
+        private final K key;
+        private final V value;
+        private volatile boolean referenced;
+
+        private Entry(final K key,
+                      final V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        private V touch()
+        {
+            if (!referenced)
+            {
+                // only write when needed, so hot entries don't keep invalidating the cache line
+                referenced = true;
+            }
+            return value;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package be.objectify.deadbolt.java.cache;
 
 import be.objectify.deadbolt.java.composite.Constraint;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -27,4 +28,28 @@ public interface CompositeCache extends Function<String, Optional<Constraint>>
 {
     void register(String name,
                   Constraint constraint);
+
+    /**
+     * Register several constraints at once.  Implementations that support concurrent lookups should make all the
+     * constraints visible atomically.
+     *
+     * @param constraints the constraints, keyed by name
+     */
+    default void registerAll(final Map<String, Constraint> constraints)
+    {
+        constraints.forEach(this::register);
+    }
+
+    /**
+     * Atomically replace all registered constraints, e.g. to reload them at runtime.  Constraints that are not in the
+     * given map are no longer registered afterwards.
+     *
+     * @param constraints the constraints, keyed by name
+     * @throws UnsupportedOperationException if the implementation does not support replacing its constraints
+     */
+    default void replaceAll(final Map<String, Constraint> constraints)
+    {
+        throw new UnsupportedOperationException(String.format("[%s] does not support replacing constraints",
+                                                              getClass().getName()));
+    }
 }
@@ -19,33 +19,75 @@ import be.objectify.deadbolt.java.composite.Constraint;
 import be.objectify.deadbolt.java.composite.ExceptionThrowingConstraint;
 
 import javax.inject.Singleton;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A copy-on-write registry of composite constraints.  Lookups read an immutable snapshot without locking or allocating;
+ * registrations build a new snapshot and publish it atomically, so constraints can be reloaded at runtime while
+ * requests are being processed.
+ *
  * @author Steve Chaloner (steve@objectify.be)
  */
 @Singleton
 public class DefaultCompositeCache implements CompositeCache
 {
-    private static final String NAMESPACE = "composite.constraint.";
+    private volatile Map<String, Optional<Constraint>> constraints = Collections.emptyMap();
 
-    private final Map<String, Constraint> constraints = new HashMap<>();
+    private final ConcurrentMap<String, Optional<Constraint>> unregistered = new ConcurrentHashMap<>();
 
     @Override
     public Optional<Constraint> apply(final String name)
     {
-        final Constraint constraint = constraints.get(NAMESPACE + name);
-        return Optional.of(constraint != null ? constraint
-                                              : new ExceptionThrowingConstraint(name));
+        final Optional<Constraint> constraint = constraints.get(name);
+        if (constraint != null)
+        {
+            return constraint;
+        }
+        final Optional<Constraint> exceptionThrowing = unregistered.get(name);
+        return exceptionThrowing != null ? exceptionThrowing
+                                         : unregistered.computeIfAbsent(name,
+                                                                        key -> Optional.of(new ExceptionThrowingConstraint(key)));
     }
 
     @Override
     public void register(final String name,
                          final Constraint constraint)
     {
-        constraints.put(NAMESPACE + name,
-                        constraint);
+        registerAll(Collections.singletonMap(name,
+                                             constraint));
+    }
+
+    @Override
+    public synchronized void registerAll(final Map<String, Constraint> constraints)
+    {
+        final Map<String, Optional<Constraint>> snapshot = new HashMap<>(this.constraints);
+        snapshot.putAll(wrap(constraints));
+        publish(snapshot);
+    }
+
+    @Override
+    public synchronized void replaceAll(final Map<String, Constraint> constraints)
+    {
+        publish(wrap(constraints));
+    }
+
+    private void publish(final Map<String, Optional<Constraint>> snapshot)
+    {
+        this.constraints = Collections.unmodifiableMap(snapshot);
+        unregistered.keySet().removeAll(snapshot.keySet());
+    }
+
+    private static Map<String, Optional<Constraint>> wrap(final Map<String, Constraint> constraints)
+    {
+        final Map<String, Optional<Constraint>> wrapped = new HashMap<>();
+        constraints.forEach((name, constraint) -> wrapped.put(Objects.requireNonNull(name),
+                                                              Optional.of(constraint)));
+        return wrapped;
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Subject;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * The default decision cache, which caches nothing.
+ */
+@Singleton
+public class DefaultDynamicDecisionCache implements DynamicDecisionCache
+{
+    @Override
+    public boolean enabled()
+    {
+        return false;
+    }
+
+    @Override
+    public CompletionStage<Map<String, Boolean>> apply(final DeadboltHandler deadboltHandler,
+                                                       final Optional<? extends Subject> subject,
+                                                       final List<String> names,
+                                                       final Optional<String> meta,
+                                                       final Function<List<String>, CompletionStage<Map<String, Boolean>>> decide)
+    {
+        return decide.apply(names);
+    }
+}
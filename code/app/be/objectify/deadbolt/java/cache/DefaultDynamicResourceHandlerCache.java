@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.DynamicResourceHandler;
+import com.typesafe.config.Config;
+import play.libs.F;
+import play.libs.typedmap.TypedKey;
+import play.mvc.Http;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * If deadbolt.java.cache-dynamic-resource-handler is true, the dynamic resource handler of each {@link DeadboltHandler}
+ * is stored in the request attributes the first time it is resolved, so the dynamic and custom pattern constraints
+ * that are applied to the same request share it.  Otherwise, the handler is asked every time.
+ */
+@Singleton
+public class DefaultDynamicResourceHandlerCache implements DynamicResourceHandlerCache
+{
+    private final boolean cacheDynamicResourceHandlerPerRequestEnabled;
+    private final ConcurrentMap<Long, TypedKey<DynamicResourceHandler>> typedKeyCache = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultDynamicResourceHandlerCache(final Config config)
+    {
+        this(config.getBoolean("deadbolt.java.cache-dynamic-resource-handler"));
+    }
+
+    public DefaultDynamicResourceHandlerCache(final boolean cacheDynamicResourceHandlerPerRequestEnabled)
+    {
+        this.cacheDynamicResourceHandlerPerRequestEnabled = cacheDynamicResourceHandlerPerRequestEnabled;
+    }
+
+    @Override
+    public CompletionStage<F.Tuple<Optional<DynamicResourceHandler>, Http.RequestHeader>> apply(final DeadboltHandler deadboltHandler,
+                                                                                               final Http.RequestHeader requestHeader)
+    {
+        if (cacheDynamicResourceHandlerPerRequestEnabled)
+        {
+            final TypedKey<DynamicResourceHandler> deadboltHandlerCacheId = this.typedKeyCache.computeIfAbsent(deadboltHandler.getId(), k -> TypedKey.create("deadbolt.java.cache-dynamic-resource-handler." + k));
+            final Optional<DynamicResourceHandler> cachedHandler = requestHeader.attrs().getOptional(deadboltHandlerCacheId);
+            if (cachedHandler.isPresent())
+            {
+                return CompletableFuture.completedFuture(F.Tuple(cachedHandler, requestHeader));
+            }
+            else
+            {
+                return deadboltHandler.getDynamicResourceHandler(requestHeader).thenApply(handlerOption -> handlerOption.map(drh -> F.Tuple(handlerOption, requestHeader.addAttr(deadboltHandlerCacheId, drh))).orElseGet(() -> F.Tuple(handlerOption, requestHeader)));
+            }
+        }
+        return deadboltHandler.getDynamicResourceHandler(requestHeader).thenApply(handlerOption -> F.Tuple(handlerOption, requestHeader));
+    }
+}
@@ -15,23 +15,166 @@
  */
 package be.objectify.deadbolt.java.cache;
 
+import be.objectify.deadbolt.java.PermissionMatcher;
+import be.objectify.deadbolt.java.models.Permission;
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
+ * A thread-safe, size-bounded cache of compiled patterns.  Lookups never lock.  When the cache grows beyond its
+ * maximum size, entries are evicted using the CLOCK algorithm, an approximation of least-recently-used: every entry
+ * that has been read since the last sweep gets a second chance, and the first one that hasn't is evicted.
+ * <p>
+ * Combined matchers for sets of patterns are cached separately with the same maximum size, keyed on the pattern
+ * values.  Matchers for the permissions of a role are cached by role name, and rebuilt when the values of the role's
+ * permissions change; checking that they haven't compares the values in place, without copying or hashing them.
+ * <p>
+ * The maximum size is read from deadbolt.java.pattern-cache.max-size.
+ *
  * @author Steve Chaloner (steve@objectify.be)
  */
 @Singleton
 public class DefaultPatternCache implements PatternCache
 {
-    private final Map<String, Pattern> cache = new HashMap<>();
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final ClockCache<String, Pattern> patterns;
+
+    private final ClockCache<List<String>, PermissionMatcher> matchers;
+
+    private final ClockCache<String, RoleMatcher> roleMatchers;
+
+    // held in a field so a lookup doesn't allocate a lambda
+    private final BiFunction<String, List<? extends Permission>, RoleMatcher> newRoleMatcher = (roleName, permissions) -> new RoleMatcher(permissions,
+                                                                                                                                          this);
+
+    public DefaultPatternCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    @Inject
+    public DefaultPatternCache(final Config config)
+    {
+        this(config.getInt("deadbolt.java.pattern-cache.max-size"));
+    }
+
+    public DefaultPatternCache(final int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException(String.format("The maximum size of the pattern cache must be at least 1, but was [%d]",
+                                                             maxSize));
+        }
+        this.patterns = new ClockCache<>(maxSize);
+        this.matchers = new ClockCache<>(maxSize);
+        this.roleMatchers = new ClockCache<>(maxSize);
+    }
 
     @Override
     public Pattern apply(final String patternValue)
     {
-        return cache.computeIfAbsent(patternValue,
-                                     Pattern::compile);
+        return patterns.get(patternValue,
+                            Pattern::compile);
+    }
+
+    @Override
+    public PermissionMatcher matcher(final Collection<String> patternValues)
+    {
+        // an unmodifiable list is used as-is, anything else is copied so the key can't change after it's cached
+        return matchers.get(List.copyOf(patternValues),
+                            values -> PermissionMatcher.of(values,
+                                                           this));
+    }
+
+    @Override
+    public PermissionMatcher roleMatcher(final String roleName,
+                                         final List<? extends Permission> permissions)
+    {
+        return roleMatchers.get(roleName,
+                                permissions,
+                                RoleMatcher::isFor,
+                                newRoleMatcher).matcher;
+    }
+
+    /**
+     * Gets the current statistics of the compiled pattern cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats stats()
+    {
+        return patterns.stats();
+    }
+
+    /**
+     * Gets the current statistics of the combined matcher cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats matcherStats()
+    {
+        return matchers.stats();
+    }
+
+    /**
+     * Gets the current statistics of the per-role matcher cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats roleMatcherStats()
+    {
+        return roleMatchers.stats();
+    }
+
+    /**
+     * A matcher for the permissions of a role, with the permission values it was built from.
+     */
+    private static final class RoleMatcher
+    {
+        private final String[] values;
+
+        private final PermissionMatcher matcher;
+
+        private RoleMatcher(final List<? extends Permission> permissions,
+                            final Function<String, Pattern> compiler)
+        {
+            this.values = new String[permissions.size()];
+            int i = 0;
+            for (Permission permission : permissions)
+            {
+                values[i++] = permission == null ? null
+                                                 : permission.getValue();
+            }
+            this.matcher = PermissionMatcher.ofPermissions(permissions,
+                                                           compiler);
+        }
+
+        private boolean isFor(final List<? extends Permission> permissions)
+        {
+            if (permissions.size() != values.length)
+            {
+                return false;
+            }
+            int i = 0;
+            for (Permission permission : permissions)
+            {
+                if (!Objects.equals(values[i++],
+                                    permission == null ? null
+                                                       : permission.getValue()))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
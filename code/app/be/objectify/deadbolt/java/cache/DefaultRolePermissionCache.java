@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Permission;
+
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Asks the handler for the permissions of every role, every time.  The permissions of a single role are obtained with
+ * {@link DeadboltHandler#getPermissionsForRole(String)}, and those of several roles with one call to
+ * {@link DeadboltHandler#getPermissionsForRoles(Collection)}.
+ */
+@Singleton
+public class DefaultRolePermissionCache implements RolePermissionCache
+{
+    @Override
+    public CompletionStage<Map<String, List<? extends Permission>>> apply(final DeadboltHandler deadboltHandler,
+                                                                          final Collection<String> roleNames)
+    {
+        return load(deadboltHandler,
+                    roleNames);
+    }
+
+    static CompletionStage<Map<String, List<? extends Permission>>> load(final DeadboltHandler deadboltHandler,
+                                                                         final Collection<String> roleNames)
+    {
+        if (roleNames.size() == 1)
+        {
+            final String roleName = roleNames.iterator().next();
+            return deadboltHandler.getPermissionsForRole(roleName)
+                                  .thenApply(permissions -> Collections.<String, List<? extends Permission>>singletonMap(roleName,
+                                                                                                                         permissions));
+        }
+        return deadboltHandler.getPermissionsForRoles(roleNames);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.DynamicResourceHandler;
+import be.objectify.deadbolt.java.models.Subject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Decides dynamic constraints, possibly from decisions made for earlier requests.  This is only consulted when
+ * {@link #enabled()} is true; otherwise the {@link DynamicResourceHandler} is asked for every decision.
+ */
+public interface DynamicDecisionCache
+{
+    /**
+     * @return true if decisions are cached
+     */
+    boolean enabled();
+
+    /**
+     * Decide the dynamic constraints with the given names.
+     *
+     * @param deadboltHandler the handler
+     * @param subject         the current subject
+     * @param names           the resource names
+     * @param meta            additional information on the resources
+     * @param decide          decides the constraints that can't be answered from the cache, by asking the dynamic
+     *                        resource handler
+     * @return a map from each name to true if access to the resource is allowed
+     */
+    CompletionStage<Map<String, Boolean>> apply(DeadboltHandler deadboltHandler,
+                                                Optional<? extends Subject> subject,
+                                                List<String> names,
+                                                Optional<String> meta,
+                                                Function<List<String>, CompletionStage<Map<String, Boolean>>> decide);
+}
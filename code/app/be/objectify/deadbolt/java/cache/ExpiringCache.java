@@ -0,0 +1,556 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe, size-bounded cache of asynchronously loaded values that expire some time after they were loaded.
+ * <p>
+ * Loading is single-flight: while a value is being loaded, every lookup for the same key shares the same in-flight
+ * {@link CompletionStage} instead of starting another load.  Loads that fail, and values rejected by the retention
+ * predicate, are not cached.  A load that hasn't completed within the time-to-live of its key is abandoned, and the
+ * next lookup starts another one.  When the cache grows beyond its maximum size, expired entries are evicted first and then
+ * the CLOCK algorithm is used, as in {@link DefaultPatternCache}.
+ * <p>
+ * The time-to-live can depend on the key, and a stale-while-revalidate period can be given.  During that period after a
+ * value expires, lookups still return it immediately, and the first of them reloads it in the background; the reloaded
+ * value replaces the stale one when it arrives.  If the reload fails, the stale value is kept and the next lookup tries
+ * again.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class ExpiringCache<K, V>
+{
+    private final ToLongFunction<? super K> ttlNanos;
+
+    private final long staleNanos;
+
+    private final int maxSize;
+
+    private final Predicate<? super V> retain;
+
+    private final LongSupplier ticker;
+
+    private final ConcurrentMap<K, Entry> cache = new ConcurrentHashMap<>();
+
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ttl     how long a loaded value is kept
+     * @param maxSize the maximum number of entries
+     * @param retain  values that do not match this predicate are returned to the caller but not cached
+     */
+    public ExpiringCache(final Duration ttl,
+                         final int maxSize,
+                         final Predicate<? super V> retain)
+    {
+        this(ttl,
+             maxSize,
+             retain,
+             System::nanoTime);
+    }
+
+    ExpiringCache(final Duration ttl,
+                  final int maxSize,
+                  final Predicate<? super V> retain,
+                  final LongSupplier ticker)
+    {
+        this(fixed(ttl),
+             Duration.ZERO,
+             maxSize,
+             retain,
+             ticker);
+    }
+
+    /**
+     * @param ttl                  how long the value of a key is kept.  Every time-to-live must be positive.
+     * @param staleWhileRevalidate how long an expired value can still be returned while it is reloaded, or zero
+     * @param maxSize              the maximum number of entries
+     * @param retain               values that do not match this predicate are returned to the caller but not cached
+     */
+    public ExpiringCache(final Function<? super K, Duration> ttl,
+                         final Duration staleWhileRevalidate,
+                         final int maxSize,
+                         final Predicate<? super V> retain)
+    {
+        this(ttl,
+             staleWhileRevalidate,
+             maxSize,
+             retain,
+             System::nanoTime);
+    }
+
+    ExpiringCache(final Function<? super K, Duration> ttl,
+                  final Duration staleWhileRevalidate,
+                  final int maxSize,
+                  final Predicate<? super V> retain,
+                  final LongSupplier ticker)
+    {
+        if (staleWhileRevalidate.isNegative())
+        {
+            throw new IllegalArgumentException(String.format("The stale-while-revalidate period of the cache must not be negative, but was [%s]",
+                                                             staleWhileRevalidate));
+        }
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException(String.format("The maximum size of the cache must be at least 1, but was [%d]",
+                                                             maxSize));
+        }
+        this.ttlNanos = key -> ttl.apply(key).toNanos();
+        this.staleNanos = staleWhileRevalidate.toNanos();
+        this.maxSize = maxSize;
+        this.retain = retain;
+        this.ticker = ticker;
+    }
+
+    private static <K> Function<K, Duration> fixed(final Duration ttl)
+    {
+        if (ttl.isNegative() || ttl.isZero())
+        {
+            throw new IllegalArgumentException(String.format("The time-to-live of the cache must be positive, but was [%s]",
+                                                             ttl));
+        }
+        return key -> ttl;
+    }
+
+    /**
+     * Get the value for a key, loading it if it is not present or has expired.
+     *
+     * @param key    the key
+     * @param loader loads the value if required.  At most one load per key is in flight at any time.
+     * @return the cached, in-flight or newly loaded value
+     */
+    public CompletionStage<V> get(final K key,
+                                  final Function<? super K, ? extends CompletionStage<V>> loader)
+    {
+        final long now = ticker.getAsLong();
+        final Entry cached = cached(key,
+                                    now);
+        if (cached != null)
+        {
+            if (cached.startRefresh(now))
+            {
+                try
+                {
+                    loader.apply(key).whenComplete((value, error) -> refreshed(cached,
+                                                                               value,
+                                                                               error));
+                }
+                catch (RuntimeException e)
+                {
+                    refreshed(cached,
+                              null,
+                              e);
+                }
+            }
+            return cached.touch();
+        }
+
+        final Entry created = new Entry(key,
+                                        now);
+        final Entry current = claim(created,
+                                    now);
+        if (current != created)
+        {
+            return current.touch();
+        }
+
+        try
+        {
+            loader.apply(key).whenComplete(created::complete);
+        }
+        catch (RuntimeException e)
+        {
+            created.complete(null,
+                             e);
+        }
+        return created.future.copy();
+    }
+
+    /**
+     * Get the values for several keys, loading every key that is not present or has expired with a single call to the
+     * loader.  Keys that are already being loaded share the in-flight load, as in {@link #get(Object, Function)}, and
+     * are not passed to the loader.
+     *
+     * @param keys   the keys
+     * @param loader loads the values of the keys it is given.  A key that is missing from the loaded map is given a null
+     *               value.
+     * @return the values, in the iteration order of the keys
+     */
+    public CompletionStage<Map<K, V>> getAll(final Collection<? extends K> keys,
+                                             final Function<? super Set<K>, ? extends CompletionStage<? extends Map<K, V>>> loader)
+    {
+        final long now = ticker.getAsLong();
+        final Map<K, CompletionStage<V>> stages = new LinkedHashMap<>();
+        final Map<K, Entry> loading = new LinkedHashMap<>();
+        final Map<K, Entry> refreshing = new LinkedHashMap<>();
+        for (K key : keys)
+        {
+            if (stages.containsKey(key))
+            {
+                continue;
+            }
+            Entry entry = cached(key,
+                                 now);
+            if (entry != null && entry.startRefresh(now))
+            {
+                refreshing.put(key,
+                               entry);
+            }
+            if (entry == null)
+            {
+                final Entry created = new Entry(key,
+                                                now);
+                entry = claim(created,
+                              now);
+                if (entry == created)
+                {
+                    loading.put(key,
+                                created);
+                    stages.put(key,
+                               created.future.copy());
+                    continue;
+                }
+            }
+            stages.put(key,
+                       entry.touch());
+        }
+
+        if (!loading.isEmpty())
+        {
+            try
+            {
+                loader.apply(Collections.unmodifiableSet(loading.keySet()))
+                      .whenComplete((values, error) ->
+                                    {
+                                        for (Entry entry : loading.values())
+                                        {
+                                            entry.complete(error == null && values != null ? values.get(entry.key)
+                                                                                           : null,
+                                                           error);
+                                        }
+                                    });
+            }
+            catch (RuntimeException e)
+            {
+                for (Entry entry : loading.values())
+                {
+                    entry.complete(null,
+                                   e);
+                }
+            }
+        }
+        if (!refreshing.isEmpty())
+        {
+            try
+            {
+                loader.apply(Collections.unmodifiableSet(refreshing.keySet()))
+                      .whenComplete((values, error) ->
+                                    {
+                                        for (Entry entry : refreshing.values())
+                                        {
+                                            refreshed(entry,
+                                                      error == null && values != null ? values.get(entry.key)
+                                                                                      : null,
+                                                      error);
+                                        }
+                                    });
+            }
+            catch (RuntimeException e)
+            {
+                for (Entry entry : refreshing.values())
+                {
+                    refreshed(entry,
+                              null,
+                              e);
+                }
+            }
+        }
+
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[stages.size()];
+        int i = 0;
+        for (CompletionStage<V> stage : stages.values())
+        {
+            futures[i++] = stage.toCompletableFuture();
+        }
+        return CompletableFuture.allOf(futures)
+                                .thenApply(ignored ->
+                                           {
+                                               final Map<K, V> values = new LinkedHashMap<>();
+                                               int j = 0;
+                                               for (K key : stages.keySet())
+                                               {
+                                                   @SuppressWarnings("unchecked")
+                                                   final V value = (V) futures[j++].join();
+                                                   values.put(key,
+                                                              value);
+                                               }
+                                               return values;
+                                           });
+    }
+
+    /**
+     * Replaces a stale entry with its reloaded value.  If the reload failed, the stale entry is kept so the next lookup
+     * can try again.
+     */
+    private void refreshed(final Entry stale,
+                           final V value,
+                           final Throwable error)
+    {
+        if (error != null)
+        {
+            stale.refreshing.set(false);
+        }
+        else if (!retain.test(value))
+        {
+            cache.remove(stale.key,
+                         stale);
+        }
+        else
+        {
+            final Entry fresh = new Entry(stale.key,
+                                          ticker.getAsLong());
+            fresh.complete(value,
+                           null);
+            if (cache.replace(stale.key,
+                              stale,
+                              fresh))
+            {
+                clock.offer(fresh);
+                queued.incrementAndGet();
+                evictIfNecessary(ticker.getAsLong());
+            }
+        }
+    }
+
+    private Entry cached(final K key,
+                         final long now)
+    {
+        final Entry cached = cache.get(key);
+        if (cached != null && !cached.isExpired(now))
+        {
+            hits.increment();
+            return cached;
+        }
+        return null;
+    }
+
+    /**
+     * Puts the entry into the cache unless another thread has already put a live entry for the same key.
+     *
+     * @return the entry that is now in the cache, which is the given entry if it must be loaded by the caller
+     */
+    private Entry claim(final Entry created,
+                        final long now)
+    {
+        final Entry current = cache.compute(created.key,
+                                            (k, existing) -> existing == null || existing.isExpired(now) ? created
+                                                                                                         : existing);
+        if (current != created)
+        {
+            // another thread got there first
+            hits.increment();
+            return current;
+        }
+
+        misses.increment();
+        clock.offer(created);
+        queued.incrementAndGet();
+        evictIfNecessary(now);
+        return created;
+    }
+
+    /**
+     * Remove the entry for a key.  A load that is in flight for the key completes normally, but its value is not cached.
+     *
+     * @param key the key
+     */
+    public void invalidate(final K key)
+    {
+        cache.remove(key);
+    }
+
+    /**
+     * Remove every entry whose key matches the predicate.
+     *
+     * @param predicate the predicate
+     */
+    public void invalidateIf(final Predicate<? super K> predicate)
+    {
+        cache.keySet().removeIf(predicate);
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void invalidateAll()
+    {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of entries, including expired entries that have not yet been evicted
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Gets the current statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats stats()
+    {
+        return new CacheStats(hits.sum(),
+                              misses.sum(),
+                              evictions.sum(),
+                              cache.size());
+    }
+
+    private void evictIfNecessary(final long now)
+    {
+        // invalidated and reloaded entries stay in the clock until they're swept, so the clock is swept when it holds
+        // too many of them even if the cache itself is within bounds
+        if (cache.size() > maxSize || queued.get() > 2 * maxSize)
+        {
+            synchronized (evictionLock)
+            {
+                Entry candidate;
+                while ((cache.size() > maxSize || queued.get() > 2 * maxSize) && (candidate = clock.poll()) != null)
+                {
+                    queued.decrementAndGet();
+                    if (cache.get(candidate.key) != candidate)
+                    {
+                        // already removed or replaced
+                        continue;
+                    }
+                    if (cache.size() <= maxSize || (candidate.referenced && !candidate.isExpired(now)))
+                    {
+                        candidate.referenced = false;
+                        clock.offer(candidate);
+                        queued.incrementAndGet();
+                    }
+                    else if (cache.remove(candidate.key,
+                                          candidate))
+                    {
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Entry
+    {
+        private final K key;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long expiresAt;
+        private volatile boolean loaded;
+        private volatile boolean referenced;
+
+        /**
+         * @param key     the key
+         * @param started when the load started.  Until the value is loaded, the entry expires one time-to-live later.
+         */
+        private Entry(final K key,
+                      final long started)
+        {
+            this.key = key;
+            this.expiresAt = started + ttlNanos.applyAsLong(key);
+        }
+
+        private boolean isExpired(final long now)
+        {
+            return loaded ? now - expiresAt - staleNanos >= 0
+                          : now - expiresAt >= 0;
+        }
+
+        private boolean startRefresh(final long now)
+        {
+            return staleNanos > 0
+                   && now - expiresAt >= 0
+                   && refreshing.compareAndSet(false,
+                                               true);
+        }
+
+        private CompletionStage<V> touch()
+        {
+            if (!referenced)
+            {
+                // only write when needed, so hot entries don't keep invalidating the cache line
+                referenced = true;
+            }
+            // each caller gets its own copy, so it can't complete or cancel the load that is shared with others
+            return future.copy();
+        }
+
+        private void complete(final V value,
+                              final Throwable error)
+        {
+            if (error != null)
+            {
+                cache.remove(key,
+                             this);
+                future.completeExceptionally(error);
+            }
+            else
+            {
+                if (retain.test(value))
+                {
+                    expiresAt = ticker.getAsLong() + ttlNanos.applyAsLong(key);
+                    loaded = true;
+                }
+                else
+                {
+                    cache.remove(key,
+                                 this);
+                }
+                future.complete(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Subject;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValue;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the decisions of dynamic constraints across requests, keyed on the subject, the constraint name and
+ * {@link DeadboltHandler#getDynamicDecisionKey(Optional, String, Optional)}.  Constraints without a decision key are
+ * always passed to the dynamic resource handler.  The constraints of a request that are not cached, or have expired,
+ * are decided together, and concurrent requests for the same decision share it.  Decisions that complete without a
+ * value are not cached.
+ * <p>
+ * The time-to-live is read from deadbolt.java.dynamic-decision-cache.ttl, and can be overridden for individual
+ * constraint names in deadbolt.java.dynamic-decision-cache.ttls.  If deadbolt.java.dynamic-decision-cache.stale-while-revalidate
+ * is positive, an expired decision is still used for that long while it is made again in the background, with the
+ * request that found it expired.  The maximum size is read from deadbolt.java.dynamic-decision-cache.max-size.  When a
+ * decision changes, e.g. because a subject's access to a resource is revoked, the subject or the constraint name can be
+ * invalidated so the change is seen before the entry expires.
+ */
+@Singleton
+public class ExpiringDynamicDecisionCache implements DynamicDecisionCache
+{
+    private final ExpiringCache<Key, Boolean> decisions;
+
+    @Inject
+    public ExpiringDynamicDecisionCache(final Config config)
+    {
+        this(config.getDuration("deadbolt.java.dynamic-decision-cache.ttl"),
+             ttls(config.getConfig("deadbolt.java.dynamic-decision-cache.ttls")),
+             config.getDuration("deadbolt.java.dynamic-decision-cache.stale-while-revalidate"),
+             config.getInt("deadbolt.java.dynamic-decision-cache.max-size"));
+    }
+
+    /**
+     * @param ttl                  how long a decision is kept, unless the constraint name has its own time-to-live
+     * @param ttls                 the time-to-live of individual constraint names
+     * @param staleWhileRevalidate how long an expired decision can still be used while it is made again, or zero
+     * @param maxSize              the maximum number of decisions
+     */
+    public ExpiringDynamicDecisionCache(final Duration ttl,
+                                        final Map<String, Duration> ttls,
+                                        final Duration staleWhileRevalidate,
+                                        final int maxSize)
+    {
+        this(ttl,
+             ttls,
+             staleWhileRevalidate,
+             maxSize,
+             System::nanoTime);
+    }
+
+    ExpiringDynamicDecisionCache(final Duration ttl,
+                                 final Map<String, Duration> ttls,
+                                 final Duration staleWhileRevalidate,
+                                 final int maxSize,
+                                 final LongSupplier ticker)
+    {
+        final Map<String, Duration> byName = new HashMap<>(ttls);
+        checkTtl(null,
+                 ttl);
+        byName.forEach(ExpiringDynamicDecisionCache::checkTtl);
+        this.decisions = new ExpiringCache<>(key -> byName.getOrDefault(key.name,
+                                                                        ttl),
+                                             staleWhileRevalidate,
+                                             maxSize,
+                                             Objects::nonNull,
+                                             ticker);
+    }
+
+    /**
+     * Read the time-to-live of each constraint name.  A name may contain dots whether it is quoted or not, and an
+     * unquoted name is read as nested objects, so every path is flattened back into the name.
+     */
+    static Map<String, Duration> ttls(final Config config)
+    {
+        final Map<String, Duration> ttls = new HashMap<>();
+        for (Map.Entry<String, ConfigValue> entry : config.entrySet())
+        {
+            ttls.put(String.join(".",
+                                 ConfigUtil.splitPath(entry.getKey())),
+                     config.getDuration(entry.getKey()));
+        }
+        return ttls;
+    }
+
+    private static void checkTtl(final String name,
+                                 final Duration ttl)
+    {
+        if (ttl.isNegative() || ttl.isZero())
+        {
+            throw new IllegalArgumentException(String.format("The time-to-live of %s must be positive, but was [%s]",
+                                                             name == null ? "dynamic decisions" : "[" + name + "]",
+                                                             ttl));
+        }
+    }
+
+    @Override
+    public boolean enabled()
+    {
+        return true;
+    }
+
+    @Override
+    public CompletionStage<Map<String, Boolean>> apply(final DeadboltHandler deadboltHandler,
+                                                       final Optional<? extends Subject> subject,
+                                                       final List<String> names,
+                                                       final Optional<String> meta,
+                                                       final Function<List<String>, CompletionStage<Map<String, Boolean>>> decide)
+    {
+        final long handlerId = deadboltHandler.getId();
+        final Optional<String> subjectIdentifier = subject.map(Subject::getIdentifier);
+        final List<Key> keys = new ArrayList<>(names.size());
+        final List<String> uncached = new ArrayList<>();
+        for (String name : names)
+        {
+            final Optional<String> decisionKey = deadboltHandler.getDynamicDecisionKey(subjectIdentifier,
+                                                                                      name,
+                                                                                      meta);
+            if (decisionKey.isPresent())
+            {
+                keys.add(new Key(handlerId,
+                                 subjectIdentifier.orElse(null),
+                                 name,
+                                 decisionKey.get()));
+            }
+            else
+            {
+                uncached.add(name);
+            }
+        }
+        if (keys.isEmpty())
+        {
+            return decide.apply(names);
+        }
+
+        final CompletionStage<Map<String, Boolean>> decided = uncached.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyMap())
+                                                                                 : decide.apply(uncached);
+        return decisions.getAll(keys,
+                                missing -> load(missing,
+                                                decide))
+                        .thenCombine(decided,
+                                     (fromCache, fromHandler) ->
+                                     {
+                                         final Map<String, Boolean> results = new LinkedHashMap<>();
+                                         fromCache.forEach((key, allowed) -> results.put(key.name,
+                                                                                         allowed));
+                                         results.putAll(fromHandler);
+                                         return results;
+                                     });
+    }
+
+    private static CompletionStage<Map<Key, Boolean>> load(final Set<Key> keys,
+                                                           final Function<List<String>, CompletionStage<Map<String, Boolean>>> decide)
+    {
+        final List<String> names = new ArrayList<>(keys.size());
+        for (Key key : keys)
+        {
+            names.add(key.name);
+        }
+        return decide.apply(names)
+                     .thenApply(allowed ->
+                                {
+                                    final Map<Key, Boolean> byKey = new HashMap<>();
+                                    for (Key key : keys)
+                                    {
+                                        byKey.put(key,
+                                                  allowed.get(key.name));
+                                    }
+                                    return byKey;
+                                });
+    }
+
+    /**
+     * Remove the cached decisions of a subject, for all handlers.
+     *
+     * @param subjectIdentifier the identifier of the subject
+     */
+    public void invalidateSubject(final String subjectIdentifier)
+    {
+        decisions.invalidateIf(key -> subjectIdentifier.equals(key.subjectIdentifier));
+    }
+
+    /**
+     * Remove the cached decisions of a constraint name, for all subjects and handlers.
+     *
+     * @param name the constraint name
+     */
+    public void invalidateName(final String name)
+    {
+        decisions.invalidateIf(key -> key.name.equals(name));
+    }
+
+    /**
+     * Remove all cached decisions.
+     */
+    public void invalidateAll()
+    {
+        decisions.invalidateAll();
+    }
+
+    /**
+     * Gets the current statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats stats()
+    {
+        return decisions.stats();
+    }
+
+    private static final class Key
+    {
+        private final long handlerId;
+        private final String subjectIdentifier;
+        private final String name;
+        private final String decisionKey;
+
+        private Key(final long handlerId,
+                    final String subjectIdentifier,
+                    final String name,
+                    final String decisionKey)
+        {
+            this.handlerId = handlerId;
+            this.subjectIdentifier = subjectIdentifier;
+            this.name = Objects.requireNonNull(name);
+            this.decisionKey = Objects.requireNonNull(decisionKey);
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key other = (Key) o;
+            return handlerId == other.handlerId
+                   && Objects.equals(subjectIdentifier,
+                                     other.subjectIdentifier)
+                   && name.equals(other.name)
+                   && decisionKey.equals(other.decisionKey);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = Long.hashCode(handlerId);
+            result = 31 * result + Objects.hashCode(subjectIdentifier);
+            result = 31 * result + name.hashCode();
+            return 31 * result + decisionKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Permission;
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Caches the permissions of roles across requests.  The roles that are not cached, or have expired, are loaded together
+ * as in {@link DefaultRolePermissionCache}, and concurrent requests for the same role share a single load.
+ * <p>
+ * The time-to-live and maximum size are read from deadbolt.java.role-permission-cache.ttl and
+ * deadbolt.java.role-permission-cache.max-size.  When the permissions of a role change, the role can be invalidated so
+ * the change is seen before the entry expires.
+ */
+@Singleton
+public class ExpiringRolePermissionCache implements RolePermissionCache
+{
+    private final ExpiringCache<Key, List<? extends Permission>> permissions;
+
+    @Inject
+    public ExpiringRolePermissionCache(final Config config)
+    {
+        this(config.getDuration("deadbolt.java.role-permission-cache.ttl"),
+             config.getInt("deadbolt.java.role-permission-cache.max-size"));
+    }
+
+    public ExpiringRolePermissionCache(final Duration ttl,
+                                       final int maxSize)
+    {
+        this.permissions = new ExpiringCache<>(ttl,
+                                               maxSize,
+                                               Objects::nonNull);
+    }
+
+    @Override
+    public CompletionStage<Map<String, List<? extends Permission>>> apply(final DeadboltHandler deadboltHandler,
+                                                                          final Collection<String> roleNames)
+    {
+        final long handlerId = deadboltHandler.getId();
+        final List<Key> keys = new ArrayList<>(roleNames.size());
+        for (String roleName : roleNames)
+        {
+            keys.add(new Key(handlerId,
+                             roleName));
+        }
+        return permissions.getAll(keys,
+                                  missing -> load(deadboltHandler,
+                                                  missing))
+                          .thenApply(loaded ->
+                                     {
+                                         final Map<String, List<? extends Permission>> byRole = new LinkedHashMap<>();
+                                         loaded.forEach((key, rolePermissions) -> byRole.put(key.roleName,
+                                                                                             rolePermissions == null ? Collections.emptyList()
+                                                                                                                     : rolePermissions));
+                                         return byRole;
+                                     });
+    }
+
+    private static CompletionStage<Map<Key, List<? extends Permission>>> load(final DeadboltHandler deadboltHandler,
+                                                                              final Set<Key> keys)
+    {
+        final Map<String, Key> byRole = new LinkedHashMap<>();
+        for (Key key : keys)
+        {
+            byRole.put(key.roleName,
+                       key);
+        }
+        return DefaultRolePermissionCache.load(deadboltHandler,
+                                               byRole.keySet())
+                                         .thenApply(loaded ->
+                                                    {
+                                                        final Map<Key, List<? extends Permission>> byKey = new HashMap<>();
+                                                        byRole.forEach((roleName, key) -> byKey.put(key,
+                                                                                                    loaded.get(roleName)));
+                                                        return byKey;
+                                                    });
+    }
+
+    /**
+     * Remove the cached permissions of a role, for a single handler.
+     *
+     * @param deadboltHandler the handler the permissions were loaded by
+     * @param roleName        the role name
+     */
+    public void invalidate(final DeadboltHandler deadboltHandler,
+                           final String roleName)
+    {
+        permissions.invalidate(new Key(deadboltHandler.getId(),
+                                       roleName));
+    }
+
+    /**
+     * Remove the cached permissions of a role, for all handlers.
+     *
+     * @param roleName the role name
+     */
+    public void invalidate(final String roleName)
+    {
+        permissions.invalidateIf(key -> key.roleName.equals(roleName));
+    }
+
+    /**
+     * Remove all cached permissions.
+     */
+    public void invalidateAll()
+    {
+        permissions.invalidateAll();
+    }
+
+    /**
+     * Gets the current statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats stats()
+    {
+        return permissions.stats();
+    }
+
+    private static final class Key
+    {
+        private final long handlerId;
+        private final String roleName;
+
+        private Key(final long handlerId,
+                    final String roleName)
+        {
+            this.handlerId = handlerId;
+            this.roleName = Objects.requireNonNull(roleName);
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key other = (Key) o;
+            return handlerId == other.handlerId && roleName.equals(other.roleName);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Long.hashCode(handlerId) + roleName.hashCode();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Subject;
+import com.typesafe.config.Config;
+import play.libs.F;
+import play.mvc.Http;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Caches subjects across requests, keyed on {@link DeadboltHandler#getSubjectKey(Http.RequestHeader)}.  Concurrent
+ * requests for the same key share a single call to {@link DeadboltHandler#getSubject(Http.RequestHeader)}.  Absent
+ * subjects are not cached, so a subject that logs in is seen immediately.
+ * <p>
+ * When a handler doesn't provide a subject key, the request is passed to {@link DefaultSubjectCache}.
+ * <p>
+ * The time-to-live and maximum size are read from deadbolt.java.subject-cache.ttl and
+ * deadbolt.java.subject-cache.max-size.  Entries must be invalidated explicitly, e.g. on logout or when a subject's
+ * roles change, if they should not be served until they expire.
+ */
+@Singleton
+public class ExpiringSubjectCache implements SubjectCache
+{
+    private final SubjectCache fallback;
+
+    private final ExpiringCache<Key, Optional<? extends Subject>> subjects;
+
+    @Inject
+    public ExpiringSubjectCache(final Config config)
+    {
+        this(new DefaultSubjectCache(config),
+             config.getDuration("deadbolt.java.subject-cache.ttl"),
+             config.getInt("deadbolt.java.subject-cache.max-size"));
+    }
+
+    public ExpiringSubjectCache(final SubjectCache fallback,
+                                final Duration ttl,
+                                final int maxSize)
+    {
+        this.fallback = fallback;
+        this.subjects = new ExpiringCache<>(ttl,
+                                            maxSize,
+                                            Optional::isPresent);
+    }
+
+    @Override
+    public CompletionStage<F.Tuple<Optional<? extends Subject>, Http.RequestHeader>> apply(final DeadboltHandler deadboltHandler,
+                                                                                          final Http.RequestHeader requestHeader)
+    {
+        final Optional<String> subjectKey = deadboltHandler.getSubjectKey(requestHeader);
+        if (!subjectKey.isPresent())
+        {
+            return fallback.apply(deadboltHandler,
+                                  requestHeader);
+        }
+        return subjects.get(new Key(deadboltHandler.getId(),
+                                    subjectKey.get()),
+                            key -> deadboltHandler.getSubject(requestHeader))
+                       .thenApply(subject -> F.Tuple(subject,
+                                                     requestHeader));
+    }
+
+    /**
+     * Remove the cached subject for a key, for a single handler.
+     *
+     * @param deadboltHandler the handler the subject was loaded by
+     * @param subjectKey      the subject key
+     */
+    public void invalidate(final DeadboltHandler deadboltHandler,
+                           final String subjectKey)
+    {
+        subjects.invalidate(new Key(deadboltHandler.getId(),
+                                    subjectKey));
+    }
+
+    /**
+     * Remove the cached subject for a key, for all handlers.
+     *
+     * @param subjectKey the subject key
+     */
+    public void invalidate(final String subjectKey)
+    {
+        subjects.invalidateIf(key -> key.subjectKey.equals(subjectKey));
+    }
+
+    /**
+     * Remove all cached subjects.
+     */
+    public void invalidateAll()
+    {
+        subjects.invalidateAll();
+    }
+
+    /**
+     * Gets the current statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats stats()
+    {
+        return subjects.stats();
+    }
+
+    private static final class Key
+    {
+        private final long handlerId;
+        private final String subjectKey;
+
+        private Key(final long handlerId,
+                    final String subjectKey)
+        {
+            this.handlerId = handlerId;
+            this.subjectKey = Objects.requireNonNull(subjectKey);
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key other = (Key) o;
+            return handlerId == other.handlerId && subjectKey.equals(other.subjectKey);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Long.hashCode(handlerId) + subjectKey.hashCode();
+        }
+    }
+}
@@ -15,6 +15,11 @@
  */
 package be.objectify.deadbolt.java.cache;
 
+import be.objectify.deadbolt.java.PermissionMatcher;
+import be.objectify.deadbolt.java.models.Permission;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -23,4 +28,32 @@ import java.util.regex.Pattern;
  */
 public interface PatternCache extends Function<String, Pattern>
 {
+    /**
+     * Get a matcher that tests a value against a set of patterns at once.  The default implementation builds a new
+     * matcher for each call; implementations should cache matchers for sets of patterns that are used repeatedly, such
+     * as the permissions of a role.
+     *
+     * @param patternValues the pattern values.  Null values are not permitted.
+     * @return a matcher for the patterns
+     */
+    default PermissionMatcher matcher(final Collection<String> patternValues)
+    {
+        return PermissionMatcher.of(patternValues,
+                                    this);
+    }
+
+    /**
+     * Get a matcher for the permissions of a role.  The default implementation builds a new matcher for each call;
+     * implementations should cache the matcher for as long as the permissions of the role don't change.
+     *
+     * @param roleName    the name of the role
+     * @param permissions the permissions of the role.  Null permissions and values are ignored.
+     * @return a matcher for the values of the permissions
+     */
+    default PermissionMatcher roleMatcher(final String roleName,
+                                          final List<? extends Permission> permissions)
+    {
+        return PermissionMatcher.ofPermissions(permissions,
+                                               this);
+    }
 }
@@ -45,6 +45,22 @@ public interface Constraint
                                   Optional<String> globalMetaData,
                                   BiFunction<Optional<String>, Optional<String>, Optional<String>> metaFn);
 
+    /**
+     * Indicates whether testing this constraint has no effect beyond its result, such as calling an external service
+     * that records the check.  A {@link ConstraintTree} in adaptive mode only changes the order of constraints that are
+     * side-effect-free.  Defaults to false.
+     * <p>
+     * The built-in constraints call {@link DeadboltHandler#onAuthSuccess} when they pass, record metrics and call the
+     * handler for the subject, so reordering them changes which of those happen.  They are only side-effect-free if
+     * their builder is told so, e.g. with {@code sideEffectFree(true)}, when the application doesn't rely on them.
+     *
+     * @return true if the constraint can be tested in any order, or not at all, without changing anything but the result
+     */
+    default boolean isSideEffectFree()
+    {
+        return false;
+    }
+
     default Constraint and(final Constraint other)
     {
         Objects.requireNonNull(other);
@@ -65,4 +81,42 @@ public interface Constraint
                 test(rh, handler, global, fMeta).thenCompose(passed1 -> passed1._1 ? CompletableFuture.completedFuture(F.Tuple(true, passed1._2))
                                                                                                 : other.test(passed1._2, handler, global, fMeta).thenApply(passed2 -> passed2));
     }
+
+    /**
+     * Combines this constraint and another so that both are tested at the same time.  The result fails as soon as
+     * either constraint fails, without waiting for the other.  Both constraints are given the same request header, and
+     * so is the result, so request attributes set by either constraint are not passed on.
+     *
+     * @param other the other constraint
+     * @return a constraint that passes if both constraints pass
+     */
+    default Constraint parallelAnd(final Constraint other)
+    {
+        Objects.requireNonNull(other);
+        return (rh, handler, global, fMeta) -> ParallelConstraints.test(new Constraint[]{this, other},
+                                                                        false,
+                                                                        rh,
+                                                                        handler,
+                                                                        global,
+                                                                        fMeta);
+    }
+
+    /**
+     * Combines this constraint and another so that both are tested at the same time.  The result passes as soon as
+     * either constraint passes, without waiting for the other.  Both constraints are given the same request header, and
+     * so is the result, so request attributes set by either constraint are not passed on.
+     *
+     * @param other the other constraint
+     * @return a constraint that passes if either constraint passes
+     */
+    default Constraint parallelOr(final Constraint other)
+    {
+        Objects.requireNonNull(other);
+        return (rh, handler, global, fMeta) -> ParallelConstraints.test(new Constraint[]{this, other},
+                                                                        true,
+                                                                        rh,
+                                                                        handler,
+                                                                        global,
+                                                                        fMeta);
+    }
 }
@@ -20,8 +20,8 @@ import be.objectify.deadbolt.java.models.PatternType;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -85,6 +85,7 @@ public class ConstraintBuilders
     {
         private final ConstraintLogic constraintLogic;
         private Optional<String> content = Optional.empty();
+        private boolean sideEffectFree = false;
 
         private SubjectPresentBuilder(final ConstraintLogic constraintLogic)
         {
@@ -98,10 +99,17 @@ public class ConstraintBuilders
             return this;
         }
 
+        public SubjectPresentBuilder sideEffectFree(final boolean sideEffectFree)
+        {
+            this.sideEffectFree = sideEffectFree;
+            return this;
+        }
+
         public SubjectPresentConstraint build()
         {
             return new SubjectPresentConstraint(content,
-                                                constraintLogic);
+                                                constraintLogic,
+                                                sideEffectFree);
         }
     }
 
@@ -109,6 +117,7 @@ public class ConstraintBuilders
     {
         private final ConstraintLogic constraintLogic;
         private Optional<String> content = Optional.empty();
+        private boolean sideEffectFree = false;
 
         private SubjectNotPresentBuilder(final ConstraintLogic constraintLogic)
         {
@@ -122,18 +131,26 @@ public class ConstraintBuilders
             return this;
         }
 
+        public SubjectNotPresentBuilder sideEffectFree(final boolean sideEffectFree)
+        {
+            this.sideEffectFree = sideEffectFree;
+            return this;
+        }
+
         public SubjectNotPresentConstraint build()
         {
             return new SubjectNotPresentConstraint(content,
-                                                   constraintLogic);
+                                                   constraintLogic,
+                                                   sideEffectFree);
         }
     }
 
     public static final class RestrictBuilder
     {
-        private final List<String[]> roleGroups = new LinkedList<>();
+        private final List<String[]> roleGroups = new ArrayList<>();
         private final ConstraintLogic constraintLogic;
         private Optional<String> content = Optional.empty();
+        private boolean sideEffectFree = false;
 
         private RestrictBuilder(final List<String[]> roleGroups,
                                 final ConstraintLogic constraintLogic)
@@ -154,11 +171,18 @@ public class ConstraintBuilders
             return this;
         }
 
+        public RestrictBuilder sideEffectFree(final boolean sideEffectFree)
+        {
+            this.sideEffectFree = sideEffectFree;
+            return this;
+        }
+
         public RestrictConstraint build()
         {
             return new RestrictConstraint(roleGroups,
                                           content,
-                                          constraintLogic);
+                                          constraintLogic,
+                                          sideEffectFree);
         }
     }
 
@@ -170,6 +194,7 @@ public class ConstraintBuilders
         private boolean invert = false;
         private Optional<String> meta = Optional.empty();
         private Optional<String> content = Optional.empty();
+        private boolean sideEffectFree = false;
 
         private PatternBuilder(final String value,
                                final PatternType patternType,
@@ -200,6 +225,12 @@ public class ConstraintBuilders
             return this;
         }
 
+        public PatternBuilder sideEffectFree(final boolean sideEffectFree)
+        {
+            this.sideEffectFree = sideEffectFree;
+            return this;
+        }
+
         public PatternConstraint build()
         {
             return new PatternConstraint(value,
@@ -207,7 +238,8 @@ public class ConstraintBuilders
                                          meta,
                                          invert,
                                          content,
-                                         constraintLogic);
+                                         constraintLogic,
+                                         sideEffectFree);
         }
     }
 
@@ -217,6 +249,7 @@ public class ConstraintBuilders
         private final ConstraintLogic constraintLogic;
         private Optional<String> meta = Optional.empty();
         private Optional<String> content = Optional.empty();
+        private boolean sideEffectFree = false;
 
         private DynamicBuilder(final String name,
                                final ConstraintLogic constraintLogic)
@@ -239,12 +272,19 @@ public class ConstraintBuilders
             return this;
         }
 
+        public DynamicBuilder sideEffectFree(final boolean sideEffectFree)
+        {
+            this.sideEffectFree = sideEffectFree;
+            return this;
+        }
+
         public DynamicConstraint build()
         {
             return new DynamicConstraint(name,
                                          meta,
                                          content,
-                                         constraintLogic);
+                                         constraintLogic,
+                                         sideEffectFree);
         }
     }
 }
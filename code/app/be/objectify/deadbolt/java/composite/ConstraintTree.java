@@ -19,34 +19,130 @@ import be.objectify.deadbolt.java.DeadboltHandler;
 import play.libs.F;
 import play.mvc.Http;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
- * A list of constraints combined by {@link Operator}.  Those constraints may themselves be trees.
+ * A list of constraints combined by {@link Operator}.  Those constraints may themselves be trees.  With
+ * {@link Operator#PARALLEL_AND} and {@link Operator#PARALLEL_OR}, every constraint in the list is tested at once.
+ * <p>
+ * An adaptive tree keeps the latency and pass rate of each constraint, and every {@value #REORDER_INTERVAL} tests it
+ * reorders the constraints of an AND or OR so the ones that are cheap and likely to decide the result are tested
+ * first.  Only {@link Constraint#isSideEffectFree() side-effect-free} constraints are moved, and never past a
+ * constraint that has side effects, so the result is the same as in declaration order.  Constraints have to opt in to
+ * being moved, since even the built-in ones call {@link be.objectify.deadbolt.java.DeadboltHandler#onAuthSuccess}.
  *
  * @author Steve Chaloner (steve@objectify.be)
  */
 public class ConstraintTree implements Constraint
 {
+    static final int REORDER_INTERVAL = 64;
+
     private final Operator operator;
 
-    private final List<Constraint> constraints = new LinkedList<>();
+    private final Branch[] plan;
+
+    private final Constraint[] constraints;
+
+    private final boolean adaptive;
+
+    private final LongSupplier ticker;
+
+    private final AtomicLong tests = new AtomicLong();
+
+    private volatile Branch[] order;
+
+    public ConstraintTree(final Operator operator,
+                          final Constraint... constraints)
+    {
+        this(operator,
+             false,
+             constraints);
+    }
 
+    /**
+     * @param operator    the operator that combines the constraints
+     * @param adaptive    true if side-effect-free constraints should be reordered by their observed cost.  This only
+     *                    applies to {@link Operator#AND} and {@link Operator#OR}.
+     * @param constraints the constraints
+     */
     public ConstraintTree(final Operator operator,
+                          final boolean adaptive,
                           final Constraint... constraints)
+    {
+        this(operator,
+             adaptive,
+             System::nanoTime,
+             constraints);
+    }
+
+    /**
+     * The tree is compiled once into an array of constraints.  A non-empty, non-adaptive child tree with the same
+     * operator is merged into this one, since e.g. (a AND b) AND c is tested exactly like a AND b AND c.
+     */
+    ConstraintTree(final Operator operator,
+                   final boolean adaptive,
+                   final LongSupplier ticker,
+                   final Constraint... constraints)
     {
         this.operator = operator;
-        Arrays.stream(constraints)
-              .filter(Objects::nonNull)
-              .collect(Collectors.toCollection(() -> this.constraints));
+        final List<Constraint> flattened = new ArrayList<>(constraints.length);
+        for (Constraint constraint : constraints)
+        {
+            if (constraint instanceof ConstraintTree
+                && ((ConstraintTree) constraint).operator == operator
+                && !((ConstraintTree) constraint).adaptive
+                && ((ConstraintTree) constraint).constraints.length > 0)
+            {
+                flattened.addAll(Arrays.asList(((ConstraintTree) constraint).constraints));
+            }
+            else if (constraint != null)
+            {
+                flattened.add(constraint);
+            }
+        }
+        this.constraints = flattened.toArray(new Constraint[0]);
+        this.plan = new Branch[this.constraints.length];
+        for (int i = 0; i < plan.length; i++)
+        {
+            plan[i] = new Branch(this.constraints[i]);
+        }
+        this.adaptive = adaptive && (operator == Operator.AND || operator == Operator.OR) && plan.length > 1;
+        this.ticker = ticker;
+        this.order = plan;
+    }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        for (Constraint constraint : constraints)
+        {
+            if (!constraint.isSideEffectFree())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the constraints in the order they are currently tested
+     */
+    List<Constraint> order()
+    {
+        return Arrays.stream(order)
+                     .map(branch -> branch.constraint)
+                     .collect(Collectors.toList());
     }
 
     @Override
@@ -56,23 +152,184 @@ public class ConstraintTree implements Constraint
                                          final BiFunction<Optional<String>, Optional<String>, Optional<String>> metaFn)
     {
         final CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> result;
-        if (constraints.isEmpty())
+        if (plan.length == 0)
         {
             result = CompletableFuture.completedFuture(F.Tuple(false, requestHeader));
         }
+        else if (operator == Operator.PARALLEL_AND || operator == Operator.PARALLEL_OR)
+        {
+            result = ParallelConstraints.test(constraints,
+                                              operator == Operator.PARALLEL_OR,
+                                              requestHeader,
+                                              handler,
+                                              globalMetaData,
+                                              metaFn);
+        }
         else
         {
-            Constraint current = constraints.get(0);
-            for (int i = 1; i < constraints.size(); i++)
+            if (adaptive && tests.incrementAndGet() % REORDER_INTERVAL == 0)
             {
-                current = operator.apply(current,
-                                         constraints.get(i));
+                reorder();
             }
-            result = current.test(requestHeader,
-                                  handler,
-                                  globalMetaData,
-                                  metaFn);
+            result = test(order,
+                          0,
+                          operator == Operator.OR,
+                          requestHeader,
+                          handler,
+                          globalMetaData,
+                          metaFn);
         }
         return result;
     }
+
+    /**
+     * Tests the constraints in order from the given index, stopping at the first one that decides the result.  While
+     * the constraints complete synchronously they are tested in a plain loop, and the stage of the deciding constraint
+     * is returned as it is; the loop only continues in a new stage when a constraint has to wait.
+     */
+    private CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> test(final Branch[] branches,
+                                                                       final int index,
+                                                                       final boolean any,
+                                                                       final Http.RequestHeader requestHeader,
+                                                                       final DeadboltHandler handler,
+                                                                       final Optional<String> globalMetaData,
+                                                                       final BiFunction<Optional<String>, Optional<String>, Optional<String>> metaFn)
+    {
+        Http.RequestHeader current = requestHeader;
+        for (int i = index; ; i++)
+        {
+            final Branch branch = branches[i];
+            final long start = adaptive ? ticker.getAsLong()
+                                        : 0L;
+            final CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> stage = branch.constraint.test(current,
+                                                                                                      handler,
+                                                                                                      globalMetaData,
+                                                                                                      metaFn);
+            final boolean last = i == branches.length - 1;
+            // toCompletableFuture also covers stages such as minimalCompletionStage(), which don't support isDone
+            final CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>> future = stage.toCompletableFuture();
+            if (!future.isDone() || future.isCompletedExceptionally())
+            {
+                final int next = i + 1;
+                return future.thenCompose(passed ->
+                                         {
+                                             if (adaptive)
+                                             {
+                                                 branch.record(passed._1,
+                                                               ticker.getAsLong() - start);
+                                             }
+                                             return passed._1 == any || last ? CompletableFuture.completedFuture(passed)
+                                                                             : test(branches,
+                                                                                    next,
+                                                                                    any,
+                                                                                    passed._2,
+                                                                                    handler,
+                                                                                    globalMetaData,
+                                                                                    metaFn);
+                                         });
+            }
+
+            final F.Tuple<Boolean, Http.RequestHeader> passed = future.join();
+            if (adaptive)
+            {
+                branch.record(passed._1,
+                              ticker.getAsLong() - start);
+            }
+            if (passed._1 == any || last)
+            {
+                return stage;
+            }
+            current = passed._2;
+        }
+    }
+
+    /**
+     * Sorts each run of side-effect-free constraints by expected cost per decisive result, i.e. the mean latency
+     * divided by the probability of passing (for OR) or failing (for AND).  This is the order that minimises the
+     * expected cost of a short-circuiting evaluation.  Constraints with side effects stay where they are.
+     */
+    private synchronized void reorder()
+    {
+        final boolean any = operator == Operator.OR;
+        final Branch[] current = order;
+        final Branch[] reordered = current.clone();
+        final double[] scores = new double[reordered.length];
+        for (int i = 0; i < reordered.length; i++)
+        {
+            scores[i] = reordered[i].score(any);
+        }
+
+        int runStart = 0;
+        while (runStart < reordered.length)
+        {
+            if (!reordered[runStart].constraint.isSideEffectFree())
+            {
+                runStart++;
+                continue;
+            }
+            int runEnd = runStart;
+            while (runEnd < reordered.length && reordered[runEnd].constraint.isSideEffectFree())
+            {
+                runEnd++;
+            }
+            final Integer[] indices = new Integer[runEnd - runStart];
+            for (int i = 0; i < indices.length; i++)
+            {
+                indices[i] = runStart + i;
+            }
+            // the sort is stable, so constraints with equal scores keep their relative order
+            Arrays.sort(indices,
+                        Comparator.comparingDouble(i -> scores[i]));
+            for (int i = 0; i < indices.length; i++)
+            {
+                reordered[runStart + i] = current[indices[i]];
+            }
+            runStart = runEnd;
+        }
+        order = reordered;
+    }
+
+    /**
+     * A constraint and its running statistics.
+     */
+    private static final class Branch
+    {
+        private final Constraint constraint;
+        private final LongAdder tests = new LongAdder();
+        private final LongAdder passes = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        private Branch(final Constraint constraint)
+        {
+            this.constraint = constraint;
+        }
+
+        private void record(final boolean passed,
+                            final long durationNanos)
+        {
+            tests.increment();
+            if (passed)
+            {
+                passes.increment();
+            }
+            totalNanos.add(Math.max(0L,
+                                    durationNanos));
+        }
+
+        private double score(final boolean any)
+        {
+            final long n = tests.sum();
+            if (n == 0)
+            {
+                // never tested, so it's moved to the front where it will be measured
+                return 0.0;
+            }
+            final long p = passes.sum();
+            final double meanNanos = (double) totalNanos.sum() / n;
+            // Laplace smoothing keeps a constraint that has never decided the result from being ruled out forever
+            final double decisive = any ? (p + 1.0) / (n + 2.0)
+                                        : (n - p + 1.0) / (n + 2.0);
+            return meanNanos / decisive;
+        }
+    }
 }
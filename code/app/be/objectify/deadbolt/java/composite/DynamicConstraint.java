@@ -35,16 +35,39 @@ public class DynamicConstraint implements Constraint
     private final Optional<String> meta;
     private final Optional<String> content;
     private final ConstraintLogic constraintLogic;
+    private final boolean sideEffectFree;
 
     public DynamicConstraint(final String name,
                              final Optional<String> meta,
                              final Optional<String> content,
                              final ConstraintLogic constraintLogic)
+    {
+        this(name,
+             meta,
+             content,
+             constraintLogic,
+             false);
+    }
+
+    /**
+     * @param name            the name of the resource
+     * @param meta            additional information on the resource
+     * @param content         the content type hint
+     * @param constraintLogic the constraint logic
+     * @param sideEffectFree  true if the dynamic resource handler decides this constraint without side effects, so it
+     *                        can be reordered by an adaptive {@link ConstraintTree}
+     */
+    public DynamicConstraint(final String name,
+                             final Optional<String> meta,
+                             final Optional<String> content,
+                             final ConstraintLogic constraintLogic,
+                             final boolean sideEffectFree)
     {
         this.name = name;
         this.meta = meta;
         this.content = content;
         this.constraintLogic = constraintLogic;
+        this.sideEffectFree = sideEffectFree;
     }
 
     @Override
@@ -62,4 +85,10 @@ public class DynamicConstraint implements Constraint
                                        (rh, dh, cnt) -> CompletableFuture.completedFuture(F.Tuple(Boolean.FALSE, rh)),
                                        ConstraintPoint.CONTROLLER);
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return sideEffectFree;
+    }
 }
@@ -39,5 +39,29 @@ public enum Operator implements BiFunction<Constraint, Constraint, Constraint>
                 {
                     return c1.or(c2);
                 }
+            },
+    /**
+     * Like {@link #AND}, but every constraint is tested at once and the first one that fails decides the result.
+     */
+    PARALLEL_AND
+            {
+                @Override
+                public Constraint apply(final Constraint c1,
+                                        final Constraint c2)
+                {
+                    return c1.parallelAnd(c2);
+                }
+            },
+    /**
+     * Like {@link #OR}, but every constraint is tested at once and the first one that passes decides the result.
+     */
+    PARALLEL_OR
+            {
+                @Override
+                public Constraint apply(final Constraint c1,
+                                        final Constraint c2)
+                {
+                    return c1.parallelOr(c2);
+                }
             }
 }
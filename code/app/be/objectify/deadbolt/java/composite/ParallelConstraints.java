@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.composite;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import play.libs.F;
+import play.mvc.Http;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Tests several constraints at the same time, for {@link Operator#PARALLEL_AND} and {@link Operator#PARALLEL_OR}.
+ */
+final class ParallelConstraints
+{
+    private ParallelConstraints()
+    {
+        // no-op
+    }
+
+    /**
+     * Starts every constraint with the same request header and completes as soon as the outcome is known: when a
+     * constraint passes in OR mode, or fails in AND mode.  The results of the constraints that are still running are
+     * ignored.  The result carries the request header that was given, whichever constraint decided it, so the request
+     * attributes that are passed on don't depend on the order in which the constraints complete.
+     * <p>
+     * A constraint that completes exceptionally only fails the result if no other constraint decides it.  If a
+     * constraint decides the result synchronously, the constraints after it are not started.
+     *
+     * @param constraints    the constraints, which must not be empty
+     * @param any            true if the first constraint to pass decides the result, false if the first constraint to
+     *                       fail does
+     * @param requestHeader  the request header
+     * @param handler        the handler
+     * @param globalMetaData the global meta data
+     * @param metaFn         combines the global and local meta data
+     * @return the result
+     */
+    static CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> test(final Constraint[] constraints,
+                                                                    final boolean any,
+                                                                    final Http.RequestHeader requestHeader,
+                                                                    final DeadboltHandler handler,
+                                                                    final Optional<String> globalMetaData,
+                                                                    final BiFunction<Optional<String>, Optional<String>, Optional<String>> metaFn)
+    {
+        final CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>> result = new CompletableFuture<>();
+        final AtomicInteger remaining = new AtomicInteger(constraints.length);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (Constraint constraint : constraints)
+        {
+            if (result.isDone())
+            {
+                break;
+            }
+            CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> stage;
+            try
+            {
+                stage = constraint.test(requestHeader,
+                                        handler,
+                                        globalMetaData,
+                                        metaFn);
+            }
+            catch (RuntimeException e)
+            {
+                final CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                stage = failed;
+            }
+            stage.whenComplete((passed, error) ->
+                               {
+                                   final Throwable cause = error == null && passed == null ? new NullPointerException("A constraint completed with null")
+                                                                                           : error;
+                                   if (cause == null && passed._1 == any)
+                                   {
+                                       result.complete(F.Tuple(any,
+                                                               requestHeader));
+                                       return;
+                                   }
+                                   if (cause != null)
+                                   {
+                                       failure.compareAndSet(null,
+                                                             cause);
+                                   }
+                                   if (remaining.decrementAndGet() == 0)
+                                   {
+                                       final Throwable firstFailure = failure.get();
+                                       if (firstFailure == null)
+                                       {
+                                           result.complete(F.Tuple(!any,
+                                                                   requestHeader));
+                                       }
+                                       else
+                                       {
+                                           result.completeExceptionally(firstFailure);
+                                       }
+                                   }
+                               });
+        }
+        return result;
+    }
+}
@@ -38,6 +38,7 @@ public class PatternConstraint implements Constraint
     private final boolean invert;
     private final Optional<String> content;
     private final ConstraintLogic constraintLogic;
+    private final boolean sideEffectFree;
 
     public PatternConstraint(final String value,
                              final PatternType patternType,
@@ -45,6 +46,33 @@ public class PatternConstraint implements Constraint
                              final boolean invert,
                              final Optional<String> content,
                              final ConstraintLogic constraintLogic)
+    {
+        this(value,
+             patternType,
+             meta,
+             invert,
+             content,
+             constraintLogic,
+             false);
+    }
+
+    /**
+     * @param value           the pattern value
+     * @param patternType     the type of pattern
+     * @param meta            additional information for custom patterns
+     * @param invert          true if the result is inverted
+     * @param content         the content type hint
+     * @param constraintLogic the constraint logic
+     * @param sideEffectFree  true if this constraint can be reordered by an adaptive {@link ConstraintTree}, see
+     *                        {@link Constraint#isSideEffectFree()}
+     */
+    public PatternConstraint(final String value,
+                             final PatternType patternType,
+                             final Optional<String> meta,
+                             final boolean invert,
+                             final Optional<String> content,
+                             final ConstraintLogic constraintLogic,
+                             final boolean sideEffectFree)
     {
         this.value = value;
         this.patternType = patternType;
@@ -52,6 +80,7 @@ public class PatternConstraint implements Constraint
         this.invert = invert;
         this.content = content;
         this.constraintLogic = constraintLogic;
+        this.sideEffectFree = sideEffectFree;
     }
 
     @Override
@@ -71,4 +100,10 @@ public class PatternConstraint implements Constraint
                                        (rh, dh, ctn) -> CompletableFuture.completedFuture(F.Tuple(Boolean.FALSE, rh)),
                                        ConstraintPoint.CONTROLLER);
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return sideEffectFree;
+    }
 }
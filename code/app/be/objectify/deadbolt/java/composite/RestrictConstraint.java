@@ -18,35 +18,51 @@ package be.objectify.deadbolt.java.composite;
 import be.objectify.deadbolt.java.ConstraintLogic;
 import be.objectify.deadbolt.java.ConstraintPoint;
 import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.RoleGroup;
 import play.libs.F;
 import play.mvc.Http;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 /**
  * @author Steve Chaloner (steve@objectify.be)
  */
 public class RestrictConstraint implements Constraint
 {
-    private final List<String[]> roleGroups = new LinkedList<>();
+    private final List<RoleGroup> roleGroups;
     private final ConstraintLogic constraintLogic;
     private final Optional<String> content;
+    private final boolean sideEffectFree;
 
     public RestrictConstraint(final List<String[]> roleGroups,
                               final Optional<String> content,
                               final ConstraintLogic constraintLogic)
+    {
+        this(roleGroups,
+             content,
+             constraintLogic,
+             false);
+    }
+
+    /**
+     * @param roleGroups      the role groups.  Within a group, roles are ANDed; the groups are ORed.
+     * @param content         the content type hint
+     * @param constraintLogic the constraint logic
+     * @param sideEffectFree  true if this constraint can be reordered by an adaptive {@link ConstraintTree}, see
+     *                        {@link Constraint#isSideEffectFree()}
+     */
+    public RestrictConstraint(final List<String[]> roleGroups,
+                              final Optional<String> content,
+                              final ConstraintLogic constraintLogic,
+                              final boolean sideEffectFree)
     {
         this.content = content;
-        roleGroups.stream()
-                  .filter(Objects::nonNull)
-                  .collect(Collectors.toCollection(() -> this.roleGroups));
+        this.sideEffectFree = sideEffectFree;
+        this.roleGroups = RoleGroup.of(roleGroups);
         this.constraintLogic = constraintLogic;
     }
 
@@ -59,9 +75,15 @@ public class RestrictConstraint implements Constraint
         return constraintLogic.restrict(requestHeader,
                                         handler,
                                         content,
-                                        () -> roleGroups,
+                                        roleGroups,
                                         rh -> CompletableFuture.completedFuture(F.Tuple(Boolean.TRUE, rh)),
                                         (rh, dh, cnt) -> CompletableFuture.completedFuture(F.Tuple(Boolean.FALSE, rh)),
                                         ConstraintPoint.CONTROLLER);
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return sideEffectFree;
+    }
 }
@@ -33,12 +33,29 @@ public class SubjectNotPresentConstraint implements Constraint
 {
     private final Optional<String> content;
     private final ConstraintLogic constraintLogic;
+    private final boolean sideEffectFree;
 
     public SubjectNotPresentConstraint(final Optional<String> content,
                                        final ConstraintLogic constraintLogic)
+    {
+        this(content,
+             constraintLogic,
+             false);
+    }
+
+    /**
+     * @param content         the content type hint
+     * @param constraintLogic the constraint logic
+     * @param sideEffectFree  true if this constraint can be reordered by an adaptive {@link ConstraintTree}, see
+     *                        {@link Constraint#isSideEffectFree()}
+     */
+    public SubjectNotPresentConstraint(final Optional<String> content,
+                                       final ConstraintLogic constraintLogic,
+                                       final boolean sideEffectFree)
     {
         this.content = content;
         this.constraintLogic = constraintLogic;
+        this.sideEffectFree = sideEffectFree;
     }
 
     @Override
@@ -55,4 +72,10 @@ public class SubjectNotPresentConstraint implements Constraint
                                                  ConstraintPoint.CONTROLLER);
 
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return sideEffectFree;
+    }
 }
@@ -33,12 +33,29 @@ public class SubjectPresentConstraint implements Constraint
 {
     private final Optional<String> content;
     private final ConstraintLogic constraintLogic;
+    private final boolean sideEffectFree;
 
     public SubjectPresentConstraint(final Optional<String> content,
                                     final ConstraintLogic constraintLogic)
+    {
+        this(content,
+             constraintLogic,
+             false);
+    }
+
+    /**
+     * @param content         the content type hint
+     * @param constraintLogic the constraint logic
+     * @param sideEffectFree  true if this constraint can be reordered by an adaptive {@link ConstraintTree}, see
+     *                        {@link Constraint#isSideEffectFree()}
+     */
+    public SubjectPresentConstraint(final Optional<String> content,
+                                    final ConstraintLogic constraintLogic,
+                                    final boolean sideEffectFree)
     {
         this.content = content;
         this.constraintLogic = constraintLogic;
+        this.sideEffectFree = sideEffectFree;
     }
 
     public CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> test(final Http.RequestHeader requestHeader,
@@ -54,4 +71,10 @@ public class SubjectPresentConstraint implements Constraint
                                               ConstraintPoint.CONTROLLER);
 
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return sideEffectFree;
+    }
 }
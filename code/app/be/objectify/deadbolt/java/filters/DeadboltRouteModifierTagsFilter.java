@@ -15,9 +15,13 @@
  */
 package be.objectify.deadbolt.java.filters;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -61,7 +65,7 @@ import play.routing.Router;
  * <li>handler - optional.  The name of a handler in the HandlerCache</li>
  * </ul>
  * </li>
- * <li>deadbolt:pattern:value[constraint value]:type[EQUALITY|REGEX|CUSTOM]:invert[true|false]:handler[handler name]
+ * <li>deadbolt:pattern:value[constraint value]:type[EQUALITY|REGEX|CUSTOM|WILDCARD]:invert[true|false]:handler[handler name]
  * <ul>
  * <li>value - required.  Used to test the permissions of a subject.</li>
  * <li>type - required.  The pattern type, case sensitive.</li>
@@ -81,9 +85,9 @@ import play.routing.Router;
  * <li>handler - optional.  The name of a handler in the HandlerCache</li>
  * </ul>
  * </li>
- * <li>deadbolt:rbp:name[role name]:handler[handler name]
+ * <li>deadbolt:rbp:name[role name,role name]:handler[handler name]
  * <ul>
- * <li>name - required.  The name of a role, which will be used to resolve permissions from {@link DeadboltHandler#getPermissionsForRole(String)}</li>
+ * <li>name - required.  The comma-separated names of one or more roles, which will be used to resolve permissions from {@link DeadboltHandler#getPermissionsForRoles(java.util.Collection)}</li>
  * <li>handler - optional.  The name of a handler in the HandlerCache</li>
  * </ul>
  * </li>
@@ -91,6 +95,9 @@ import play.routing.Router;
  * <p>
  * Restrict is a tricky one, because the possible combinations of roles leads to a nightmare to parse.  Instead, define your role constraints within the
  * composite cache and use the named constraint instead.  deadbolt:restrict is actually a synonym for deadbolt:composite.
+ * <p>
+ * The modifier tags of each route are parsed the first time the route is requested, and the resulting constraints are
+ * reused for every subsequent request to that route.
  *
  * @author Steve Chaloner (steve@objectify.be)
  * @since 2.5.1
@@ -103,7 +110,7 @@ public class DeadboltRouteModifierTagsFilter extends AbstractDeadboltFilter
     final Pattern subjectPresentModifierTag = Pattern.compile("deadbolt\\:(subjectPresent)(?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
     final Pattern subjectNotPresentModifierTag = Pattern.compile("deadbolt\\:(subjectNotPresent)(?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
     final Pattern dynamicModifierTag = Pattern.compile("deadbolt\\:(dynamic)\\:name\\[(?<name>.+?)\\](?:\\:meta\\[(?<meta>.+?)\\]){0,1}(?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
-    final Pattern patternModifierTag = Pattern.compile("deadbolt\\:(pattern)\\:value\\[(?<value>.+?)\\]\\:type\\[(?<type>EQUALITY|REGEX|CUSTOM)\\](?:\\:meta\\[(?<meta>.+?)\\]){0,1}(?:\\:invert\\[(?<invert>true|false)\\]){0,1}(?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
+    final Pattern patternModifierTag = Pattern.compile("deadbolt\\:(pattern)\\:value\\[(?<value>.+?)\\]\\:type\\[(?<type>EQUALITY|REGEX|CUSTOM|WILDCARD)\\](?:\\:meta\\[(?<meta>.+?)\\]){0,1}(?:\\:invert\\[(?<invert>true|false)\\]){0,1}(?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
     final Pattern compositeModifierTag = Pattern.compile("deadbolt\\:(composite)\\:name\\[(?<name>.+?)\\](?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
     final Pattern restrictModifierTag = Pattern.compile("deadbolt\\:(restrict)\\:name\\[(?<name>.+?)\\](?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
     final Pattern roleBasedPermissionsModifierTag = Pattern.compile("deadbolt\\:(rbp)\\:name\\[(?<name>.+?)\\](?:\\:content\\[(?<content>.+?)\\]){0,1}(?:\\:handler\\[(?<handler>.+?)\\]){0,1}");
@@ -114,6 +121,8 @@ public class DeadboltRouteModifierTagsFilter extends AbstractDeadboltFilter
 
     private final F.Tuple<FilterFunction, DeadboltHandler> unknownDeadboltModifierTag;
 
+    private final ConcurrentMap<HandlerDef, List<F.Tuple<FilterFunction, DeadboltHandler>>> compiledRoutes = new ConcurrentHashMap<>();
+
     @Inject
     public DeadboltRouteModifierTagsFilter(final Materializer mat,
                                            final HandlerCache handlerCache,
@@ -145,26 +154,50 @@ public class DeadboltRouteModifierTagsFilter extends AbstractDeadboltFilter
                                          final Http.RequestHeader requestHeader)
     {
         final HandlerDef handlerDef = requestHeader.attrs().get(Router.Attrs.HANDLER_DEF);
-        final List<String> deadboltModifierTags = handlerDef.getModifiers().stream().filter(mt -> mt != null && mt.startsWith("deadbolt:")).collect(Collectors.toList());
-        return processModifierTags(deadboltModifierTags, 0, requestHeader, next);
+        List<F.Tuple<FilterFunction, DeadboltHandler>> constraints = compiledRoutes.get(handlerDef);
+        if (constraints == null)
+        {
+            constraints = compiledRoutes.computeIfAbsent(handlerDef,
+                                                         this::compileRoute);
+        }
+        return processConstraints(constraints, 0, requestHeader, next);
+    }
+
+    /**
+     * Parse the deadbolt modifier tags of a route into the filter functions that apply them.  Modifier tags don't change
+     * at runtime, so this happens once per route.
+     *
+     * @param handlerDef the route
+     * @return the constraints of the route, in the order they are applied
+     */
+    private List<F.Tuple<FilterFunction, DeadboltHandler>> compileRoute(final HandlerDef handlerDef)
+    {
+        return Collections.unmodifiableList(handlerDef.getModifiers().stream()
+                                                      .filter(mt -> mt != null && mt.startsWith("deadbolt:"))
+                                                      .map(this::compileModifierTag)
+                                                      .collect(Collectors.toList()));
     }
 
-    private CompletionStage<Result> processModifierTags(final List<String> deadboltModifierTags, int index, final Http.RequestHeader requestHeader, final Function<Http.RequestHeader, CompletionStage<Result>> lastNext)
+    private F.Tuple<FilterFunction, DeadboltHandler> compileModifierTag(final String modifierTag)
     {
-        if(index < deadboltModifierTags.size())
+        // this is horrible
+        return subjectPresent(modifierTag).orElseGet(() -> subjectNotPresent(modifierTag)
+                .orElseGet(() -> dynamic(modifierTag)
+                        .orElseGet(() -> composite(modifierTag)
+                                .orElseGet(() -> restrict(modifierTag)
+                                        .orElseGet(() -> pattern(modifierTag)
+                                                .orElseGet(() -> roleBasedPermissions(modifierTag)
+                                                        .orElse(unknownDeadboltModifierTag)))))));
+    }
+
+    private CompletionStage<Result> processConstraints(final List<F.Tuple<FilterFunction, DeadboltHandler>> constraints, int index, final Http.RequestHeader requestHeader, final Function<Http.RequestHeader, CompletionStage<Result>> lastNext)
+    {
+        if(index < constraints.size())
         {
-            final String modifierTag = deadboltModifierTags.get(index);
-            // this is horrible
-            final F.Tuple<FilterFunction, DeadboltHandler> tuple = subjectPresent(modifierTag).orElseGet(() -> subjectNotPresent(modifierTag)
-                    .orElseGet(() -> dynamic(modifierTag)
-                            .orElseGet(() -> composite(modifierTag)
-                                    .orElseGet(() -> restrict(modifierTag)
-                                            .orElseGet(() -> pattern(modifierTag)
-                                                    .orElseGet(() -> roleBasedPermissions(modifierTag)
-                                                            .orElse(unknownDeadboltModifierTag)))))));
+            final F.Tuple<FilterFunction, DeadboltHandler> tuple = constraints.get(index);
             return tuple._1.apply(requestHeader,
                                   tuple._2,
-                                  rh -> processModifierTags(deadboltModifierTags, index + 1, rh, lastNext));
+                                  rh -> processConstraints(constraints, index + 1, rh, lastNext));
         }
         else
         {
@@ -219,12 +252,26 @@ public class DeadboltRouteModifierTagsFilter extends AbstractDeadboltFilter
     private Optional<F.Tuple<FilterFunction, DeadboltHandler>> roleBasedPermissions(final String modifierTag)
     {
         final Matcher matcher = roleBasedPermissionsModifierTag.matcher(modifierTag);
-        return matcher.matches() ? Optional.of(new F.Tuple<>(filterConstraints.roleBasedPermissions(matcher.group("name"),
+        return matcher.matches() ? Optional.of(new F.Tuple<>(filterConstraints.roleBasedPermissions(roleNames(matcher.group("name")),
                                                                                                     Optional.ofNullable(matcher.group("content"))),
                                                              handler(matcher)))
                                  : Optional.empty();
     }
 
+    private static List<String> roleNames(final String names)
+    {
+        final List<String> roleNames = new ArrayList<>();
+        for (String name : names.split(","))
+        {
+            final String roleName = name.trim();
+            if (!roleName.isEmpty())
+            {
+                roleNames.add(roleName);
+            }
+        }
+        return roleNames;
+    }
+
     private Optional<F.Tuple<FilterFunction, DeadboltHandler>> pattern(final String modifierTag)
     {
         final Matcher matcher = patternModifierTag.matcher(modifierTag);
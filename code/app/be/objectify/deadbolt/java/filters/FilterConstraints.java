@@ -18,16 +18,22 @@ package be.objectify.deadbolt.java.filters;
 import be.objectify.deadbolt.java.ConstraintLogic;
 import be.objectify.deadbolt.java.ConstraintPoint;
 import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.RoleGroup;
 import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
 import be.objectify.deadbolt.java.cache.CompositeCache;
 import be.objectify.deadbolt.java.composite.Constraint;
+import be.objectify.deadbolt.java.metrics.DeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.HandlerCall;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
 import be.objectify.deadbolt.java.models.PatternType;
 import be.objectify.deadbolt.java.utils.TriFunction;
+import play.libs.F;
 import play.mvc.Http;
 import play.mvc.Result;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -45,15 +51,28 @@ public class FilterConstraints
     private final ConstraintLogic constraintLogic;
     private final CompositeCache compositeCache;
     private final BeforeAuthCheckCache beforeAuthCheckCache;
+    private final DeadboltMetrics metrics;
 
-    @Inject
     public FilterConstraints(final ConstraintLogic constraintLogic,
                              final CompositeCache compositeCache,
                              final BeforeAuthCheckCache beforeAuthCheckCache)
+    {
+        this(constraintLogic,
+             compositeCache,
+             beforeAuthCheckCache,
+             NoOpDeadboltMetrics.INSTANCE);
+    }
+
+    @Inject
+    public FilterConstraints(final ConstraintLogic constraintLogic,
+                             final CompositeCache compositeCache,
+                             final BeforeAuthCheckCache beforeAuthCheckCache,
+                             final DeadboltMetrics metrics)
     {
         this.constraintLogic = constraintLogic;
         this.compositeCache = compositeCache;
         this.beforeAuthCheckCache = beforeAuthCheckCache;
+        this.metrics = metrics;
     }
 
     /**
@@ -79,7 +98,7 @@ public class FilterConstraints
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.subjectPresent(maybePreAuth._2,
                                                                                                                 handler,
@@ -113,7 +132,7 @@ public class FilterConstraints
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.subjectNotPresent(maybePreAuth._2,
                                                                                                                    handler,
@@ -148,15 +167,16 @@ public class FilterConstraints
     public FilterFunction restrict(final List<String[]> roleGroups,
                                    final Optional<String> content)
     {
+        final List<RoleGroup> parsedRoleGroups = RoleGroup.of(roleGroups);
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.restrict(maybePreAuth._2,
                                                                                                           handler,
                                                                                                           content,
-                                                                                                          () -> roleGroups,
+                                                                                                          parsedRoleGroups,
                                                                                                           rh -> next.apply(rh),
                                                                                                           (rh, hdlr, cntent) -> hdlr.onAuthFailure(rh,
                                                                                                                                                     cntent),
@@ -164,7 +184,7 @@ public class FilterConstraints
     }
 
     /**
-     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY} or {@link PatternType#REGEX}) or
+     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY}, {@link PatternType#REGEX} or {@link PatternType#WILDCARD}) or
      * {@link be.objectify.deadbolt.java.DynamicResourceHandler#checkPermission(String, Optional, DeadboltHandler, Http.RequestHeader)} (if
      * using {@link PatternType#CUSTOM}).
      *
@@ -182,7 +202,7 @@ public class FilterConstraints
     }
 
     /**
-     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY} or {@link PatternType#REGEX}) or
+     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY}, {@link PatternType#REGEX} or {@link PatternType#WILDCARD}) or
      * {@link be.objectify.deadbolt.java.DynamicResourceHandler#checkPermission(String, Optional, DeadboltHandler, Http.RequestHeader)} (if
      * using {@link PatternType#CUSTOM}).
      *
@@ -204,7 +224,7 @@ public class FilterConstraints
     }
 
     /**
-     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY} or {@link PatternType#REGEX}) or
+     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY}, {@link PatternType#REGEX} or {@link PatternType#WILDCARD}) or
      * {@link be.objectify.deadbolt.java.DynamicResourceHandler#checkPermission(String, Optional, DeadboltHandler, Http.RequestHeader)} (if
      * using {@link PatternType#CUSTOM}).
      *
@@ -226,7 +246,7 @@ public class FilterConstraints
     }
 
     /**
-     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY} or {@link PatternType#REGEX}) or
+     * A constraint that checks the permissions of a subject (if using {@link PatternType#EQUALITY}, {@link PatternType#REGEX} or {@link PatternType#WILDCARD}) or
      * {@link be.objectify.deadbolt.java.DynamicResourceHandler#checkPermission(String, Optional, DeadboltHandler, Http.RequestHeader)} (if
      * using {@link PatternType#CUSTOM}).
      *
@@ -247,7 +267,7 @@ public class FilterConstraints
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.pattern(maybePreAuth._2,
                                                                                                          handler,
@@ -310,7 +330,7 @@ public class FilterConstraints
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.dynamic(maybePreAuth._2,
                                                                                                          handler,
@@ -329,7 +349,7 @@ public class FilterConstraints
      *
      * @param name the name of the composite constraint defined in {@link CompositeCache}.
      * @return a function that wraps the constraint
-     * @throws IllegalStateException if no constraint with the given name is present in the composite cache
+     * @throws IllegalStateException if no constraint with the given name is present in the composite cache when the function is applied
      */
     public FilterFunction composite(final String name)
     {
@@ -339,20 +359,33 @@ public class FilterConstraints
 
     /**
      * A constraint that uses a {@link Constraint} to determine access.  This may be an arbitrarily complex
-     * tree of constraints.
+     * tree of constraints.  The constraint is looked up in the {@link CompositeCache} each time the function is
+     * applied, so constraints replaced at runtime take effect immediately.
      *
      * @param name    the name of the composite constraint defined in {@link CompositeCache}.
      * @param content is passed to {@link DeadboltHandler#onAuthFailure(Http.RequestHeader, Optional)} if the authorization fails
      * @return a function that wraps the constraint
-     * @throws IllegalStateException if no constraint with the given name is present in the composite cache
+     * @throws IllegalStateException if no constraint with the given name is present in the composite cache when the function is applied
      */
     public FilterFunction composite(final String name,
                                     final Optional<String> content)
     {
-        return compositeCache.apply(name).map(constraint -> composite(constraint,
-                                                                      content))
-                             .orElseThrow(() -> new IllegalStateException(String.format("No constraint with name [%s] found",
-                                                                                        name)));
+        return (Http.RequestHeader requestHeader,
+                DeadboltHandler handler,
+                Function<Http.RequestHeader, CompletionStage<Result>> next) ->
+        {
+            final Constraint constraint = compositeCache.apply(name).orElse(null);
+            if (constraint == null)
+            {
+                throw new IllegalStateException(String.format("No constraint with name [%s] found",
+                                                              name));
+            }
+            return composite(constraint,
+                             content,
+                             requestHeader,
+                             handler,
+                             next);
+        };
     }
 
     /**
@@ -381,19 +414,68 @@ public class FilterConstraints
     {
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
-                Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
-                       .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
-                                                                .orElseGet(() -> constraint.test(maybePreAuth._2,
-                                                                                                 handler)
-                                                                                           .thenCompose(allowed -> allowed._1 ? ((Supplier<CompletionStage<Result>>) () -> {
-                                                                                               handler.onAuthSuccess(allowed._2,
-                                                                                                                     "composite",
-                                                                                                                     ConstraintPoint.FILTER);
-                                                                                               return next.apply(allowed._2);
-                                                                                           }).get()
-                                                                                                                           : handler.onAuthFailure(maybePreAuth._2,
-                                                                                                                                                   content))));
+                Function<Http.RequestHeader, CompletionStage<Result>> next) -> composite(constraint,
+                                                                                          content,
+                                                                                          requestHeader,
+                                                                                          handler,
+                                                                                          next);
+    }
+
+    private CompletionStage<Result> composite(final Constraint constraint,
+                                              final Optional<String> content,
+                                              final Http.RequestHeader requestHeader,
+                                              final DeadboltHandler handler,
+                                              final Function<Http.RequestHeader, CompletionStage<Result>> next)
+    {
+        return beforeAuthCheck(handler, requestHeader, content)
+                                   .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
+                                                                            .orElseGet(() -> test(constraint,
+                                                                                                  maybePreAuth._2,
+                                                                                                  handler)
+                                                                                                       .thenCompose(allowed -> allowed._1 ? ((Supplier<CompletionStage<Result>>) () -> {
+                                                                                                           handler.onAuthSuccess(allowed._2,
+                                                                                                                                 "composite",
+                                                                                                                                 ConstraintPoint.FILTER);
+                                                                                                           return next.apply(allowed._2);
+                                                                                                       }).get()
+                                                                                                                                       : handler.onAuthFailure(maybePreAuth._2,
+                                                                                                                                                               content))));
+    }
+
+    private CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> test(final Constraint constraint,
+                                                                      final Http.RequestHeader requestHeader,
+                                                                      final DeadboltHandler handler)
+    {
+        if (!metrics.enabled())
+        {
+            return constraint.test(requestHeader,
+                                   handler);
+        }
+        final long start = System.nanoTime();
+        return constraint.test(requestHeader,
+                               handler)
+                         .thenApply(allowed ->
+                                    {
+                                        metrics.recordConstraint("composite",
+                                                                 ConstraintPoint.FILTER,
+                                                                 allowed._1,
+                                                                 System.nanoTime() - start);
+                                        return allowed;
+                                    });
+    }
+
+    private CompletionStage<F.Tuple<Optional<Result>, Http.RequestHeader>> beforeAuthCheck(final DeadboltHandler handler,
+                                                                                           final Http.RequestHeader requestHeader,
+                                                                                           final Optional<String> content)
+    {
+        if (!metrics.enabled())
+        {
+            return beforeAuthCheckCache.apply(handler, requestHeader, content);
+        }
+        final long start = System.nanoTime();
+        return metrics.timeHandlerCall(HandlerCall.BEFORE_AUTH_CHECK,
+                                       start,
+                                       beforeAuthCheckCache.apply(handler, requestHeader, content));
     }
 
     public FilterFunction roleBasedPermissions(final String roleName)
@@ -404,16 +486,30 @@ public class FilterConstraints
 
     public FilterFunction roleBasedPermissions(final String roleName,
                                                final Optional<String> content)
+    {
+        return roleBasedPermissions(Collections.singletonList(roleName),
+                                    content);
+    }
+
+    /**
+     * A constraint that requires the subject to hold a permission that matches a permission of any of the roles.
+     *
+     * @param roleNames the names of the roles
+     * @param content   is passed to {@link DeadboltHandler#onAuthFailure(Http.RequestHeader, Optional)} if the authorization fails
+     * @return a function that wraps the constraint
+     */
+    public FilterFunction roleBasedPermissions(final List<String> roleNames,
+                                               final Optional<String> content)
     {
         return (Http.RequestHeader requestHeader,
                 DeadboltHandler handler,
                 Function<Http.RequestHeader, CompletionStage<Result>> next) ->
-                beforeAuthCheckCache.apply(handler, requestHeader, content)
+                beforeAuthCheck(handler, requestHeader, content)
                        .thenCompose(maybePreAuth -> maybePreAuth._1.map(preAuthResult -> (CompletionStage<Result>) CompletableFuture.completedFuture(preAuthResult))
                                                                 .orElseGet(() -> constraintLogic.roleBasedPermissions(maybePreAuth._2,
                                                                                                                       handler,
                                                                                                                       content,
-                                                                                                                      roleName,
+                                                                                                                      roleNames,
                                                                                                                       rh -> next.apply(rh),
                                                                                                                       (rh, hdlr, cntent) -> hdlr.onAuthFailure(rh,
                                                                                                                                                                 cntent),
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.filters;
+
+import javax.inject.Provider;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An {@link AuthorizedRoutes} that indexes its routes by method and path, so matching a request is a hash lookup
+ * instead of a scan of every route.  Matching follows the same rules as {@link AuthorizedRoutes}: if several routes
+ * match a request, the one that appears first in {@link #routes()} is used.
+ * <p>
+ * The index is built from {@link #routes()} the first time a request is matched.  If the routes change at runtime,
+ * call {@link #refresh()} to rebuild it.
+ */
+public abstract class IndexedAuthorizedRoutes extends AuthorizedRoutes
+{
+    private volatile RouteIndex index;
+
+    public IndexedAuthorizedRoutes(final Provider<FilterConstraints> filterConstraints)
+    {
+        super(filterConstraints);
+    }
+
+    @Override
+    public Optional<AuthorizedRoute> apply(final String method,
+                                           final String path)
+    {
+        RouteIndex current = index;
+        if (current == null)
+        {
+            synchronized (this)
+            {
+                current = index;
+                if (current == null)
+                {
+                    current = new RouteIndex(routes());
+                    index = current;
+                }
+            }
+        }
+        return current.find(method,
+                            path);
+    }
+
+    /**
+     * Rebuild the index from {@link #routes()}.  Requests matched while the index is being rebuilt use the previous
+     * index.
+     */
+    public void refresh()
+    {
+        index = new RouteIndex(routes());
+    }
+
+    private static final class RouteIndex
+    {
+        private final Map<String, Map<String, IndexedRoute>> byPathAndMethod = new HashMap<>();
+
+        private final Map<String, IndexedRoute> byPathForAnyMethod = new HashMap<>();
+
+        private RouteIndex(final List<AuthorizedRoute> routes)
+        {
+            for (int i = 0; i < routes.size(); i++)
+            {
+                final AuthorizedRoute route = routes.get(i);
+                final IndexedRoute indexedRoute = new IndexedRoute(i,
+                                                                   route);
+                if (route.method().isPresent())
+                {
+                    byPathAndMethod.computeIfAbsent(route.path(),
+                                                    path -> new HashMap<>())
+                                   .putIfAbsent(route.method().get(),
+                                                indexedRoute);
+                }
+                else
+                {
+                    byPathForAnyMethod.putIfAbsent(route.path(),
+                                                   indexedRoute);
+                }
+            }
+        }
+
+        private Optional<AuthorizedRoute> find(final String method,
+                                               final String path)
+        {
+            final Map<String, IndexedRoute> byMethod = byPathAndMethod.getOrDefault(path,
+                                                                                    Collections.emptyMap());
+            final IndexedRoute forMethod = byMethod.get(method);
+            final IndexedRoute forAnyMethod = byPathForAnyMethod.get(path);
+
+            final IndexedRoute match;
+            if (forMethod == null)
+            {
+                match = forAnyMethod;
+            }
+            else if (forAnyMethod == null)
+            {
+                match = forMethod;
+            }
+            else
+            {
+                match = forMethod.position < forAnyMethod.position ? forMethod
+                                                                   : forAnyMethod;
+            }
+            return match == null ? Optional.empty()
+                                 : match.route;
+        }
+    }
+
+    private static final class IndexedRoute
+    {
+        private final int position;
+        private final Optional<AuthorizedRoute> route;
+
+        private IndexedRoute(final int position,
+                             final AuthorizedRoute route)
+        {
+            this.position = position;
+            this.route = Optional.of(route);
+        }
+    }
+}
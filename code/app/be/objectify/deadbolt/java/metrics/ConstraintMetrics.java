@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements of one type of constraint at one constraint point, as recorded by {@link SimpleDeadboltMetrics}.
+ */
+public final class ConstraintMetrics
+{
+    private final LongAdder passed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @return the number of times the constraint passed
+     */
+    public long passCount()
+    {
+        return passed.sum();
+    }
+
+    /**
+     * @return the number of times the constraint failed
+     */
+    public long failCount()
+    {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of times the constraint did not reach a decision in time
+     */
+    public long timeoutCount()
+    {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return the time taken to reach a decision, whether the constraint passed or failed
+     */
+    public LatencyHistogram latency()
+    {
+        return latency;
+    }
+
+    void record(final boolean pass,
+                final long durationNanos)
+    {
+        if (pass)
+        {
+            passed.increment();
+        }
+        else
+        {
+            failed.increment();
+        }
+        latency.record(durationNanos);
+    }
+
+    void recordTimeout()
+    {
+        timedOut.increment();
+    }
+}
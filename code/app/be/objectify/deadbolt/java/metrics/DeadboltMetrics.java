@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import be.objectify.deadbolt.java.ConstraintPoint;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives measurements of constraint evaluations and of the handler calls they depend on.  Implement this to publish
+ * the measurements to a metrics library, and bind the implementation in place of the one chosen by
+ * deadbolt.java.metrics.enabled.
+ * <p>
+ * Callers check {@link #enabled()} before reading the clock, so a disabled implementation costs a single method call
+ * per constraint.  Implementations are called concurrently and must not block.
+ */
+public interface DeadboltMetrics
+{
+    /**
+     * @return true if measurements should be taken
+     */
+    boolean enabled();
+
+    /**
+     * Record the decision of a constraint.
+     *
+     * @param constraintType  the type of constraint, using the same names as {@link be.objectify.deadbolt.java.DeadboltHandler#onAuthSuccess}
+     * @param constraintPoint the point at which the constraint was applied
+     * @param passed          true if the constraint passed
+     * @param durationNanos   the time from the start of the evaluation to the decision
+     */
+    void recordConstraint(String constraintType,
+                          ConstraintPoint constraintPoint,
+                          boolean passed,
+                          long durationNanos);
+
+    /**
+     * Record a constraint that did not reach a decision in time, e.g. a template tag that timed out.
+     *
+     * @param constraintType  the type of constraint
+     * @param constraintPoint the point at which the constraint was applied
+     */
+    void recordTimeout(String constraintType,
+                       ConstraintPoint constraintPoint);
+
+    /**
+     * Record a call to a handler.
+     *
+     * @param handlerCall   the call
+     * @param durationNanos the time until the call completed
+     */
+    void recordHandlerCall(HandlerCall handlerCall,
+                           long durationNanos);
+
+    /**
+     * Record a virtual thread that pinned its carrier thread while blocked, when deadbolt.java.virtual-threads.enabled
+     * is true.  This is called from a JDK Flight Recorder stream, so it covers every virtual thread in the JVM, not only
+     * those started by Deadbolt.
+     *
+     * @param durationNanos how long the carrier thread was pinned
+     */
+    default void recordPinnedThread(final long durationNanos)
+    {
+        // no-op
+    }
+
+    /**
+     * Record the duration of a handler call once it completes, whether or not it completes successfully.
+     *
+     * @param handlerCall the call
+     * @param startNanos  the value of {@link System#nanoTime()} when the call was made
+     * @param stage       the result of the call
+     * @param <T>         the result type
+     * @return a stage that completes in the same way as the given stage, after the duration has been recorded
+     */
+    default <T> CompletionStage<T> timeHandlerCall(final HandlerCall handlerCall,
+                                                   final long startNanos,
+                                                   final CompletionStage<T> stage)
+    {
+        return stage.whenComplete((result, error) -> recordHandlerCall(handlerCall,
+                                                                       System.nanoTime() - startNanos));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, with one bucket per power of two nanoseconds.  Bucket {@code i} counts the
+ * durations that are at least 2<sup>i-1</sup> and less than 2<sup>i</sup> nanoseconds, so quantiles are accurate to
+ * within a factor of two.  Recording never allocates.
+ */
+public final class LatencyHistogram
+{
+    static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max,
+                                                            0L);
+
+    /**
+     * Record a duration.  Negative durations, which can be caused by clock adjustments, are recorded as zero.
+     *
+     * @param durationNanos the duration
+     */
+    public void record(final long durationNanos)
+    {
+        final long duration = Math.max(0L,
+                                       durationNanos);
+        buckets.incrementAndGet(bucket(duration));
+        count.increment();
+        total.add(duration);
+        max.accumulate(duration);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long count()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded durations
+     */
+    public long totalNanos()
+    {
+        return total.sum();
+    }
+
+    /**
+     * @return the longest recorded duration, or 0 if nothing has been recorded
+     */
+    public long maxNanos()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded durations, or 0 if nothing has been recorded
+     */
+    public double meanNanos()
+    {
+        final long n = count();
+        return n == 0 ? 0.0
+                      : (double) totalNanos() / n;
+    }
+
+    /**
+     * Gets an upper bound for a quantile of the recorded durations.
+     *
+     * @param quantile the quantile, between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the upper bound of the bucket that contains the quantile, capped at the longest recorded duration, or 0
+     * if nothing has been recorded
+     */
+    public long quantileNanos(final double quantile)
+    {
+        if (quantile < 0.0 || quantile > 1.0)
+        {
+            throw new IllegalArgumentException(String.format("A quantile must be between 0 and 1, but was [%s]",
+                                                             quantile));
+        }
+        final long[] counts = bucketCounts();
+        long n = 0;
+        for (long bucketCount : counts)
+        {
+            n += bucketCount;
+        }
+        if (n == 0)
+        {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L,
+                                   (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return Math.min(upperBoundNanos(i),
+                                maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    /**
+     * @return a copy of the bucket counts, where bucket {@code i} counts durations less than 2<sup>i</sup> nanoseconds
+     * that are not counted by a lower bucket
+     */
+    public long[] bucketCounts()
+    {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    static int bucket(final long durationNanos)
+    {
+        // the number of significant bits; durations are never negative, so this is at most 63
+        return 64 - Long.numberOfLeadingZeros(durationNanos);
+    }
+
+    static long upperBoundNanos(final int bucket)
+    {
+        return bucket >= 63 ? Long.MAX_VALUE
+                            : (1L << bucket) - 1;
+    }
+}
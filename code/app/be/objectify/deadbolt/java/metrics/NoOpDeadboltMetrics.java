@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import be.objectify.deadbolt.java.ConstraintPoint;
+
+import javax.inject.Singleton;
+
+/**
+ * The default metrics, which records nothing.
+ */
+@Singleton
+public class NoOpDeadboltMetrics implements DeadboltMetrics
+{
+    public static final NoOpDeadboltMetrics INSTANCE = new NoOpDeadboltMetrics();
+
+    @Override
+    public boolean enabled()
+    {
+        return false;
+    }
+
+    @Override
+    public void recordConstraint(final String constraintType,
+                                 final ConstraintPoint constraintPoint,
+                                 final boolean passed,
+                                 final long durationNanos)
+    {
+        // no-op
+    }
+
+    @Override
+    public void recordTimeout(final String constraintType,
+                              final ConstraintPoint constraintPoint)
+    {
+        // no-op
+    }
+
+    @Override
+    public void recordHandlerCall(final HandlerCall handlerCall,
+                                  final long durationNanos)
+    {
+        // no-op
+    }
+
+    @Override
+    public void recordPinnedThread(final long durationNanos)
+    {
+        // no-op
+    }
+}
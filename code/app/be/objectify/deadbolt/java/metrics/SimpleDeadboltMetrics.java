@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import be.objectify.deadbolt.java.ConstraintPoint;
+
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps pass and fail counters and latency histograms in memory, per constraint type and {@link ConstraintPoint}, and
+ * latency histograms per {@link HandlerCall} and for pinned virtual threads.  This is used when deadbolt.java.metrics.enabled is true; the
+ * measurements can be read from here and exported, or a {@link DeadboltMetrics} that publishes them directly can be
+ * bound instead.
+ */
+@Singleton
+public class SimpleDeadboltMetrics implements DeadboltMetrics
+{
+    private static final ConstraintPoint[] CONSTRAINT_POINTS = ConstraintPoint.values();
+
+    private final ConcurrentMap<String, ConstraintMetrics[]> constraints = new ConcurrentHashMap<>();
+
+    private final Map<HandlerCall, LatencyHistogram> handlerCalls = new EnumMap<>(HandlerCall.class);
+
+    private final LatencyHistogram pinnedThreads = new LatencyHistogram();
+
+    public SimpleDeadboltMetrics()
+    {
+        for (HandlerCall handlerCall : HandlerCall.values())
+        {
+            handlerCalls.put(handlerCall,
+                             new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public boolean enabled()
+    {
+        return true;
+    }
+
+    @Override
+    public void recordConstraint(final String constraintType,
+                                 final ConstraintPoint constraintPoint,
+                                 final boolean passed,
+                                 final long durationNanos)
+    {
+        metricsFor(constraintType)[constraintPoint.ordinal()].record(passed,
+                                                                     durationNanos);
+    }
+
+    @Override
+    public void recordTimeout(final String constraintType,
+                              final ConstraintPoint constraintPoint)
+    {
+        metricsFor(constraintType)[constraintPoint.ordinal()].recordTimeout();
+    }
+
+    @Override
+    public void recordHandlerCall(final HandlerCall handlerCall,
+                                  final long durationNanos)
+    {
+        handlerCalls.get(handlerCall).record(durationNanos);
+    }
+
+    @Override
+    public void recordPinnedThread(final long durationNanos)
+    {
+        pinnedThreads.record(durationNanos);
+    }
+
+    /**
+     * Get the measurements of a constraint type at a constraint point.
+     *
+     * @param constraintType  the type of constraint
+     * @param constraintPoint the constraint point
+     * @return the measurements, or an empty option if the constraint type has not been recorded at any point
+     */
+    public Optional<ConstraintMetrics> constraint(final String constraintType,
+                                                  final ConstraintPoint constraintPoint)
+    {
+        final ConstraintMetrics[] metrics = constraints.get(constraintType);
+        return metrics == null ? Optional.empty()
+                               : Optional.of(metrics[constraintPoint.ordinal()]);
+    }
+
+    /**
+     * @return the constraint types that have been recorded
+     */
+    public Set<String> constraintTypes()
+    {
+        return Collections.unmodifiableSet(constraints.keySet());
+    }
+
+    /**
+     * Get the latency histogram of a handler call.
+     *
+     * @param handlerCall the handler call
+     * @return the histogram
+     */
+    public LatencyHistogram handlerCall(final HandlerCall handlerCall)
+    {
+        return handlerCalls.get(handlerCall);
+    }
+
+    /**
+     * Get the histogram of virtual threads that pinned their carrier thread.  The count is the number of times a
+     * carrier thread was pinned for longer than deadbolt.java.virtual-threads.pinned-threshold.
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram pinnedThreads()
+    {
+        return pinnedThreads;
+    }
+
+    private ConstraintMetrics[] metricsFor(final String constraintType)
+    {
+        final ConstraintMetrics[] metrics = constraints.get(constraintType);
+        return metrics != null ? metrics
+                               : constraints.computeIfAbsent(constraintType,
+                                                             type ->
+                                                             {
+                                                                 final ConstraintMetrics[] created = new ConstraintMetrics[CONSTRAINT_POINTS.length];
+                                                                 for (int i = 0; i < created.length; i++)
+                                                                 {
+                                                                     created[i] = new ConstraintMetrics();
+                                                                 }
+                                                                 return created;
+                                                             });
+    }
+}
@@ -33,5 +33,11 @@ public enum PatternType
     /**
      * Perform some custom matching on the pattern.
      */
-    CUSTOM
+    CUSTOM,
+
+    /**
+     * A colon-separated pattern, e.g. invoice:*:view, that will be evaluated against the permissions of the Subject.  *
+     * matches any single segment, or one or more segments if it's the last segment of the pattern.
+     */
+    WILDCARD
 }
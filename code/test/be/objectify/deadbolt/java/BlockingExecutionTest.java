@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.inject.ApplicationLifecycle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class BlockingExecutionTest
+{
+    @Test
+    public void testDisabled_workRunsOnTheCallingThread() throws Exception
+    {
+        final BlockingExecution execution = blockingExecution(false);
+        Assert.assertFalse(execution.isVirtual());
+
+        final Thread caller = Thread.currentThread();
+        final CompletableFuture<Thread> result = execution.supply(Thread::currentThread).toCompletableFuture();
+        Assert.assertTrue(result.isDone());
+        Assert.assertSame(caller,
+                          result.get());
+    }
+
+    @Test
+    public void testFailureCompletesTheStageWithTheCause()
+    {
+        final IllegalStateException failure = new IllegalStateException("foo");
+        final CompletableFuture<Object> result = new BlockingExecution().supply(() ->
+                                                                                {
+                                                                                    throw new ExecutionException(failure);
+                                                                                })
+                                                                        .toCompletableFuture();
+        try
+        {
+            result.join();
+            Assert.fail("The stage should have completed exceptionally");
+        }
+        catch (Exception e)
+        {
+            Assert.assertSame(failure,
+                              e.getCause());
+        }
+    }
+
+    @Test
+    public void testEnabled_workRunsOnAVirtualThreadIfSupported() throws Exception
+    {
+        Assume.assumeTrue(BlockingExecution.virtualThreadExecutor().isPresent());
+
+        final BlockingExecution execution = blockingExecution(true);
+        Assert.assertTrue(execution.isVirtual());
+
+        final Thread thread = execution.supply(Thread::currentThread)
+                                       .toCompletableFuture()
+                                       .get(5,
+                                            TimeUnit.SECONDS);
+        Assert.assertNotSame(Thread.currentThread(),
+                             thread);
+        Assert.assertEquals(Boolean.TRUE,
+                            Thread.class.getMethod("isVirtual").invoke(thread));
+    }
+
+    @Test
+    public void testEnabled_fallsBackToTheCallingThreadIfNotSupported()
+    {
+        Assume.assumeFalse(BlockingExecution.virtualThreadExecutor().isPresent());
+
+        Assert.assertFalse(blockingExecution(true).isVirtual());
+    }
+
+    private static BlockingExecution blockingExecution(final boolean virtualThreads)
+    {
+        return new BlockingExecution(ConfigFactory.load()
+                                                  .withValue("deadbolt.java.virtual-threads.enabled",
+                                                             ConfigValueFactory.fromAnyRef(virtualThreads)),
+                                     NoOpDeadboltMetrics.INSTANCE,
+                                     Mockito.mock(ApplicationLifecycle.class));
+    }
+}
@@ -15,28 +15,45 @@
  */
 package be.objectify.deadbolt.java;
 
+import be.objectify.deadbolt.java.cache.DefaultDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.DefaultDynamicResourceHandlerCache;
 import be.objectify.deadbolt.java.cache.DefaultPatternCache;
+import be.objectify.deadbolt.java.cache.DefaultRolePermissionCache;
+import be.objectify.deadbolt.java.cache.DefaultSubjectCache;
+import be.objectify.deadbolt.java.cache.ExpiringDynamicDecisionCache;
+import be.objectify.deadbolt.java.cache.ExpiringSubjectCache;
 import be.objectify.deadbolt.java.cache.HandlerCache;
 import be.objectify.deadbolt.java.cache.SubjectCache;
+import be.objectify.deadbolt.java.metrics.ConstraintMetrics;
+import be.objectify.deadbolt.java.metrics.HandlerCall;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
+import be.objectify.deadbolt.java.metrics.SimpleDeadboltMetrics;
+import be.objectify.deadbolt.java.models.PatternType;
 import be.objectify.deadbolt.java.models.Permission;
 import be.objectify.deadbolt.java.models.Subject;
 import be.objectify.deadbolt.java.testsupport.TestHandlerCache;
 import be.objectify.deadbolt.java.testsupport.TestPermission;
 import be.objectify.deadbolt.java.testsupport.TestRole;
 import be.objectify.deadbolt.java.testsupport.TestSubject;
+import com.typesafe.config.ConfigFactory;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 import play.libs.F;
 import play.mvc.Http;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -104,6 +121,308 @@ public class ConstraintLogicTest extends AbstractFakeApplicationTest
 
     }
 
+    @Test
+    public void testRestrictDecisionsAreRecordedInMetrics() throws Exception
+    {
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(new TestSubject.Builder().role(new TestRole("foo")).build()), new Http.RequestBuilder().build())));
+        final SimpleDeadboltMetrics metrics = new SimpleDeadboltMetrics();
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache(),
+                                                          metrics,
+                                                          new DefaultRolePermissionCache(),
+                                                          new DefaultDynamicResourceHandlerCache(false),
+                                                          new DefaultDynamicDecisionCache());
+
+        for (String role : new String[]{"foo", "foo", "bar"})
+        {
+            logic.restrict(new Http.RequestBuilder().build(),
+                           handler(() -> new TestSubject.Builder().role(new TestRole("foo")).build()),
+                           Optional.empty(),
+                           () -> Collections.singletonList(new String[]{role}),
+                           rh -> CompletableFuture.completedFuture(true),
+                           (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                           ConstraintPoint.FILTER)
+                 .toCompletableFuture()
+                 .get();
+        }
+
+        final ConstraintMetrics restrict = metrics.constraint("restrict",
+                                                              ConstraintPoint.FILTER)
+                                                  .orElseThrow(AssertionError::new);
+        Assert.assertEquals(2,
+                            restrict.passCount());
+        Assert.assertEquals(1,
+                            restrict.failCount());
+        Assert.assertEquals(3,
+                            restrict.latency().count());
+        Assert.assertEquals(0,
+                            metrics.constraint("restrict",
+                                               ConstraintPoint.CONTROLLER).get().latency().count());
+        Assert.assertEquals(3,
+                            metrics.handlerCall(HandlerCall.GET_SUBJECT).count());
+    }
+
+    @Test
+    public void testRestrict_subjectIndexIsReusedWithinARequest() throws Exception
+    {
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.doReturn(Collections.singletonList(new TestRole("foo"))).when(subject).getRoles();
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.RequestHeader.class)))
+               .then(invocation -> CompletableFuture.completedFuture(F.Tuple(Optional.of(subject),
+                                                                             invocation.getArgument(1))));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+        final DeadboltHandler handler = handler(() -> subject);
+
+        final Http.RequestHeader first = logic.restrict(new Http.RequestBuilder().build(),
+                                                        handler,
+                                                        Optional.empty(),
+                                                        () -> Collections.singletonList(new String[]{"foo"}),
+                                                        rh -> CompletableFuture.<Http.RequestHeader>completedFuture(rh),
+                                                        (rh, h, content) -> CompletableFuture.completedFuture(null),
+                                                        ConstraintPoint.CONTROLLER)
+                                              .toCompletableFuture()
+                                              .get();
+        final Boolean second = logic.restrict(first,
+                                              handler,
+                                              Optional.empty(),
+                                              () -> Collections.singletonList(new String[]{"bar"}),
+                                              rh -> CompletableFuture.completedFuture(true),
+                                              (rh, h, content) -> CompletableFuture.completedFuture(false),
+                                              ConstraintPoint.CONTROLLER)
+                                    .toCompletableFuture()
+                                    .get();
+
+        Assert.assertFalse(second);
+        Mockito.verify(subject,
+                       Mockito.times(1))
+               .getRoles();
+    }
+
+    @Test
+    public void testEquality_multipleValues() throws Exception
+    {
+        final Subject subject = new TestSubject.Builder().permission(new TestPermission("printers.view"))
+                                                         .permission(new TestPermission("printers.edit"))
+                                                         .build();
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build())));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+
+        pass.accept(equality(logic, new String[]{"printers.view", "printers.edit"}, ConstraintMode.AND, false));
+        fail.accept(equality(logic, new String[]{"printers.view", "printers.delete"}, ConstraintMode.AND, false));
+        pass.accept(equality(logic, new String[]{"printers.delete", "printers.edit"}, ConstraintMode.OR, false));
+        fail.accept(equality(logic, new String[]{"printers.delete", "printers.create"}, ConstraintMode.OR, false));
+        pass.accept(equality(logic, new String[]{"printers.delete", "printers.create"}, ConstraintMode.AND, true));
+        fail.accept(equality(logic, new String[]{"printers.delete", "printers.view"}, ConstraintMode.AND, true));
+        pass.accept(equality(logic, new String[]{"printers.delete", "printers.view"}, ConstraintMode.OR, true));
+
+        // the subject is only fetched once per check, however many values there are
+        Mockito.verify(subjectCache,
+                       Mockito.times(7))
+               .apply(Mockito.any(DeadboltHandler.class),
+                      Mockito.any(Http.Request.class));
+    }
+
+    @Test
+    public void testPattern_noValuesFails()
+    {
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build())));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+
+        for (PatternType patternType : PatternType.values())
+        {
+            for (ConstraintMode mode : ConstraintMode.values())
+            {
+                fail.accept(logic.pattern(new Http.RequestBuilder().build(),
+                                          handler(() -> null),
+                                          Optional.empty(),
+                                          new String[0],
+                                          mode,
+                                          patternType,
+                                          Optional.empty(),
+                                          false,
+                                          rh -> CompletableFuture.completedFuture(true),
+                                          (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                                          ConstraintPoint.CONTROLLER));
+            }
+        }
+    }
+
+    private CompletionStage<Boolean> equality(final ConstraintLogic logic,
+                                              final String[] values,
+                                              final ConstraintMode mode,
+                                              final boolean invert)
+    {
+        return logic.pattern(new Http.RequestBuilder().build(),
+                             handler(() -> null),
+                             Optional.empty(),
+                             values,
+                             mode,
+                             PatternType.EQUALITY,
+                             Optional.empty(),
+                             invert,
+                             rh -> CompletableFuture.completedFuture(true),
+                             (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                             ConstraintPoint.CONTROLLER);
+    }
+
+    @Test
+    public void testWildcard_permissionsAreIndexedOncePerCheck() throws Exception
+    {
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.doReturn(Arrays.asList(new TestPermission("printers:view"),
+                                       new TestPermission("printers:edit")))
+               .when(subject)
+               .getPermissions();
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build())));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+
+        pass.accept(logic.pattern(new Http.RequestBuilder().build(),
+                                  handler(() -> subject),
+                                  Optional.empty(),
+                                  new String[]{"printers:view", "printers:*", "printers:edit"},
+                                  ConstraintMode.AND,
+                                  PatternType.WILDCARD,
+                                  Optional.empty(),
+                                  false,
+                                  rh -> CompletableFuture.completedFuture(true),
+                                  (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                                  ConstraintPoint.CONTROLLER));
+
+        Mockito.verify(subject,
+                       Mockito.times(1))
+               .getPermissions();
+    }
+
+    @Test
+    public void testCustom_stopsAtFirstDecisiveValue() throws Exception
+    {
+        final List<String> checked = Collections.synchronizedList(new ArrayList<>());
+        final DynamicResourceHandler drh = new AbstractDynamicResourceHandler()
+        {
+            @Override
+            public CompletionStage<Boolean> checkPermission(final String permissionValue,
+                                                            final Optional<String> meta,
+                                                            final DeadboltHandler deadboltHandler,
+                                                            final Http.RequestHeader requestHeader)
+            {
+                checked.add(permissionValue);
+                // values starting with "async" complete later, so the check continues asynchronously
+                return permissionValue.startsWith("async") ? CompletableFuture.supplyAsync(() -> permissionValue.endsWith("yes"))
+                                                           : CompletableFuture.completedFuture(permissionValue.endsWith("yes"));
+            }
+        };
+        final int[] drhFetches = {0};
+        final DeadboltHandler handler = withDrh(() ->
+                                                {
+                                                    drhFetches[0]++;
+                                                    return drh;
+                                                });
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          Mockito.mock(SubjectCache.class),
+                                                          new DefaultPatternCache());
+
+        pass.accept(custom(logic, handler, new String[]{"a-no", "async-b-no", "c-yes", "d-yes"}, ConstraintMode.OR));
+        Assert.assertEquals(Arrays.asList("a-no", "async-b-no", "c-yes"),
+                            checked);
+        Assert.assertEquals(1,
+                            drhFetches[0]);
+
+        checked.clear();
+        fail.accept(custom(logic, handler, new String[]{"a-yes", "async-b-no", "c-yes"}, ConstraintMode.AND));
+        Assert.assertEquals(Arrays.asList("a-yes", "async-b-no"),
+                            checked);
+
+        checked.clear();
+        pass.accept(custom(logic, handler, new String[]{"async-a-yes", "b-yes", "async-c-yes"}, ConstraintMode.AND));
+        Assert.assertEquals(3,
+                            checked.size());
+        Assert.assertEquals(3,
+                            drhFetches[0]);
+    }
+
+    @Test
+    public void testCustom_batchIsUsedWhenOverridden() throws Exception
+    {
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        final DynamicResourceHandler drh = new AbstractDynamicResourceHandler()
+        {
+            @Override
+            public CompletionStage<Boolean> checkPermission(final String permissionValue,
+                                                            final Optional<String> meta,
+                                                            final DeadboltHandler deadboltHandler,
+                                                            final Http.RequestHeader requestHeader)
+            {
+                throw new AssertionError("A single permission check was made for [" + permissionValue + "]");
+            }
+
+            @Override
+            public CompletionStage<Map<String, Boolean>> checkPermissions(final List<String> permissionValues,
+                                                                          final Optional<String> meta,
+                                                                          final DeadboltHandler deadboltHandler,
+                                                                          final Http.RequestHeader requestHeader)
+            {
+                batches.add(permissionValues);
+                final Map<String, Boolean> results = new HashMap<>();
+                permissionValues.forEach(value -> results.put(value,
+                                                              value.endsWith("yes")));
+                return CompletableFuture.completedFuture(results);
+            }
+        };
+        final DeadboltHandler handler = withDrh(() -> drh);
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          Mockito.mock(SubjectCache.class),
+                                                          new DefaultPatternCache());
+
+        pass.accept(custom(logic, handler, new String[]{"a-no", "b-yes", "c-no"}, ConstraintMode.OR));
+        fail.accept(custom(logic, handler, new String[]{"a-yes", "b-no", "c-yes"}, ConstraintMode.AND));
+        pass.accept(custom(logic, handler, new String[]{"a-yes", "b-yes"}, ConstraintMode.AND));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a-no", "b-yes", "c-no"),
+                                          Arrays.asList("a-yes", "b-no", "c-yes"),
+                                          Arrays.asList("a-yes", "b-yes")),
+                            batches);
+    }
+
+    private CompletionStage<Boolean> custom(final ConstraintLogic logic,
+                                            final DeadboltHandler handler,
+                                            final String[] values,
+                                            final ConstraintMode mode)
+    {
+        return logic.pattern(new Http.RequestBuilder().build(),
+                             handler,
+                             Optional.empty(),
+                             values,
+                             mode,
+                             PatternType.CUSTOM,
+                             Optional.empty(),
+                             false,
+                             rh -> CompletableFuture.completedFuture(true),
+                             (rh, hdlr, content) -> CompletableFuture.completedFuture(false),
+                             ConstraintPoint.CONTROLLER);
+    }
+
     @Test
     public void testDynamic_pass() throws Exception
     {
@@ -118,6 +437,265 @@ public class ConstraintLogicTest extends AbstractFakeApplicationTest
                     fail);
     }
 
+    @Test
+    public void testRestrict_completedSubjectIsCheckedSynchronously()
+    {
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(new TestSubject.Builder().role(new TestRole("foo")).build()), new Http.RequestBuilder().build())));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+        final CompletableFuture<Boolean> passed = CompletableFuture.completedFuture(true);
+
+        final CompletionStage<Boolean> result = logic.restrict(new Http.RequestBuilder().build(),
+                                                               withDrh(() -> null),
+                                                               Optional.empty(),
+                                                               RoleGroup.of(Collections.singletonList(new String[]{"foo"})),
+                                                               rh -> passed,
+                                                               (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                                                               ConstraintPoint.CONTROLLER);
+
+        // the pass stage is returned as it is, with no stage composed onto the subject's
+        Assert.assertSame(passed,
+                          result);
+    }
+
+    @Test
+    public void testRestrict_exceptionWithCompletedSubjectCompletesExceptionally()
+    {
+        final SubjectCache subjectCache = Mockito.mock(SubjectCache.class);
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.Request.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(new TestSubject.Builder().role(new TestRole("foo")).build()), new Http.RequestBuilder().build())));
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          subjectCache,
+                                                          new DefaultPatternCache());
+
+        final CompletionStage<Boolean> result = logic.restrict(new Http.RequestBuilder().build(),
+                                                               withDrh(() -> null),
+                                                               Optional.empty(),
+                                                               () ->
+                                                               {
+                                                                   throw new IllegalStateException("no role groups");
+                                                               },
+                                                               rh -> CompletableFuture.completedFuture(true),
+                                                               (rh, handler, content) -> CompletableFuture.completedFuture(false),
+                                                               ConstraintPoint.CONTROLLER);
+
+        Assert.assertTrue(result.toCompletableFuture().isCompletedExceptionally());
+    }
+
+    @Test
+    public void testRestrict_subjectFromExpiringSubjectCache() throws Exception
+    {
+        final Subject subject = new TestSubject.Builder().role(new TestRole("foo")).build();
+        final DeadboltHandler handler = new NoPreAuthDeadboltHandler()
+        {
+            @Override
+            public CompletionStage<Optional<? extends Subject>> getSubject(final Http.RequestHeader requestHeader)
+            {
+                return CompletableFuture.completedFuture(Optional.of(subject));
+            }
+
+            @Override
+            public Optional<String> getSubjectKey(final Http.RequestHeader requestHeader)
+            {
+                return Optional.of("alice");
+            }
+        };
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          new ExpiringSubjectCache(new DefaultSubjectCache(ConfigFactory.load()),
+                                                                                   Duration.ofMinutes(1),
+                                                                                   100),
+                                                          new DefaultPatternCache());
+
+        // the second check is served from the cache
+        for (int i = 0; i < 2; i++)
+        {
+            pass.accept(logic.restrict(new Http.RequestBuilder().build(),
+                                       handler,
+                                       Optional.empty(),
+                                       RoleGroup.of(Collections.singletonList(new String[]{"foo"})),
+                                       rh -> CompletableFuture.completedFuture(true),
+                                       (rh, dh, content) -> CompletableFuture.completedFuture(false),
+                                       ConstraintPoint.CONTROLLER));
+            pass.accept(logic.subjectPresent(new Http.RequestBuilder().build(),
+                                             handler,
+                                             Optional.empty(),
+                                             (rh, dh, content) -> CompletableFuture.completedFuture(true),
+                                             (rh, dh, content) -> CompletableFuture.completedFuture(false),
+                                             ConstraintPoint.CONTROLLER));
+        }
+    }
+
+    @Test
+    public void testDynamic_decisionIsCachedAcrossRequests() throws Exception
+    {
+        final Subject subject = new TestSubject.Builder().identifier("greet").build();
+        final AtomicInteger checks = new AtomicInteger();
+        final DeadboltHandler handler = new NoPreAuthDeadboltHandler()
+        {
+            @Override
+            public CompletionStage<Optional<? extends Subject>> getSubject(final Http.RequestHeader requestHeader)
+            {
+                return CompletableFuture.completedFuture(Optional.of(subject));
+            }
+
+            @Override
+            public CompletionStage<Optional<DynamicResourceHandler>> getDynamicResourceHandler(final Http.RequestHeader requestHeader)
+            {
+                return CompletableFuture.completedFuture(Optional.of(new AbstractDynamicResourceHandler()
+                {
+                    @Override
+                    public CompletionStage<Boolean> isAllowed(final String name,
+                                                              final Optional<String> meta,
+                                                              final DeadboltHandler deadboltHandler,
+                                                              final Http.RequestHeader requestHeader)
+                    {
+                        checks.incrementAndGet();
+                        return CompletableFuture.completedFuture(true);
+                    }
+                }));
+            }
+
+            @Override
+            public Optional<String> getDynamicDecisionKey(final Optional<String> subjectIdentifier,
+                                                          final String name,
+                                                          final Optional<String> meta)
+            {
+                return meta;
+            }
+        };
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          (hdlr, rh) -> hdlr.getSubject(rh).thenApply(maybeSubject -> F.Tuple(maybeSubject, rh)),
+                                                          new DefaultPatternCache(),
+                                                          NoOpDeadboltMetrics.INSTANCE,
+                                                          new DefaultRolePermissionCache(),
+                                                          new DefaultDynamicResourceHandlerCache(false),
+                                                          new ExpiringDynamicDecisionCache(Duration.ofMinutes(1),
+                                                                                           Collections.emptyMap(),
+                                                                                           Duration.ZERO,
+                                                                                           100));
+
+        for (int i = 0; i < 2; i++)
+        {
+            pass.accept(logic.dynamic(new Http.RequestBuilder().build(),
+                                      handler,
+                                      Optional.empty(),
+                                      "foo",
+                                      Optional.of("bar"),
+                                      rh -> CompletableFuture.completedFuture(true),
+                                      (rh, hdlr, content) -> CompletableFuture.completedFuture(false),
+                                      ConstraintPoint.CONTROLLER));
+        }
+        Assert.assertEquals(1,
+                            checks.get());
+    }
+
+    @Test
+    public void testDynamic_subjectIsNotLoadedForHandlersWithoutDecisionKeys() throws Exception
+    {
+        final CountingHandler handler = new CountingHandler();
+
+        dynamicTwice(handler);
+
+        Assert.assertEquals(0,
+                            handler.subjectLoads.get());
+        Assert.assertEquals(1,
+                            handler.drhLoads.get());
+    }
+
+    @Test
+    public void testDynamic_cachedDecisionsKeepTheDynamicResourceHandlerOfTheRequest() throws Exception
+    {
+        final CountingHandler handler = new CountingHandler()
+        {
+            @Override
+            public Optional<String> getDynamicDecisionKey(final Optional<String> subjectIdentifier,
+                                                          final String name,
+                                                          final Optional<String> meta)
+            {
+                return meta;
+            }
+        };
+
+        dynamicTwice(handler);
+
+        Assert.assertEquals(2,
+                            handler.subjectLoads.get());
+        Assert.assertEquals(1,
+                            handler.drhLoads.get());
+    }
+
+    /**
+     * Applies two dynamic constraints with different names to the same request, passing the request header returned by
+     * the first to the second.
+     */
+    private static void dynamicTwice(final DeadboltHandler handler) throws Exception
+    {
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          (hdlr, rh) -> hdlr.getSubject(rh).thenApply(maybeSubject -> F.Tuple(maybeSubject, rh)),
+                                                          new DefaultPatternCache(),
+                                                          NoOpDeadboltMetrics.INSTANCE,
+                                                          new DefaultRolePermissionCache(),
+                                                          new DefaultDynamicResourceHandlerCache(true),
+                                                          new ExpiringDynamicDecisionCache(Duration.ofMinutes(1),
+                                                                                           Collections.emptyMap(),
+                                                                                           Duration.ZERO,
+                                                                                           100));
+        Http.RequestHeader requestHeader = new Http.RequestBuilder().build();
+        for (String name : new String[]{"foo", "bar"})
+        {
+            requestHeader = logic.<Http.RequestHeader>dynamic(requestHeader,
+                                                              handler,
+                                                              Optional.empty(),
+                                                              name,
+                                                              Optional.of("baz"),
+                                                              CompletableFuture::completedFuture,
+                                                              (rh, hdlr, content) -> CompletableFuture.completedFuture(null),
+                                                              ConstraintPoint.CONTROLLER)
+                                 .toCompletableFuture()
+                                 .get();
+            Assert.assertNotNull(requestHeader);
+        }
+    }
+
+    /**
+     * Counts how often the subject and the dynamic resource handler, which allows everything, are asked for.
+     */
+    private static class CountingHandler extends NoPreAuthDeadboltHandler
+    {
+        final AtomicInteger subjectLoads = new AtomicInteger();
+
+        final AtomicInteger drhLoads = new AtomicInteger();
+
+        @Override
+        public CompletionStage<Optional<? extends Subject>> getSubject(final Http.RequestHeader requestHeader)
+        {
+            subjectLoads.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of(new TestSubject.Builder().identifier("greet").build()));
+        }
+
+        @Override
+        public CompletionStage<Optional<DynamicResourceHandler>> getDynamicResourceHandler(final Http.RequestHeader requestHeader)
+        {
+            drhLoads.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of(new AbstractDynamicResourceHandler()
+            {
+                @Override
+                public CompletionStage<Boolean> isAllowed(final String name,
+                                                          final Optional<String> meta,
+                                                          final DeadboltHandler deadboltHandler,
+                                                          final Http.RequestHeader requestHeader)
+                {
+                    return CompletableFuture.completedFuture(true);
+                }
+            }));
+        }
+    }
+
     private void testDynamic(final boolean allow,
                              final Consumer<CompletionStage<Boolean>> test)
     {
@@ -219,6 +797,54 @@ public class ConstraintLogicTest extends AbstractFakeApplicationTest
                                  pass);
     }
 
+    @Test
+    public void testRoleBasedPermissions_multipleRoles() throws Exception
+    {
+        final Subject subject = new TestSubject.Builder().permission(new TestPermission("scanners.edit")).build();
+        final Map<String, List<? extends Permission>> permissionsByRole = new HashMap<>();
+        permissionsByRole.put("printers",
+                              Collections.singletonList(new TestPermission("printers.edit")));
+        permissionsByRole.put("scanners",
+                              Collections.singletonList(new TestPermission("scanners.edit")));
+        final List<Collection<String>> batches = new ArrayList<>();
+        final DeadboltHandler handler = new NoPreAuthDeadboltHandler()
+        {
+            @Override
+            public CompletionStage<Optional<? extends Subject>> getSubject(final Http.RequestHeader requestHeader)
+            {
+                return CompletableFuture.completedFuture(Optional.of(subject));
+            }
+
+            @Override
+            public CompletionStage<Map<String, List<? extends Permission>>> getPermissionsForRoles(final Collection<String> roleNames)
+            {
+                batches.add(new ArrayList<>(roleNames));
+                final Map<String, List<? extends Permission>> permissions = new HashMap<>();
+                roleNames.forEach(roleName -> permissions.put(roleName,
+                                                              permissionsByRole.getOrDefault(roleName,
+                                                                                             Collections.emptyList())));
+                return CompletableFuture.completedFuture(permissions);
+            }
+        };
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          (hdlr, rh) -> hdlr.getSubject(rh).thenApply(maybeSubject -> F.Tuple(maybeSubject, rh)),
+                                                          new DefaultPatternCache());
+
+        final CompletionStage<Boolean> result = logic.roleBasedPermissions(new Http.RequestBuilder().build(),
+                                                                           handler,
+                                                                           Optional.empty(),
+                                                                           Arrays.asList("printers",
+                                                                                         "scanners"),
+                                                                           rh -> CompletableFuture.completedFuture(true),
+                                                                           (rh, hdlr, content) -> CompletableFuture.completedFuture(false),
+                                                                           ConstraintPoint.CONTROLLER);
+
+        pass.accept(result);
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("printers",
+                                                                    "scanners")),
+                            batches);
+    }
+
     private void testRoleBasedPermissions(final Subject subject,
                                           final String roleName,
                                           final List<? extends Permission> associatedPermissions,
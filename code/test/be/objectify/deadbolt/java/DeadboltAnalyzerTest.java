@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -461,6 +462,153 @@ public class DeadboltAnalyzerTest
                                                                       Optional.of("printers.edit")));
     }
 
+    @Test
+    public void testCheckRoles_anyGroupMatches()
+    {
+        final List<TestRole> roles = new ArrayList<>();
+        roles.add(new TestRole("admin"));
+
+        Assert.assertTrue(new DeadboltAnalyzer().checkRoles(Optional.of(new TestSubject.Builder().roles(roles).build()),
+                                                            RoleGroup.of(Arrays.asList(new String[]{"foo"},
+                                                                                       new String[]{"admin"}))));
+    }
+
+    @Test
+    public void testCheckRoles_noGroupMatches()
+    {
+        final List<TestRole> roles = new ArrayList<>();
+        roles.add(new TestRole("admin"));
+
+        Assert.assertFalse(new DeadboltAnalyzer().checkRoles(Optional.of(new TestSubject.Builder().roles(roles).build()),
+                                                             RoleGroup.of(Arrays.asList(new String[]{"foo"},
+                                                                                        new String[]{"!admin"}))));
+    }
+
+    @Test
+    public void testIndex_reusedWithinAnIndex()
+    {
+        final List<TestRole> roles = new ArrayList<>();
+        roles.add(new TestRole("admin"));
+        final Subject subject = new TestSubject.Builder().roles(roles).build();
+        final SubjectIndex index = new DeadboltAnalyzer().index(subject);
+
+        Assert.assertSame(subject,
+                          index.subject());
+        Assert.assertSame(index.roleNames(),
+                          index.roleNames());
+    }
+
+    @Test
+    public void testIndex_notSharedBetweenChecks()
+    {
+        final List<TestRole> roles = new ArrayList<>();
+        roles.add(new TestRole("admin"));
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.doReturn(roles).when(subject).getRoles();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+
+        Assert.assertNotSame(analyzer.index(subject),
+                             analyzer.index(subject));
+        Assert.assertTrue(analyzer.hasRole(Optional.of(subject),
+                                           "admin"));
+        // the list is changed in place, without changing its size
+        roles.set(0,
+                  new TestRole("user"));
+        Assert.assertFalse(analyzer.hasRole(Optional.of(subject),
+                                            "admin"));
+        Assert.assertTrue(analyzer.hasRole(Optional.of(subject),
+                                           "user"));
+    }
+
+    @Test
+    public void testIndex_rebuiltWhenRolesChange()
+    {
+        final List<TestRole> roles = new ArrayList<>();
+        roles.add(new TestRole("admin"));
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.doReturn(roles).when(subject).getRoles();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+
+        Assert.assertFalse(analyzer.hasRole(Optional.of(subject),
+                                            "editor"));
+        roles.add(new TestRole("editor"));
+        Assert.assertTrue(analyzer.hasRole(Optional.of(subject),
+                                           "editor"));
+    }
+
+    @Test
+    public void testPermissionValues_largeNumberOfPermissions()
+    {
+        final List<TestPermission> permissions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            permissions.add(new TestPermission("resource." + i + ".edit"));
+        }
+        final Subject subject = new TestSubject.Builder().permissions(permissions).build();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+
+        Assert.assertTrue(analyzer.checkPatternEquality(Optional.of(subject),
+                                                        Optional.of("resource.4999.edit")));
+        Assert.assertFalse(analyzer.checkPatternEquality(Optional.of(subject),
+                                                         Optional.of("resource.5000.edit")));
+        Assert.assertEquals(5000,
+                            analyzer.getPermissionValues(Optional.of(subject)).size());
+    }
+
+    @Test
+    public void testPermissionValues_reusedWithinAnIndex()
+    {
+        final Subject subject = new TestSubject.Builder().permission(new TestPermission("printers.view"))
+                                                         .build();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+        final SubjectIndex index = analyzer.index(subject);
+
+        Assert.assertTrue(analyzer.checkPatternEquality(index,
+                                                        "printers.view"));
+        Assert.assertFalse(analyzer.checkPatternEquality(index,
+                                                         "printers.edit"));
+        Assert.assertFalse(analyzer.checkPatternEquality(index,
+                                                         null));
+        Assert.assertSame(index.permissionValues(),
+                          index.permissionValues());
+    }
+
+    @Test
+    public void testPermissionValues_rebuiltWhenPermissionsChange()
+    {
+        final List<TestPermission> permissions = new ArrayList<>();
+        permissions.add(new TestPermission("printers.view"));
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.doReturn(permissions).when(subject).getPermissions();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+
+        Assert.assertFalse(analyzer.checkPatternEquality(Optional.of(subject),
+                                                         Optional.of("printers.edit")));
+        permissions.add(new TestPermission("printers.edit"));
+        Assert.assertTrue(analyzer.checkPatternEquality(Optional.of(subject),
+                                                        Optional.of("printers.edit")));
+    }
+
+    @Test
+    public void testCheckWildcardPattern()
+    {
+        final Subject subject = new TestSubject.Builder().permissions(Arrays.asList(new TestPermission("invoice:42:view"),
+                                                                                    new TestPermission("printer:edit")))
+                                                         .build();
+        final DeadboltAnalyzer analyzer = new DeadboltAnalyzer();
+
+        Assert.assertTrue(analyzer.checkWildcardPattern(Optional.of(subject),
+                                                        Optional.of("invoice:*:view")));
+        Assert.assertTrue(analyzer.checkWildcardPattern(Optional.of(subject),
+                                                        Optional.of("printer:*")));
+        Assert.assertFalse(analyzer.checkWildcardPattern(Optional.of(subject),
+                                                         Optional.of("invoice:*:edit")));
+        Assert.assertFalse(analyzer.checkWildcardPattern(Optional.of(subject),
+                                                         Optional.empty()));
+        Assert.assertFalse(analyzer.checkWildcardPattern(Optional.empty(),
+                                                         Optional.of("printer:*")));
+    }
+
     private static class TestSubject implements Subject
     {
         private final String identifier;
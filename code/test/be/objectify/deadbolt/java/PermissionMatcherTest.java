@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.testsupport.TestPermission;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class PermissionMatcherTest
+{
+    @Test
+    public void testLiteralsAndPatternsAreMatched()
+    {
+        final PermissionMatcher matcher = matcher("printers.edit",
+                                                  "scanners\\..*",
+                                                  "fax(es)?\\.view",
+                                                  "copiers");
+
+        Assert.assertTrue(matcher.matches("printers.edit"));
+        Assert.assertTrue(matcher.matches("scanners.delete"));
+        Assert.assertTrue(matcher.matches("faxes.view"));
+        Assert.assertTrue(matcher.matches("fax.view"));
+        Assert.assertTrue(matcher.matches("copiers"));
+        Assert.assertFalse(matcher.matches("printers.view"));
+        Assert.assertFalse(matcher.matches("scanners"));
+        Assert.assertFalse(matcher.matches("faxes.view.all"));
+        Assert.assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void testOnlyValuesWithoutMetacharactersAreLiterals()
+    {
+        // "printers.edit" contains a metacharacter, so it is a pattern and matches "printersXedit"
+        Assert.assertTrue(matcher("printers.edit").matches("printersXedit"));
+        Assert.assertFalse(matcher("printers").matches("printer"));
+    }
+
+    @Test
+    public void testBackReferencesAreMatchedSeparately()
+    {
+        final PermissionMatcher matcher = matcher("(a)b\\1",
+                                                  "(x)y\\1");
+
+        Assert.assertTrue(matcher.matches("aba"));
+        Assert.assertTrue(matcher.matches("xyx"));
+        Assert.assertFalse(matcher.matches("abx"));
+    }
+
+    @Test
+    public void testPatternsThatCannotBeCombinedAreMatchedSeparately()
+    {
+        final PermissionMatcher matcher = matcher("(?<id>[0-9]+)\\.edit",
+                                                  "(?<id>[a-z]+)\\.view",
+                                                  "(?x) foo # a comment");
+
+        Assert.assertTrue(matcher.matches("123.edit"));
+        Assert.assertTrue(matcher.matches("abc.view"));
+        Assert.assertTrue(matcher.matches("foo"));
+        Assert.assertFalse(matcher.matches("abc.edit"));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidPatternsAreReported()
+    {
+        matcher("printers.edit",
+                "scanners.(");
+    }
+
+    @Test
+    public void testMatchesAny()
+    {
+        final PermissionMatcher matcher = matcher("printers\\.[a-z]+",
+                                                  "scanners.edit");
+
+        Assert.assertTrue(matcher.matchesAny(Arrays.asList(new TestPermission("faxes.view"),
+                                                           new TestPermission("printers.view"))));
+        Assert.assertTrue(matcher.matchesAny(Collections.singletonList(new TestPermission("scanners.edit"))));
+        Assert.assertFalse(matcher.matchesAny(Arrays.asList(new TestPermission("faxes.view"),
+                                                            new TestPermission("printers.1"))));
+        Assert.assertFalse(matcher.matchesAny(Collections.emptyList()));
+        Assert.assertFalse(matcher.matchesAny(null));
+    }
+
+    @Test
+    public void testEmptyMatcherMatchesNothing()
+    {
+        final PermissionMatcher matcher = matcher();
+
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matchesAny(Collections.singletonList(new TestPermission("printers.edit"))));
+    }
+
+    private static PermissionMatcher matcher(final String... patternValues)
+    {
+        final List<String> values = Arrays.asList(patternValues);
+        return PermissionMatcher.of(values,
+                                    Pattern::compile);
+    }
+}
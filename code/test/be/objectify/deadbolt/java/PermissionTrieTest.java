@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import be.objectify.deadbolt.java.testsupport.TestPermission;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+public class PermissionTrieTest
+{
+    @Test
+    public void testSegmentsMustBeEqual()
+    {
+        final PermissionTrie trie = trie("invoice:42:view",
+                                         "printer");
+
+        Assert.assertTrue(trie.matches("invoice:42:view"));
+        Assert.assertTrue(trie.matches("printer"));
+        Assert.assertFalse(trie.matches("invoice:42"));
+        Assert.assertFalse(trie.matches("invoice:42:edit"));
+        Assert.assertFalse(trie.matches("invoice:42:view:all"));
+        Assert.assertFalse(trie.matches("printer:view"));
+        Assert.assertFalse(trie.matches(null));
+    }
+
+    @Test
+    public void testWildcardMatchesOneSegment()
+    {
+        final PermissionTrie trie = trie("invoice:42:view",
+                                         "invoice:43:edit");
+
+        Assert.assertTrue(trie.matches("invoice:*:view"));
+        Assert.assertTrue(trie.matches("invoice:*:edit"));
+        Assert.assertTrue(trie.matches("*:43:edit"));
+        Assert.assertFalse(trie.matches("invoice:*:delete"));
+        Assert.assertFalse(trie.matches("*:view"));
+    }
+
+    @Test
+    public void testTrailingWildcardMatchesOneOrMoreSegments()
+    {
+        final PermissionTrie trie = trie("invoice",
+                                         "invoice:42:view",
+                                         "printer");
+
+        Assert.assertTrue(trie.matches("invoice:*"));
+        Assert.assertTrue(trie.matches("invoice:42:*"));
+        Assert.assertTrue(trie.matches("*"));
+        Assert.assertFalse(trie.matches("printer:*"));
+        Assert.assertFalse(trie.matches("invoice:42:view:*"));
+    }
+
+    @Test
+    public void testNoPermissions()
+    {
+        final PermissionTrie trie = new PermissionTrie(Collections.emptyList());
+
+        Assert.assertFalse(trie.matches("*"));
+        Assert.assertFalse(trie.matches("invoice"));
+    }
+
+    private static PermissionTrie trie(final String... values)
+    {
+        return new PermissionTrie(Arrays.stream(values)
+                                        .map(TestPermission::new)
+                                        .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RoleGroupTest
+{
+    private final Set<String> heldRoles = new HashSet<>(Arrays.asList("admin",
+                                                                      "editor"));
+
+    @Test
+    public void testNullGroup()
+    {
+        Assert.assertFalse(RoleGroup.of((String[]) null).test(heldRoles));
+    }
+
+    @Test
+    public void testEmptyGroup()
+    {
+        Assert.assertFalse(RoleGroup.of().test(heldRoles));
+    }
+
+    @Test
+    public void testAllRequiredRolesHeld()
+    {
+        Assert.assertTrue(RoleGroup.of("admin",
+                                       "editor").test(heldRoles));
+    }
+
+    @Test
+    public void testRequiredRoleMissing()
+    {
+        Assert.assertFalse(RoleGroup.of("admin",
+                                        "foo").test(heldRoles));
+    }
+
+    @Test
+    public void testNegatedRoleHeld()
+    {
+        Assert.assertFalse(RoleGroup.of("admin",
+                                        "!editor").test(heldRoles));
+    }
+
+    @Test
+    public void testNegatedRoleNotHeld()
+    {
+        Assert.assertTrue(RoleGroup.of("admin",
+                                       "!foo").test(heldRoles));
+    }
+
+    @Test
+    public void testOnlyNegatedRoles()
+    {
+        Assert.assertTrue(RoleGroup.of("!foo").test(heldRoles));
+        Assert.assertTrue(RoleGroup.of("!foo").test(Collections.emptySet()));
+    }
+
+    @Test
+    public void testParseList_ignoresNulls()
+    {
+        final List<RoleGroup> roleGroups = RoleGroup.of(Arrays.asList(new String[]{"admin"},
+                                                                      null,
+                                                                      new String[]{"foo"}));
+        Assert.assertEquals(2,
+                            roleGroups.size());
+        Assert.assertTrue(roleGroups.get(0).test(heldRoles));
+        Assert.assertFalse(roleGroups.get(1).test(heldRoles));
+    }
+
+    @Test
+    public void testParseList_null()
+    {
+        Assert.assertTrue(RoleGroup.of((List<String[]>) null).isEmpty());
+    }
+}
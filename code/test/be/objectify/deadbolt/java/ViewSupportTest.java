@@ -23,7 +23,11 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import play.mvc.Http;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -143,6 +147,210 @@ public class ViewSupportTest extends AbstractFakeApplicationTest
         Assert.assertTrue(result);
     }
 
+    @Test
+    public void testPrefetchedDecisionsAreUsed() throws Throwable
+    {
+        Mockito.when(handlerCache.get().getSubject(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        final ViewSupport viewSupport = viewSupport();
+
+        final Http.Request request = viewSupport.prefetch(new Http.RequestBuilder().build(),
+                                                          null,
+                                                          Arrays.asList(ViewConstraint.pattern("allow",
+                                                                                               PatternType.CUSTOM,
+                                                                                               Optional.empty(),
+                                                                                               false),
+                                                                        ViewConstraint.pattern("deny",
+                                                                                               PatternType.CUSTOM,
+                                                                                               Optional.empty(),
+                                                                                               false),
+                                                                        ViewConstraint.subjectPresent()))
+                                                .toCompletableFuture()
+                                                .get();
+        Mockito.clearInvocations(handlerCache.get());
+
+        final ViewDecisions decisions = request.attrs().get(ViewDecisions.KEY);
+        Assert.assertEquals(3,
+                            decisions.size());
+        Assert.assertEquals(Optional.of(true),
+                            decisions.decision(handlerCache.get().getId(),
+                                               ViewConstraint.pattern("allow",
+                                                                      PatternType.CUSTOM,
+                                                                      Optional.empty(),
+                                                                      false)));
+        Assert.assertTrue(viewSupport.viewPattern("allow",
+                                                  PatternType.CUSTOM,
+                                                  Optional.empty(),
+                                                  false,
+                                                  handlerCache.get(),
+                                                  Optional.empty(),
+                                                  1000L,
+                                                  request));
+        Assert.assertFalse(viewSupport.viewPattern("deny",
+                                                   PatternType.CUSTOM,
+                                                   Optional.empty(),
+                                                   false,
+                                                   handlerCache.get(),
+                                                   Optional.empty(),
+                                                   1000L,
+                                                   request));
+        Assert.assertFalse(viewSupport.viewSubjectPresent(handlerCache.get(),
+                                                          Optional.empty(),
+                                                          1000L,
+                                                          request));
+        Mockito.verify(handlerCache.get(),
+                       Mockito.never())
+               .getSubject(Mockito.any(Http.RequestHeader.class));
+    }
+
+    @Test
+    public void testPrefetchBatchesDynamicResourceHandlerChecks() throws Throwable
+    {
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        final DynamicResourceHandler drh = new AbstractDynamicResourceHandler()
+        {
+            @Override
+            public CompletionStage<Map<String, Boolean>> isAllowed(final List<String> names,
+                                                                   final Optional<String> meta,
+                                                                   final DeadboltHandler deadboltHandler,
+                                                                   final Http.RequestHeader requestHeader)
+            {
+                batches.add(names);
+                final Map<String, Boolean> results = new HashMap<>();
+                names.forEach(name -> results.put(name,
+                                                  name.startsWith("allow")));
+                return CompletableFuture.completedFuture(results);
+            }
+
+            @Override
+            public CompletionStage<Map<String, Boolean>> checkPermissions(final List<String> permissionValues,
+                                                                          final Optional<String> meta,
+                                                                          final DeadboltHandler deadboltHandler,
+                                                                          final Http.RequestHeader requestHeader)
+            {
+                batches.add(permissionValues);
+                final Map<String, Boolean> results = new HashMap<>();
+                permissionValues.forEach(value -> results.put(value,
+                                                              value.startsWith("allow")));
+                return CompletableFuture.completedFuture(results);
+            }
+        };
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.getSubject(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        Mockito.when(handler.getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.of(drh)));
+
+        final Http.Request request = viewSupport().prefetch(new Http.RequestBuilder().build(),
+                                                            handler,
+                                                            Arrays.asList(ViewConstraint.dynamic("allow-a",
+                                                                                                 Optional.empty()),
+                                                                          ViewConstraint.dynamic("deny-b",
+                                                                                                 Optional.empty()),
+                                                                          ViewConstraint.pattern("allow-c",
+                                                                                                 PatternType.CUSTOM,
+                                                                                                 Optional.empty(),
+                                                                                                 true),
+                                                                          ViewConstraint.pattern("deny-d",
+                                                                                                 PatternType.CUSTOM,
+                                                                                                 Optional.empty(),
+                                                                                                 true)))
+                                                  .toCompletableFuture()
+                                                  .get();
+
+        final ViewDecisions decisions = request.attrs().get(ViewDecisions.KEY);
+        Assert.assertEquals(Optional.of(true),
+                            decisions.decision(handler.getId(),
+                                               ViewConstraint.dynamic("allow-a",
+                                                                      Optional.empty())));
+        Assert.assertEquals(Optional.of(false),
+                            decisions.decision(handler.getId(),
+                                               ViewConstraint.dynamic("deny-b",
+                                                                      Optional.empty())));
+        // the patterns are inverted
+        Assert.assertEquals(Optional.of(false),
+                            decisions.decision(handler.getId(),
+                                               ViewConstraint.pattern("allow-c",
+                                                                      PatternType.CUSTOM,
+                                                                      Optional.empty(),
+                                                                      true)));
+        Assert.assertEquals(Optional.of(true),
+                            decisions.decision(handler.getId(),
+                                               ViewConstraint.pattern("deny-d",
+                                                                      PatternType.CUSTOM,
+                                                                      Optional.empty(),
+                                                                      true)));
+        Assert.assertEquals(2,
+                            batches.size());
+        Assert.assertTrue(batches.contains(Arrays.asList("allow-a",
+                                                         "deny-b")));
+        Assert.assertTrue(batches.contains(Arrays.asList("allow-c",
+                                                         "deny-d")));
+    }
+
+    @Test
+    public void testConstraintsThatWereNotPrefetchedAreEvaluated() throws Throwable
+    {
+        Mockito.when(handlerCache.get().getSubject(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        final ViewSupport viewSupport = viewSupport();
+
+        final Http.Request request = viewSupport.prefetch(new Http.RequestBuilder().build(),
+                                                          null,
+                                                          Collections.singletonList(ViewConstraint.pattern("deny",
+                                                                                                           PatternType.CUSTOM,
+                                                                                                           Optional.empty(),
+                                                                                                           false)))
+                                                .toCompletableFuture()
+                                                .get();
+
+        Assert.assertTrue(viewSupport.viewPattern("allow",
+                                                  PatternType.CUSTOM,
+                                                  Optional.empty(),
+                                                  false,
+                                                  handlerCache.get(),
+                                                  Optional.empty(),
+                                                  1000L,
+                                                  request));
+    }
+
+    @Test
+    public void testRepeatedTagsAreMemoized() throws Throwable
+    {
+        final ViewSupport viewSupport = viewSupport();
+        final Http.Request request = viewSupport.memoize(new Http.RequestBuilder().build());
+        Mockito.clearInvocations(handlerCache.get());
+
+        for (int i = 0; i < 3; i++)
+        {
+            Assert.assertTrue(viewSupport.viewPattern("allow",
+                                                      PatternType.CUSTOM,
+                                                      Optional.empty(),
+                                                      false,
+                                                      handlerCache.get(),
+                                                      Optional.empty(),
+                                                      1000L,
+                                                      request));
+        }
+        Assert.assertFalse(viewSupport.viewPattern("deny",
+                                                   PatternType.CUSTOM,
+                                                   Optional.empty(),
+                                                   false,
+                                                   handlerCache.get(),
+                                                   Optional.empty(),
+                                                   1000L,
+                                                   request));
+
+        final ViewDecisionMemo memo = request.attrs().get(ViewDecisionMemo.KEY);
+        Assert.assertEquals(2,
+                            memo.hitCount());
+        Assert.assertEquals(2,
+                            memo.size());
+        Mockito.verify(handlerCache.get(),
+                       Mockito.times(2))
+               .getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class));
+    }
+
     @Override
     protected HandlerCache handlers()
     {
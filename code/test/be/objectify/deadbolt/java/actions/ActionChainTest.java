@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import be.objectify.deadbolt.java.ConstraintLogic;
+import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
+import be.objectify.deadbolt.java.cache.HandlerCache;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.api.routing.HandlerDef;
+import play.mvc.Action;
+import play.mvc.Http;
+import play.routing.Router;
+
+public class ActionChainTest
+{
+    private final ActionChains chains = new ActionChains();
+
+    @Test
+    public void testShape()
+    {
+        final SubjectPresentAction first = subjectPresent(Mockito.mock(SubjectPresent.class));
+        final SubjectPresentAction second = subjectPresent(Mockito.mock(SubjectPresent.class));
+        link(first,
+             second);
+        second.delegate = Mockito.mock(Action.class);
+
+        final Http.Request request = request("/shape");
+        final ActionChain firstChain = chains.get(first,
+                                                  request);
+        Assert.assertTrue(firstChain.deadboltActionLeft);
+        Assert.assertTrue(firstChain.constraintInChain);
+        Assert.assertFalse(firstChain.deferrals);
+
+        final ActionChain secondChain = chains.get(second,
+                                                   request);
+        Assert.assertFalse(secondChain.deadboltActionLeft);
+        Assert.assertTrue(secondChain.constraintInChain);
+        Assert.assertFalse(secondChain.deferrals);
+    }
+
+    @Test
+    public void testBeforeAccessIsNotAConstraint()
+    {
+        final BeforeAccessAction action = new BeforeAccessAction(Mockito.mock(HandlerCache.class),
+                                                                  Mockito.mock(BeforeAuthCheckCache.class),
+                                                                  ConfigFactory.load());
+        action.configuration = Mockito.mock(BeforeAccess.class);
+        action.delegate = Mockito.mock(Action.class);
+
+        final ActionChain chain = chains.get(action,
+                                             request("/before-access"));
+        Assert.assertFalse(chain.deadboltActionLeft);
+        Assert.assertFalse(chain.constraintInChain);
+    }
+
+    @Test
+    public void testShapeIsReusedForTheSameRouteAndAnnotation()
+    {
+        final SubjectPresent configuration = Mockito.mock(SubjectPresent.class);
+        final Http.Request request = request("/reused");
+
+        final ActionChain chain = chains.get(subjectPresent(configuration),
+                                             request);
+        Assert.assertSame(chain,
+                          chains.get(subjectPresent(configuration),
+                                     request));
+        Assert.assertNotSame(chain,
+                             chains.get(subjectPresent(configuration),
+                                        request("/other")));
+    }
+
+    @Test
+    public void testShapeIsNotReusedIfTheChainCanDefer()
+    {
+        final SubjectPresent configuration = Mockito.mock(SubjectPresent.class);
+        Mockito.when(configuration.deferred())
+               .thenReturn(true);
+        final Http.Request request = request("/deferred");
+
+        final SubjectPresentAction action = subjectPresent(configuration);
+        final ActionChain chain = chains.get(action,
+                                             request);
+        Assert.assertTrue(chain.deferrals);
+        Assert.assertFalse(chain.deadboltActionLeft);
+
+        // running the deferred action re-links the chain
+        link(action,
+             subjectPresent(Mockito.mock(SubjectPresent.class)));
+        final ActionChain relinked = chains.get(action,
+                                                request);
+        Assert.assertNotSame(chain,
+                             relinked);
+        Assert.assertTrue(relinked.deadboltActionLeft);
+    }
+
+    @Test
+    public void testShapeIsNotSharedBetweenApplications()
+    {
+        final SubjectPresent configuration = Mockito.mock(SubjectPresent.class);
+        final Http.Request request = request("/applications");
+
+        final ActionChain chain = chains.get(subjectPresent(configuration),
+                                             request);
+        Assert.assertNotSame(chain,
+                             new ActionChains().get(subjectPresent(configuration),
+                                                    request));
+    }
+
+    private static SubjectPresentAction subjectPresent(final SubjectPresent configuration)
+    {
+        final SubjectPresentAction action = new SubjectPresentAction(Mockito.mock(HandlerCache.class),
+                                                                     Mockito.mock(BeforeAuthCheckCache.class),
+                                                                     ConfigFactory.load(),
+                                                                     Mockito.mock(ConstraintLogic.class));
+        action.configuration = configuration;
+        return action;
+    }
+
+    private static void link(final Action<?> action,
+                             final Action<?> delegate)
+    {
+        action.delegate = delegate;
+        delegate.precursor = action;
+    }
+
+    private static Http.Request request(final String path)
+    {
+        return new Http.RequestBuilder().attr(Router.Attrs.HANDLER_DEF,
+                                              HandlerDef.apply(ActionChainTest.class.getClassLoader(),
+                                                               "",
+                                                               "",
+                                                               "",
+                                                               null,
+                                                               "GET",
+                                                               path,
+                                                               "",
+                                                               null))
+                                        .build();
+    }
+}
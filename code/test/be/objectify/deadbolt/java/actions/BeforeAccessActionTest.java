@@ -15,20 +15,35 @@
  */
 package be.objectify.deadbolt.java.actions;
 
+import be.objectify.deadbolt.java.BlockingExecution;
 import be.objectify.deadbolt.java.DeadboltHandler;
 import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
 import be.objectify.deadbolt.java.cache.DefaultBeforeAuthCheckCache;
 import be.objectify.deadbolt.java.cache.HandlerCache;
+import be.objectify.deadbolt.java.metrics.NoOpDeadboltMetrics;
+import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 import org.mockito.Mockito;
+import play.inject.ApplicationLifecycle;
+import play.libs.concurrent.ClassLoaderExecutionContext;
 import play.libs.typedmap.TypedKey;
 import play.mvc.Action;
 import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
 
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Steve Chaloner (steve@objectify.be)
@@ -92,4 +107,69 @@ public class BeforeAccessActionTest
         Mockito.verify(handler, Mockito.never()).beforeAuthCheck(request, Optional.empty());
         Mockito.verify(action.delegate).call(request);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testExecute_virtualThreads_onlyTheConstraintRunsOnAVirtualThread() throws Exception
+    {
+        Assume.assumeTrue(BlockingExecution.virtualThreadExecutor().isPresent());
+
+        final Http.Request request = new Http.RequestBuilder().build();
+        final AtomicReference<Thread> checkedOn = new AtomicReference<>();
+        final AtomicReference<Thread> delegatedOn = new AtomicReference<>();
+
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.beforeAuthCheck(Mockito.any(Http.RequestHeader.class),
+                                             Mockito.eq(Optional.empty())))
+               .thenAnswer(invocation ->
+                           {
+                               checkedOn.set(Thread.currentThread());
+                               return CompletableFuture.completedFuture(Optional.empty());
+                           });
+        final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
+        Mockito.when(handlerCache.get())
+               .thenReturn(handler);
+
+        final Config config = ConfigFactory.load()
+                                           .withValue("deadbolt.java.blocking",
+                                                      ConfigValueFactory.fromAnyRef(true))
+                                           .withValue("deadbolt.java.virtual-threads.enabled",
+                                                      ConfigValueFactory.fromAnyRef(true));
+        final ExecutorService playExecutor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final BeforeAccessAction action = new BeforeAccessAction(handlerCache,
+                                                                     new DefaultBeforeAuthCheckCache(config),
+                                                                     config);
+            action.configuration = Mockito.mock(BeforeAccess.class);
+            action.setBlockingExecution(new BlockingExecution(config,
+                                                              NoOpDeadboltMetrics.INSTANCE,
+                                                              Mockito.mock(ApplicationLifecycle.class),
+                                                              new ClassLoaderExecutionContext(playExecutor)));
+            action.delegate = new Action.Simple()
+            {
+                @Override
+                public CompletionStage<Result> call(final Http.Request req)
+                {
+                    delegatedOn.set(Thread.currentThread());
+                    return CompletableFuture.completedFuture(Results.ok());
+                }
+            };
+
+            Assert.assertEquals(200,
+                                action.call(request)
+                                      .toCompletableFuture()
+                                      .get(5,
+                                           TimeUnit.SECONDS)
+                                      .status());
+
+            Assert.assertEquals(Boolean.TRUE,
+                                Thread.class.getMethod("isVirtual").invoke(checkedOn.get()));
+            Assert.assertEquals(Boolean.FALSE,
+                                Thread.class.getMethod("isVirtual").invoke(delegatedOn.get()));
+        }
+        finally
+        {
+            playExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import be.objectify.deadbolt.java.ConstraintLogic;
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
+import be.objectify.deadbolt.java.cache.HandlerCache;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+
+public class ConstraintDescriptorsTest
+{
+    @Test
+    public void testDescriptorIsSharedForTheSameAnnotation()
+    {
+        final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handlerCache.apply("foo"))
+               .thenReturn(handler);
+        final Restrict restrict = restrict("foo",
+                                           "x/y",
+                                           new String[]{"admin", "!banned"});
+        final ConstraintDescriptors descriptors = new ConstraintDescriptors();
+
+        final ConstraintDescriptor descriptor = descriptors.get(restrictAction(handlerCache,
+                                                                               restrict));
+        Assert.assertSame(handler,
+                          descriptor.handler);
+        Assert.assertEquals(Optional.of("x/y"),
+                            descriptor.content);
+        Assert.assertEquals(1,
+                            descriptor.roleGroups.size());
+        Assert.assertTrue(descriptor.roleGroups.get(0).test(Collections.singleton("admin")));
+        Assert.assertFalse(descriptor.roleGroups.get(0).test(new HashSet<>(Arrays.asList("admin",
+                                                                                         "banned"))));
+
+        Assert.assertSame(descriptor,
+                          descriptors.get(restrictAction(handlerCache,
+                                                         restrict)));
+        Mockito.verify(handlerCache,
+                       Mockito.times(1)).apply("foo");
+        Mockito.verify(restrict,
+                       Mockito.times(1)).value();
+    }
+
+    @Test
+    public void testDescriptorIsNotSharedForDifferentAnnotations()
+    {
+        final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
+        final ConstraintDescriptors descriptors = new ConstraintDescriptors();
+
+        final ConstraintDescriptor first = descriptors.get(restrictAction(handlerCache,
+                                                                          restrict(null,
+                                                                                   "x/y",
+                                                                                   new String[]{"admin"})));
+        final ConstraintDescriptor second = descriptors.get(restrictAction(handlerCache,
+                                                                           restrict(null,
+                                                                                    null,
+                                                                                    new String[]{"user"})));
+        Assert.assertNotSame(first,
+                             second);
+        Assert.assertEquals(Optional.empty(),
+                            second.content);
+    }
+
+    @Test
+    public void testNonRestrictConstraintsHaveNoRoleGroups()
+    {
+        final SubjectPresentAction action = new SubjectPresentAction(Mockito.mock(HandlerCache.class),
+                                                                     Mockito.mock(BeforeAuthCheckCache.class),
+                                                                     ConfigFactory.load(),
+                                                                     Mockito.mock(ConstraintLogic.class));
+        action.configuration = Mockito.mock(SubjectPresent.class);
+
+        Assert.assertTrue(new ConstraintDescriptors().get(action).roleGroups.isEmpty());
+    }
+
+    @Test
+    public void testDescriptorIsNotSharedIfTheActionOverridesTheConfiguration()
+    {
+        final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
+        final Restrict restrict = restrict(null,
+                                           null,
+                                           new String[]{"admin"});
+        final ConstraintDescriptors descriptors = new ConstraintDescriptors();
+
+        final String[] content = {"x/y"};
+        final RestrictAction action = new RestrictAction(handlerCache,
+                                                         Mockito.mock(BeforeAuthCheckCache.class),
+                                                         ConfigFactory.load(),
+                                                         restrict,
+                                                         null,
+                                                         Mockito.mock(ConstraintLogic.class))
+        {
+            @Override
+            public Optional<String> getContent()
+            {
+                // e.g. decided from the request
+                return Optional.of(content[0]);
+            }
+        };
+        Assert.assertEquals(Optional.of("x/y"),
+                            descriptors.get(action).content);
+
+        content[0] = "a/b";
+        Assert.assertEquals(Optional.of("a/b"),
+                            descriptors.get(action).content);
+    }
+
+    private static RestrictAction restrictAction(final HandlerCache handlerCache,
+                                                 final Restrict restrict)
+    {
+        return new RestrictAction(handlerCache,
+                                  Mockito.mock(BeforeAuthCheckCache.class),
+                                  ConfigFactory.load(),
+                                  restrict,
+                                  null,
+                                  Mockito.mock(ConstraintLogic.class));
+    }
+
+    private static Restrict restrict(final String handlerKey,
+                                     final String content,
+                                     final String[] roles)
+    {
+        final Group group = Mockito.mock(Group.class);
+        Mockito.when(group.value())
+               .thenReturn(roles);
+        final Restrict restrict = Mockito.mock(Restrict.class);
+        Mockito.when(restrict.value())
+               .thenReturn(new Group[]{group});
+        Mockito.when(restrict.handlerKey())
+               .thenReturn(handlerKey);
+        Mockito.when(restrict.content())
+               .thenReturn(content);
+        return restrict;
+    }
+}
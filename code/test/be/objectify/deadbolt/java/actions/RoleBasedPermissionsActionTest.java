@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.actions;
+
+import be.objectify.deadbolt.java.ConstraintLogic;
+import be.objectify.deadbolt.java.ConstraintPoint;
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.cache.BeforeAuthCheckCache;
+import be.objectify.deadbolt.java.cache.HandlerCache;
+import be.objectify.deadbolt.java.utils.TriFunction;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.mvc.Action;
+import play.mvc.Http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.function.Function;
+
+public class RoleBasedPermissionsActionTest
+{
+    @Test
+    public void testApplyRestriction_singleRole() throws Exception
+    {
+        final RoleBasedPermissions rbp = configuration("foo");
+        final ConstraintLogic constraintLogic = Mockito.mock(ConstraintLogic.class);
+        final RoleBasedPermissionsAction action = new RoleBasedPermissionsAction(Mockito.mock(HandlerCache.class),
+                                                                                 Mockito.mock(BeforeAuthCheckCache.class),
+                                                                                 ConfigFactory.load(),
+                                                                                 rbp,
+                                                                                 Mockito.mock(Action.class),
+                                                                                 constraintLogic);
+
+        final Http.Request request = Mockito.mock(Http.Request.class);
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        action.applyRestriction(request,
+                                handler);
+
+        Mockito.verify(constraintLogic).roleBasedPermissions(Mockito.eq(request),
+                                                             Mockito.eq(handler),
+                                                             Mockito.eq(Optional.empty()),
+                                                             Mockito.eq(Collections.singletonList("foo")),
+                                                             Mockito.any(Function.class),
+                                                             Mockito.any(TriFunction.class),
+                                                             Mockito.eq(ConstraintPoint.CONTROLLER));
+    }
+
+    @Test
+    public void testRoleNames()
+    {
+        Assert.assertEquals(Collections.singletonList("foo"),
+                            RoleBasedPermissionsAction.roleNames(configuration("foo")));
+        Assert.assertEquals(Arrays.asList("foo",
+                                          "bar",
+                                          "baz"),
+                            RoleBasedPermissionsAction.roleNames(configuration("foo",
+                                                                               "bar",
+                                                                               "baz")));
+        Assert.assertEquals(Arrays.asList("bar",
+                                          "baz"),
+                            RoleBasedPermissionsAction.roleNames(configuration("",
+                                                                               "bar",
+                                                                               "baz")));
+    }
+
+    private static RoleBasedPermissions configuration(final String value,
+                                                      final String... roles)
+    {
+        final RoleBasedPermissions rbp = Mockito.mock(RoleBasedPermissions.class);
+        Mockito.when(rbp.value())
+               .thenReturn(value);
+        Mockito.when(rbp.roles())
+               .thenReturn(roles);
+        return rbp;
+    }
+}
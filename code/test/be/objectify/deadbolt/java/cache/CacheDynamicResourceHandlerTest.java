@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.typesafe.config.ConfigFactory;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.DynamicResourceHandler;
+import play.libs.F;
+import play.mvc.Http;
+
+public class CacheDynamicResourceHandlerTest
+{
+    @Test
+    public void testCacheDynamicResourceHandler() throws Exception
+    {
+        final DynamicResourceHandler drh = Mockito.mock(DynamicResourceHandler.class);
+        final DeadboltHandler handler = getHandler("deadbolt.java.cache-dynamic-resource-handler = true", drh);
+
+        // resolved once per handler
+        Mockito.verify(handler, Mockito.times(2)).getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class));
+    }
+
+    @Test
+    public void testCacheDynamicResourceHandlerNotPresent() throws Exception
+    {
+        final DeadboltHandler handler = getHandler("deadbolt.java.cache-dynamic-resource-handler = true", null);
+
+        // an absent handler is not cached
+        Mockito.verify(handler, Mockito.times(6)).getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class));
+    }
+
+    @Test
+    public void testDontCacheDynamicResourceHandler() throws Exception
+    {
+        final DynamicResourceHandler drh = Mockito.mock(DynamicResourceHandler.class);
+        final DeadboltHandler handler = getHandler("deadbolt.java.cache-dynamic-resource-handler = false", drh);
+
+        Mockito.verify(handler, Mockito.times(6)).getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class));
+    }
+
+    private static DeadboltHandler getHandler(final String setting, final DynamicResourceHandler drh) throws Exception
+    {
+        final DynamicResourceHandlerCache cache = new DefaultDynamicResourceHandlerCache(ConfigFactory.parseString(setting));
+
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.getDynamicResourceHandler(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.ofNullable(drh)));
+
+        Mockito.when(handler.getId())
+               .thenReturn(Long.valueOf(0));
+
+        Http.RequestHeader rh = new Http.RequestBuilder().build();
+        for (int i = 0; i < 3; i++)
+        {
+            final F.Tuple<Optional<DynamicResourceHandler>, Http.RequestHeader> resolved = cache.apply(handler, rh).toCompletableFuture().get();
+            Assert.assertEquals(Optional.ofNullable(drh), resolved._1);
+            rh = resolved._2;
+        }
+
+        // a second handler resolves its own
+        Mockito.when(handler.getId())
+               .thenReturn(Long.valueOf(1));
+        for (int i = 0; i < 3; i++)
+        {
+            rh = cache.apply(handler, rh).toCompletableFuture().get()._2;
+        }
+
+        return handler;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.composite.Constraint;
+import be.objectify.deadbolt.java.composite.ExceptionThrowingConstraint;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class DefaultCompositeCacheTest
+{
+    @Test
+    public void testRegisteredConstraintIsReturned()
+    {
+        final DefaultCompositeCache cache = new DefaultCompositeCache();
+        final Constraint constraint = Mockito.mock(Constraint.class);
+        cache.register("foo",
+                       constraint);
+
+        final Optional<Constraint> result = cache.apply("foo");
+        Assert.assertSame(constraint,
+                          result.get());
+        Assert.assertSame(result,
+                          cache.apply("foo"));
+    }
+
+    @Test
+    public void testUnregisteredNameReturnsExceptionThrowingConstraint()
+    {
+        final DefaultCompositeCache cache = new DefaultCompositeCache();
+
+        final Optional<Constraint> result = cache.apply("foo");
+        Assert.assertTrue(result.get() instanceof ExceptionThrowingConstraint);
+        Assert.assertSame(result,
+                          cache.apply("foo"));
+    }
+
+    @Test
+    public void testNameCanBeRegisteredAfterMiss()
+    {
+        final DefaultCompositeCache cache = new DefaultCompositeCache();
+        cache.apply("foo");
+
+        final Constraint constraint = Mockito.mock(Constraint.class);
+        cache.register("foo",
+                       constraint);
+
+        Assert.assertSame(constraint,
+                          cache.apply("foo").get());
+    }
+
+    @Test
+    public void testRegisterAllKeepsExistingConstraints()
+    {
+        final DefaultCompositeCache cache = new DefaultCompositeCache();
+        final Constraint foo = Mockito.mock(Constraint.class);
+        final Constraint bar = Mockito.mock(Constraint.class);
+        final Constraint baz = Mockito.mock(Constraint.class);
+        cache.register("foo",
+                       foo);
+
+        final Map<String, Constraint> constraints = new HashMap<>();
+        constraints.put("bar",
+                        bar);
+        constraints.put("baz",
+                        baz);
+        cache.registerAll(constraints);
+
+        Assert.assertSame(foo,
+                          cache.apply("foo").get());
+        Assert.assertSame(bar,
+                          cache.apply("bar").get());
+        Assert.assertSame(baz,
+                          cache.apply("baz").get());
+    }
+
+    @Test
+    public void testReplaceAllRemovesExistingConstraints()
+    {
+        final DefaultCompositeCache cache = new DefaultCompositeCache();
+        final Constraint foo = Mockito.mock(Constraint.class);
+        final Constraint bar = Mockito.mock(Constraint.class);
+        cache.register("foo",
+                       foo);
+
+        final Map<String, Constraint> constraints = new HashMap<>();
+        constraints.put("bar",
+                        bar);
+        cache.replaceAll(constraints);
+
+        Assert.assertTrue(cache.apply("foo").get() instanceof ExceptionThrowingConstraint);
+        Assert.assertSame(bar,
+                          cache.apply("bar").get());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.PermissionMatcher;
+import be.objectify.deadbolt.java.testsupport.TestPermission;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+public class DefaultPatternCacheTest
+{
+    @Test
+    public void testSamePatternIsReturned()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache();
+        final Pattern pattern = cache.apply("a.*");
+
+        Assert.assertSame(pattern,
+                          cache.apply("a.*"));
+        Assert.assertEquals(1,
+                            cache.stats().hitCount());
+        Assert.assertEquals(1,
+                            cache.stats().missCount());
+    }
+
+    @Test
+    public void testSizeIsBounded()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache(10);
+        for (int i = 0; i < 100; i++)
+        {
+            cache.apply("p" + i);
+        }
+
+        final CacheStats stats = cache.stats();
+        Assert.assertEquals(10,
+                            stats.size());
+        Assert.assertEquals(90,
+                            stats.evictionCount());
+    }
+
+    @Test
+    public void testRecentlyUsedEntriesSurviveEviction()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache(2);
+        final Pattern hot = cache.apply("hot");
+        cache.apply("cold");
+        cache.apply("hot");
+        cache.apply("new");
+
+        Assert.assertSame(hot,
+                          cache.apply("hot"));
+    }
+
+    @Test
+    public void testMaxSizeFromConfig()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache(ConfigFactory.parseString("deadbolt.java.pattern-cache.max-size = 1"));
+        cache.apply("a");
+        cache.apply("b");
+
+        Assert.assertEquals(1,
+                            cache.stats().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize()
+    {
+        new DefaultPatternCache(0);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache(50);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++)
+            {
+                futures.add(executor.submit(() ->
+                                            {
+                                                for (int i = 0; i < 10_000; i++)
+                                                {
+                                                    final String value = "p" + (i % 200);
+                                                    Assert.assertEquals(value,
+                                                                        cache.apply(value).pattern());
+                                                }
+                                            }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        Assert.assertTrue(cache.stats().size() <= 50);
+    }
+
+    @Test
+    public void testMatchersAreCachedPerPatternSet()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache();
+        final PermissionMatcher matcher = cache.matcher(Arrays.asList("printers\\..*",
+                                                                      "scanners.edit"));
+
+        Assert.assertSame(matcher,
+                          cache.matcher(new ArrayList<>(Arrays.asList("printers\\..*",
+                                                                      "scanners.edit"))));
+        Assert.assertNotSame(matcher,
+                             cache.matcher(Arrays.asList("printers\\..*")));
+        Assert.assertEquals(1,
+                            cache.matcherStats().hitCount());
+        Assert.assertEquals(2,
+                            cache.matcherStats().missCount());
+    }
+
+    @Test
+    public void testRoleMatchersAreCachedUntilThePermissionsChange()
+    {
+        final DefaultPatternCache cache = new DefaultPatternCache();
+        final List<TestPermission> permissions = new ArrayList<>(Arrays.asList(new TestPermission("printers\\..*"),
+                                                                               new TestPermission("scanners.edit")));
+        final PermissionMatcher matcher = cache.roleMatcher("editor",
+                                                            permissions);
+
+        Assert.assertTrue(matcher.matches("printers.view"));
+        Assert.assertSame(matcher,
+                          cache.roleMatcher("editor",
+                                            permissions));
+        // a list with the same values, as a handler that doesn't cache its permissions would return
+        Assert.assertSame(matcher,
+                          cache.roleMatcher("editor",
+                                            Arrays.asList(new TestPermission("printers\\..*"),
+                                                          new TestPermission("scanners.edit"))));
+        Assert.assertEquals(2,
+                            cache.roleMatcherStats().hitCount());
+
+        permissions.set(1,
+                        new TestPermission("scanners.view"));
+        final PermissionMatcher changed = cache.roleMatcher("editor",
+                                                            permissions);
+        Assert.assertNotSame(matcher,
+                             changed);
+        Assert.assertTrue(changed.matches("scanners.view"));
+        Assert.assertFalse(changed.matches("scanners.edit"));
+        Assert.assertSame(changed,
+                          cache.roleMatcher("editor",
+                                            permissions));
+        Assert.assertEquals(1,
+                            cache.roleMatcherStats().size());
+    }
+}
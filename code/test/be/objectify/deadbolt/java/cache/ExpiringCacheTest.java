@@ -0,0 +1,375 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExpiringCacheTest
+{
+    private final AtomicLong ticker = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testValueIsCachedUntilItExpires() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+        ticker.addAndGet(Duration.ofSeconds(9).toNanos());
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+        ticker.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assert.assertEquals("foo-2",
+                            get(cache,
+                                "foo"));
+
+        final CacheStats stats = cache.stats();
+        Assert.assertEquals(1,
+                            stats.hitCount());
+        Assert.assertEquals(2,
+                            stats.missCount());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareTheInFlightLoad()
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+        final CompletableFuture<String> load = new CompletableFuture<>();
+
+        final CompletionStage<String> first = cache.get("foo",
+                                                        key -> {
+                                                            loads.incrementAndGet();
+                                                            return load;
+                                                        });
+        final CompletionStage<String> second = cache.get("foo",
+                                                         key -> {
+                                                             loads.incrementAndGet();
+                                                             return load;
+                                                         });
+        load.complete("bar");
+
+        Assert.assertEquals(1,
+                            loads.get());
+        Assert.assertEquals("bar",
+                            first.toCompletableFuture().join());
+        Assert.assertEquals("bar",
+                            second.toCompletableFuture().join());
+    }
+
+    @Test
+    public void testCallersCannotCompleteTheSharedLoad()
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+        final CompletableFuture<String> load = new CompletableFuture<>();
+
+        final CompletionStage<String> first = cache.get("foo",
+                                                        key -> load);
+        final CompletionStage<String> second = cache.get("foo",
+                                                         key -> load);
+        first.toCompletableFuture().complete("baz");
+        load.complete("bar");
+
+        Assert.assertEquals("bar",
+                            second.toCompletableFuture().join());
+        Assert.assertEquals("bar",
+                            cache.get("foo",
+                                      key -> load)
+                                 .toCompletableFuture()
+                                 .join());
+    }
+
+    @Test
+    public void testLoadThatDoesNotCompleteIsReplacedAfterTheTtl() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+
+        final CompletionStage<String> stuck = cache.get("foo",
+                                                        key -> {
+                                                            loads.incrementAndGet();
+                                                            return new CompletableFuture<>();
+                                                        });
+        ticker.addAndGet(Duration.ofSeconds(9).toNanos());
+        Assert.assertFalse(cache.get("foo",
+                                     key -> {
+                                         loads.incrementAndGet();
+                                         return new CompletableFuture<>();
+                                     })
+                                .toCompletableFuture()
+                                .isDone());
+        Assert.assertEquals(1,
+                            loads.get());
+
+        ticker.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assert.assertEquals("foo-2",
+                            get(cache,
+                                "foo"));
+        Assert.assertFalse(stuck.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testFailedLoadsAreNotCached() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+        final CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+
+        Assert.assertTrue(cache.get("foo",
+                                    key -> failed)
+                               .toCompletableFuture()
+                               .isCompletedExceptionally());
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+    }
+
+    @Test
+    public void testRejectedValuesAreNotCached() throws Exception
+    {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofSeconds(10),
+                                                                        10,
+                                                                        value -> false,
+                                                                        ticker::get);
+
+        get(cache,
+            "foo");
+        get(cache,
+            "foo");
+
+        Assert.assertEquals(2,
+                            loads.get());
+        Assert.assertEquals(0,
+                            cache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+
+        get(cache,
+            "foo");
+        get(cache,
+            "bar");
+        cache.invalidate("foo");
+
+        Assert.assertEquals("foo-3",
+                            get(cache,
+                                "foo"));
+        Assert.assertEquals("bar-2",
+                            get(cache,
+                                "bar"));
+
+        cache.invalidateAll();
+        Assert.assertEquals(0,
+                            cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+        for (int i = 0; i < 100; i++)
+        {
+            get(cache,
+                "key" + i);
+        }
+
+        final CacheStats stats = cache.stats();
+        Assert.assertEquals(10,
+                            stats.size());
+        Assert.assertEquals(90,
+                            stats.evictionCount());
+    }
+
+    @Test
+    public void testGetAllLoadsMissingKeysTogether() throws Exception
+    {
+        final ExpiringCache<String, String> cache = cache(10);
+        get(cache,
+            "foo");
+        final List<Set<String>> batches = new ArrayList<>();
+
+        final Map<String, String> values = cache.getAll(Arrays.asList("foo",
+                                                                      "bar",
+                                                                      "baz",
+                                                                      "bar"),
+                                                        keys ->
+                                                        {
+                                                            batches.add(new HashSet<>(keys));
+                                                            final Map<String, String> loaded = new HashMap<>();
+                                                            keys.forEach(key -> loaded.put(key,
+                                                                                           key + "-batch"));
+                                                            // "baz" is left out of the result
+                                                            loaded.remove("baz");
+                                                            return CompletableFuture.completedFuture(loaded);
+                                                        })
+                                                .toCompletableFuture()
+                                                .get();
+
+        Assert.assertEquals(Arrays.asList("foo",
+                                          "bar",
+                                          "baz"),
+                            new ArrayList<>(values.keySet()));
+        Assert.assertEquals("foo-1",
+                            values.get("foo"));
+        Assert.assertEquals("bar-batch",
+                            values.get("bar"));
+        Assert.assertNull(values.get("baz"));
+        Assert.assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("bar",
+                                                                                  "baz"))),
+                            batches);
+        Assert.assertEquals("bar-batch",
+                            get(cache,
+                                "bar"));
+    }
+
+    @Test
+    public void testTtlCanDependOnTheKey() throws Exception
+    {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(key -> key.startsWith("short") ? Duration.ofSeconds(1)
+                                                                                                        : Duration.ofSeconds(10),
+                                                                        Duration.ZERO,
+                                                                        10,
+                                                                        value -> true,
+                                                                        ticker::get);
+        Assert.assertEquals("short-1",
+                            get(cache,
+                                "short"));
+        Assert.assertEquals("long-2",
+                            get(cache,
+                                "long"));
+        ticker.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        Assert.assertEquals("short-3",
+                            get(cache,
+                                "short"));
+        Assert.assertEquals("long-2",
+                            get(cache,
+                                "long"));
+    }
+
+    @Test
+    public void testStaleValueIsServedWhileItIsReloaded() throws Exception
+    {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(key -> Duration.ofSeconds(10),
+                                                                        Duration.ofSeconds(5),
+                                                                        10,
+                                                                        value -> true,
+                                                                        ticker::get);
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+        ticker.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        final List<CompletableFuture<String>> reloads = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+        {
+            Assert.assertEquals("foo-1",
+                                cache.get("foo",
+                                          key ->
+                                          {
+                                              final CompletableFuture<String> reload = new CompletableFuture<>();
+                                              reloads.add(reload);
+                                              return reload;
+                                          }).toCompletableFuture().get());
+        }
+        Assert.assertEquals(1,
+                            reloads.size());
+
+        reloads.get(0).complete("foo-reloaded");
+        Assert.assertEquals("foo-reloaded",
+                            get(cache,
+                                "foo"));
+
+        // a value that isn't reloaded within the stale period is loaded again
+        ticker.addAndGet(Duration.ofSeconds(15).toNanos());
+        Assert.assertEquals("foo-2",
+                            get(cache,
+                                "foo"));
+    }
+
+    @Test
+    public void testStaleValueIsKeptWhenTheReloadFails() throws Exception
+    {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(key -> Duration.ofSeconds(10),
+                                                                        Duration.ofSeconds(5),
+                                                                        10,
+                                                                        value -> true,
+                                                                        ticker::get);
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+        ticker.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        final CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("unavailable"));
+        Assert.assertEquals("foo-1",
+                            cache.get("foo",
+                                      key -> failed).toCompletableFuture().get());
+
+        // the next lookup tries again
+        Assert.assertEquals("foo-1",
+                            get(cache,
+                                "foo"));
+        Assert.assertEquals("foo-2",
+                            get(cache,
+                                "foo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTtlMustBePositive()
+    {
+        new ExpiringCache<String, String>(Duration.ZERO,
+                                          10,
+                                          value -> true);
+    }
+
+    private ExpiringCache<String, String> cache(final int maxSize)
+    {
+        return new ExpiringCache<>(Duration.ofSeconds(10),
+                                   maxSize,
+                                   value -> true,
+                                   ticker::get);
+    }
+
+    private String get(final ExpiringCache<String, String> cache,
+                       final String key) throws Exception
+    {
+        return cache.get(key,
+                         k -> CompletableFuture.completedFuture(k + '-' + loads.incrementAndGet()))
+                    .toCompletableFuture()
+                    .get();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Subject;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class ExpiringDynamicDecisionCacheTest
+{
+    private final AtomicLong ticker = new AtomicLong();
+
+    private final List<List<String>> decided = new ArrayList<>();
+
+    private final Function<List<String>, CompletionStage<Map<String, Boolean>>> decide = names ->
+    {
+        decided.add(names);
+        final Map<String, Boolean> allowed = new HashMap<>();
+        for (String name : names)
+        {
+            allowed.put(name,
+                        !name.startsWith("denied"));
+        }
+        return CompletableFuture.completedFuture(allowed);
+    };
+
+    @Test
+    public void testDecisionsAreSharedAcrossRequests() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.emptyMap());
+        final DeadboltHandler handler = handler();
+
+        Assert.assertEquals(Boolean.TRUE,
+                            apply(cache,
+                                  handler,
+                                  subject("greet"),
+                                  "reports").get("reports"));
+        Assert.assertEquals(Boolean.TRUE,
+                            apply(cache,
+                                  handler,
+                                  subject("greet"),
+                                  "reports").get("reports"));
+
+        Assert.assertEquals(1,
+                            decided.size());
+    }
+
+    @Test
+    public void testDecisionsAreScopedToTheSubjectAndKey() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.emptyMap());
+        final DeadboltHandler handler = handler();
+
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports");
+        apply(cache,
+              handler,
+              subject("steve"),
+              "reports");
+        cache.apply(handler,
+                    subject("greet"),
+                    Collections.singletonList("reports"),
+                    Optional.of("other"),
+                    decide).toCompletableFuture().get();
+
+        Assert.assertEquals(3,
+                            decided.size());
+    }
+
+    @Test
+    public void testNamesWithoutAKeyAreNotCached() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.emptyMap());
+        final DeadboltHandler handler = handler();
+
+        for (int i = 0; i < 2; i++)
+        {
+            final Map<String, Boolean> results = apply(cache,
+                                                       handler,
+                                                       subject("greet"),
+                                                       "reports",
+                                                       "volatile",
+                                                       "denied");
+            Assert.assertEquals(Boolean.TRUE,
+                                results.get("reports"));
+            Assert.assertEquals(Boolean.TRUE,
+                                results.get("volatile"));
+            Assert.assertEquals(Boolean.FALSE,
+                                results.get("denied"));
+        }
+
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("volatile"),
+                                          Arrays.asList("reports",
+                                                        "denied"),
+                                          Collections.singletonList("volatile")),
+                            decided);
+    }
+
+    @Test
+    public void testTtlCanBeSetPerName() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.singletonMap("reports",
+                                                                                  Duration.ofSeconds(5)));
+        final DeadboltHandler handler = handler();
+
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports",
+              "invoices");
+        ticker.addAndGet(Duration.ofSeconds(5).toNanos());
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports",
+              "invoices");
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("reports",
+                                                        "invoices"),
+                                          Collections.singletonList("reports")),
+                            decided);
+    }
+
+    @Test
+    public void testInvalidateSubject() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.emptyMap());
+        final DeadboltHandler handler = handler();
+
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports");
+        apply(cache,
+              handler,
+              subject("steve"),
+              "reports");
+        cache.invalidateSubject("greet");
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports");
+        apply(cache,
+              handler,
+              subject("steve"),
+              "reports");
+
+        Assert.assertEquals(3,
+                            decided.size());
+    }
+
+    @Test
+    public void testInvalidateName() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = cache(Collections.emptyMap());
+        final DeadboltHandler handler = handler();
+
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports",
+              "invoices");
+        cache.invalidateName("reports");
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports",
+              "invoices");
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("reports",
+                                                        "invoices"),
+                                          Collections.singletonList("reports")),
+                            decided);
+    }
+
+    @Test
+    public void testStaleDecisionIsUsedWhileItIsMadeAgain() throws Exception
+    {
+        final ExpiringDynamicDecisionCache cache = new ExpiringDynamicDecisionCache(Duration.ofSeconds(10),
+                                                                                    Collections.emptyMap(),
+                                                                                    Duration.ofSeconds(10),
+                                                                                    100,
+                                                                                    ticker::get);
+        final DeadboltHandler handler = handler();
+        apply(cache,
+              handler,
+              subject("greet"),
+              "reports");
+        ticker.addAndGet(Duration.ofSeconds(15).toNanos());
+
+        final CompletableFuture<Map<String, Boolean>> revoked = new CompletableFuture<>();
+        Assert.assertEquals(Boolean.TRUE,
+                            cache.apply(handler,
+                                        subject("greet"),
+                                        Collections.singletonList("reports"),
+                                        Optional.empty(),
+                                        names -> revoked).toCompletableFuture().get().get("reports"));
+
+        revoked.complete(Collections.singletonMap("reports",
+                                                  false));
+        Assert.assertEquals(Boolean.FALSE,
+                            apply(cache,
+                                  handler,
+                                  subject("greet"),
+                                  "reports").get("reports"));
+        Assert.assertEquals(1,
+                            decided.size());
+    }
+
+    @Test
+    public void testTtlsCanBeConfiguredForDottedNames()
+    {
+        final Map<String, Duration> ttls = ExpiringDynamicDecisionCache.ttls(ConfigFactory.parseString("reports.view = 10 seconds\n"
+                                                                                                        + "\"reports.edit\" = 20 seconds\n"
+                                                                                                        + "admin = 30 seconds"));
+        Assert.assertEquals(3,
+                            ttls.size());
+        Assert.assertEquals(Duration.ofSeconds(10),
+                            ttls.get("reports.view"));
+        Assert.assertEquals(Duration.ofSeconds(20),
+                            ttls.get("reports.edit"));
+        Assert.assertEquals(Duration.ofSeconds(30),
+                            ttls.get("admin"));
+
+        // an unquoted dotted name used to fail when the cache was created
+        new ExpiringDynamicDecisionCache(ConfigFactory.parseString("deadbolt.java.dynamic-decision-cache.ttls.reports.view = 10 seconds")
+                                                      .withFallback(ConfigFactory.load()));
+    }
+
+    private ExpiringDynamicDecisionCache cache(final Map<String, Duration> ttls)
+    {
+        return new ExpiringDynamicDecisionCache(Duration.ofSeconds(30),
+                                                ttls,
+                                                Duration.ZERO,
+                                                100,
+                                                ticker::get);
+    }
+
+    private Map<String, Boolean> apply(final ExpiringDynamicDecisionCache cache,
+                                       final DeadboltHandler handler,
+                                       final Optional<Subject> subject,
+                                       final String... names) throws Exception
+    {
+        return cache.apply(handler,
+                           subject,
+                           Arrays.asList(names),
+                           Optional.empty(),
+                           decide).toCompletableFuture().get();
+    }
+
+    private static Optional<Subject> subject(final String identifier)
+    {
+        final Subject subject = Mockito.mock(Subject.class);
+        Mockito.when(subject.getIdentifier()).thenReturn(identifier);
+        return Optional.of(subject);
+    }
+
+    private static DeadboltHandler handler()
+    {
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.getDynamicDecisionKey(Mockito.any(),
+                                                   Mockito.anyString(),
+                                                   Mockito.any()))
+               .thenAnswer(invocation ->
+                           {
+                               final String name = invocation.getArgument(1);
+                               final Optional<String> meta = invocation.getArgument(2);
+                               return "volatile".equals(name) ? Optional.empty()
+                                                              : Optional.of(meta.orElse(""));
+                           });
+        return handler;
+    }
+}
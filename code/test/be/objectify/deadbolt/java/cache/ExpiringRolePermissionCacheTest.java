@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Permission;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class ExpiringRolePermissionCacheTest
+{
+    private final Permission printersEdit = Mockito.mock(Permission.class);
+
+    private final Permission scannersEdit = Mockito.mock(Permission.class);
+
+    @Test
+    public void testPermissionsAreSharedAcrossRequests() throws Exception
+    {
+        final DeadboltHandler handler = handler();
+        final ExpiringRolePermissionCache cache = cache();
+
+        Assert.assertEquals(Collections.singletonList(printersEdit),
+                            cache.apply(handler,
+                                        Collections.singletonList("printers")).toCompletableFuture().get().get("printers"));
+        Assert.assertEquals(Collections.singletonList(printersEdit),
+                            cache.apply(handler,
+                                        Collections.singletonList("printers")).toCompletableFuture().get().get("printers"));
+
+        Mockito.verify(handler,
+                       Mockito.times(1)).getPermissionsForRole("printers");
+    }
+
+    @Test
+    public void testMissingRolesAreLoadedInOneBatch() throws Exception
+    {
+        final DeadboltHandler handler = handler();
+        final ExpiringRolePermissionCache cache = cache();
+        cache.apply(handler,
+                    Collections.singletonList("printers")).toCompletableFuture().get();
+
+        final Map<String, List<? extends Permission>> permissions = cache.apply(handler,
+                                                                                Arrays.asList("printers",
+                                                                                              "scanners",
+                                                                                              "faxes"))
+                                                                         .toCompletableFuture()
+                                                                         .get();
+
+        Assert.assertEquals(Collections.singletonList(printersEdit),
+                            permissions.get("printers"));
+        Assert.assertEquals(Collections.singletonList(scannersEdit),
+                            permissions.get("scanners"));
+        Assert.assertEquals(Collections.emptyList(),
+                            permissions.get("faxes"));
+        Mockito.verify(handler,
+                       Mockito.times(1)).getPermissionsForRoles(Mockito.anyCollection());
+        Mockito.verify(handler,
+                       Mockito.times(1)).getPermissionsForRoles(Mockito.argThat(roleNames -> roleNames.size() == 2
+                                                                                              && roleNames.contains("scanners")
+                                                                                              && roleNames.contains("faxes")));
+    }
+
+    @Test
+    public void testInvalidatedRoleIsReloaded() throws Exception
+    {
+        final DeadboltHandler handler = handler();
+        final ExpiringRolePermissionCache cache = cache();
+
+        cache.apply(handler,
+                    Collections.singletonList("printers")).toCompletableFuture().get();
+        cache.invalidate("printers");
+        cache.apply(handler,
+                    Collections.singletonList("printers")).toCompletableFuture().get();
+
+        Mockito.verify(handler,
+                       Mockito.times(2)).getPermissionsForRole("printers");
+    }
+
+    private static ExpiringRolePermissionCache cache()
+    {
+        return new ExpiringRolePermissionCache(Duration.ofMinutes(1),
+                                               100);
+    }
+
+    private DeadboltHandler handler()
+    {
+        final Map<String, List<? extends Permission>> permissions = new HashMap<>();
+        permissions.put("printers",
+                        Collections.singletonList(printersEdit));
+        permissions.put("scanners",
+                        Collections.singletonList(scannersEdit));
+
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.getPermissionsForRole(Mockito.anyString()))
+               .thenAnswer(invocation -> CompletableFuture.completedFuture(permissions.getOrDefault(invocation.getArgument(0),
+                                                                                                   Collections.emptyList())));
+        Mockito.when(handler.getPermissionsForRoles(Mockito.anyCollection()))
+               .thenAnswer(invocation ->
+                           {
+                               final Collection<String> roleNames = invocation.getArgument(0);
+                               final Map<String, List<? extends Permission>> loaded = new HashMap<>();
+                               for (String roleName : roleNames)
+                               {
+                                   if (permissions.containsKey(roleName))
+                                   {
+                                       loaded.put(roleName,
+                                                  permissions.get(roleName));
+                                   }
+                               }
+                               return CompletableFuture.completedFuture(loaded);
+                           });
+        return handler;
+    }
+}
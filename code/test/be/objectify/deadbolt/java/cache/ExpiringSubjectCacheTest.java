@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.cache;
+
+import be.objectify.deadbolt.java.DeadboltHandler;
+import be.objectify.deadbolt.java.models.Subject;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.mvc.Http;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public class ExpiringSubjectCacheTest
+{
+    @Test
+    public void testSubjectIsSharedAcrossRequests() throws Exception
+    {
+        final Subject subject = Mockito.mock(Subject.class);
+        final DeadboltHandler handler = handler(Optional.of("session-1"),
+                                                subject);
+        final ExpiringSubjectCache cache = cache();
+
+        final Http.RequestHeader first = Mockito.mock(Http.RequestHeader.class);
+        final Http.RequestHeader second = Mockito.mock(Http.RequestHeader.class);
+        Assert.assertSame(subject,
+                          cache.apply(handler,
+                                      first).toCompletableFuture().get()._1.get());
+        Assert.assertSame(second,
+                          cache.apply(handler,
+                                      second).toCompletableFuture().get()._2);
+
+        Mockito.verify(handler,
+                       Mockito.times(1)).getSubject(Mockito.any(Http.RequestHeader.class));
+    }
+
+    @Test
+    public void testInvalidatedSubjectIsReloaded() throws Exception
+    {
+        final DeadboltHandler handler = handler(Optional.of("session-1"),
+                                                Mockito.mock(Subject.class));
+        final ExpiringSubjectCache cache = cache();
+        final Http.RequestHeader requestHeader = Mockito.mock(Http.RequestHeader.class);
+
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+        cache.invalidate("session-1");
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+
+        Mockito.verify(handler,
+                       Mockito.times(2)).getSubject(requestHeader);
+    }
+
+    @Test
+    public void testAbsentSubjectIsNotCached() throws Exception
+    {
+        final DeadboltHandler handler = handler(Optional.of("session-1"),
+                                                null);
+        final ExpiringSubjectCache cache = cache();
+        final Http.RequestHeader requestHeader = Mockito.mock(Http.RequestHeader.class);
+
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+
+        Mockito.verify(handler,
+                       Mockito.times(2)).getSubject(requestHeader);
+    }
+
+    @Test
+    public void testFallbackIsUsedWithoutSubjectKey() throws Exception
+    {
+        final DeadboltHandler handler = handler(Optional.empty(),
+                                                Mockito.mock(Subject.class));
+        final ExpiringSubjectCache cache = cache();
+        final Http.RequestHeader requestHeader = Mockito.mock(Http.RequestHeader.class);
+
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+        cache.apply(handler,
+                    requestHeader).toCompletableFuture().get();
+
+        Mockito.verify(handler,
+                       Mockito.times(2)).getSubject(requestHeader);
+        Assert.assertEquals(0,
+                            cache.stats().size());
+    }
+
+    private static ExpiringSubjectCache cache()
+    {
+        return new ExpiringSubjectCache(new DefaultSubjectCache(ConfigFactory.parseString("deadbolt.java.cache-user = false")),
+                                        Duration.ofMinutes(1),
+                                        100);
+    }
+
+    private static DeadboltHandler handler(final Optional<String> subjectKey,
+                                           final Subject subject)
+    {
+        final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
+        Mockito.when(handler.getSubjectKey(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(subjectKey);
+        Mockito.when(handler.getSubject(Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.ofNullable(subject)));
+        return handler;
+    }
+}
@@ -20,6 +20,7 @@ import be.objectify.deadbolt.java.DeadboltAnalyzer;
 import be.objectify.deadbolt.java.DeadboltHandler;
 import be.objectify.deadbolt.java.cache.DefaultPatternCache;
 import be.objectify.deadbolt.java.cache.SubjectCache;
+import be.objectify.deadbolt.java.models.PatternType;
 import be.objectify.deadbolt.java.testsupport.TestRole;
 import be.objectify.deadbolt.java.testsupport.TestSubject;
 import org.junit.Assert;
@@ -82,4 +83,26 @@ public class ConstraintBuildersTest extends AbstractCompositeTest
         Assert.assertArrayEquals(new String[]{"bar"},
                                  list.get(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSideEffectFree_optIn() throws Exception
+    {
+        final ConstraintLogic logic = new ConstraintLogic(new DeadboltAnalyzer(),
+                                                          Mockito.mock(SubjectCache.class),
+                                                          new DefaultPatternCache());
+        final ConstraintBuilders builders = new ConstraintBuilders(logic);
+
+        // the built-in constraints call onAuthSuccess and record metrics, so they can't be reordered unless asked
+        Assert.assertFalse(builders.subjectPresent().build().isSideEffectFree());
+        Assert.assertFalse(builders.subjectNotPresent().build().isSideEffectFree());
+        Assert.assertFalse(builders.restrict(builders.anyOf(builders.allOf("foo"))).build().isSideEffectFree());
+        Assert.assertFalse(builders.pattern("foo",
+                                            PatternType.EQUALITY).build().isSideEffectFree());
+
+        Assert.assertTrue(builders.subjectPresent().sideEffectFree(true).build().isSideEffectFree());
+        Assert.assertTrue(builders.subjectNotPresent().sideEffectFree(true).build().isSideEffectFree());
+        Assert.assertTrue(builders.restrict(builders.anyOf(builders.allOf("foo"))).sideEffectFree(true).build().isSideEffectFree());
+        Assert.assertTrue(builders.pattern("foo",
+                                           PatternType.EQUALITY).sideEffectFree(true).build().isSideEffectFree());
+    }
+}
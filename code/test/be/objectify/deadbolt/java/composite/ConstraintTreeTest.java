@@ -22,9 +22,14 @@ import org.mockito.Mockito;
 import play.libs.F;
 import play.mvc.Http;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -185,6 +190,265 @@ public class ConstraintTreeTest extends AbstractConstraintTest
         Assert.assertTrue(toBoolean(rightResult));
     }
 
+    @Test
+    public void testParallelOr_decidedByFirstPass() throws Exception
+    {
+        final List<CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>>> started = new ArrayList<>();
+        final Constraint pending = (c, h, gmd, fnM) ->
+        {
+            final CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        };
+        final Http.RequestHeader requestHeader = Mockito.mock(Http.RequestHeader.class);
+        final CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> result = new ConstraintTree(Operator.PARALLEL_OR,
+                                                                                                pending,
+                                                                                                pending,
+                                                                                                pending).test(requestHeader,
+                                                                                                              handler);
+        Assert.assertEquals(3,
+                            started.size());
+
+        started.get(1).complete(F.Tuple(false, Mockito.mock(Http.RequestHeader.class)));
+        Assert.assertFalse(result.toCompletableFuture().isDone());
+        started.get(2).complete(F.Tuple(true, Mockito.mock(Http.RequestHeader.class)));
+
+        Assert.assertTrue(toBoolean(result));
+        Assert.assertSame(requestHeader,
+                          result.toCompletableFuture().get()._2);
+    }
+
+    @Test
+    public void testParallelOr_allFail() throws Exception
+    {
+        final Constraint constraint = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(false, Mockito.mock(Http.RequestHeader.class)));
+        final Constraint tree = new ConstraintTree(Operator.PARALLEL_OR,
+                                                   constraint,
+                                                   constraint);
+
+        Assert.assertFalse(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                               handler)));
+    }
+
+    @Test
+    public void testParallelAnd_decidedByFirstFail() throws Exception
+    {
+        final CompletableFuture<F.Tuple<Boolean, Http.RequestHeader>> slow = new CompletableFuture<>();
+        final Constraint c1 = (c, h, gmd, fnM) -> slow;
+        final Constraint c2 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(false, Mockito.mock(Http.RequestHeader.class)));
+        final Constraint tree = new ConstraintTree(Operator.PARALLEL_AND,
+                                                   c1,
+                                                   c2);
+
+        Assert.assertFalse(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                               handler)));
+    }
+
+    @Test
+    public void testParallelAnd_allPass() throws Exception
+    {
+        final Constraint constraint = (c, h, gmd, fnM) -> CompletableFuture.supplyAsync(() -> F.Tuple(true, Mockito.mock(Http.RequestHeader.class)));
+        final Constraint tree = new ConstraintTree(Operator.PARALLEL_AND,
+                                                   constraint,
+                                                   constraint,
+                                                   constraint);
+
+        Assert.assertTrue(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                              handler)));
+    }
+
+    @Test
+    public void testParallelOr_failureIsIgnoredIfAnotherConstraintPasses() throws Exception
+    {
+        final Constraint c1 = (c, h, gmd, fnM) ->
+        {
+            throw new IllegalStateException("unavailable");
+        };
+        final Constraint c2 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, Mockito.mock(Http.RequestHeader.class)));
+        final Constraint tree = new ConstraintTree(Operator.PARALLEL_OR,
+                                                   c1,
+                                                   c2);
+
+        Assert.assertTrue(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                              handler)));
+    }
+
+    @Test
+    public void testNestedTreesWithTheSameOperatorAreMerged()
+    {
+        final Constraint c1 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, c));
+        final Constraint c2 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, c));
+        final Constraint c3 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, c));
+        final Constraint or = new ConstraintTree(Operator.OR,
+                                                 c2,
+                                                 c3);
+
+        Assert.assertEquals(Arrays.asList(c1,
+                                          c2,
+                                          c3),
+                            new ConstraintTree(Operator.AND,
+                                               new ConstraintTree(Operator.AND,
+                                                                  c1,
+                                                                  c2),
+                                               c3).order());
+        Assert.assertEquals(Arrays.asList(c1,
+                                          or),
+                            new ConstraintTree(Operator.AND,
+                                               c1,
+                                               or).order());
+    }
+
+    @Test
+    public void testAnd_asynchronousConstraintPassesItsHeaderOn() throws Exception
+    {
+        final Http.RequestHeader first = Mockito.mock(Http.RequestHeader.class);
+        final Http.RequestHeader second = Mockito.mock(Http.RequestHeader.class);
+        final Constraint c1 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, first));
+        final Constraint c2 = (c, h, gmd, fnM) -> CompletableFuture.supplyAsync(() -> F.Tuple(c == first, second));
+        final Constraint c3 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(c == second, c));
+        final CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> result = new ConstraintTree(Operator.AND,
+                                                                                                c1,
+                                                                                                c2,
+                                                                                                c3).test(Mockito.mock(Http.RequestHeader.class),
+                                                                                                         handler);
+
+        Assert.assertTrue(toBoolean(result));
+        Assert.assertSame(second,
+                          result.toCompletableFuture().get()._2);
+    }
+
+    @Test
+    public void testAnd_minimalCompletionStages() throws Exception
+    {
+        final Constraint c1 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, c)).minimalCompletionStage();
+        final Constraint c2 = (c, h, gmd, fnM) -> CompletableFuture.completedFuture(F.Tuple(true, c)).minimalCompletionStage();
+        final CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> result = new ConstraintTree(Operator.AND,
+                                                                                                c1,
+                                                                                                c2).test(Mockito.mock(Http.RequestHeader.class),
+                                                                                                         handler);
+
+        Assert.assertTrue(result.toCompletableFuture().get()._1);
+    }
+
+    @Test
+    public void testAdaptive_cheapSelectiveConstraintIsMovedFirst() throws Exception
+    {
+        final AtomicLong ticker = new AtomicLong();
+        final Constraint expensive = constraint(ticker,
+                                                1000,
+                                                true,
+                                                true);
+        final Constraint cheap = constraint(ticker,
+                                            1,
+                                            false,
+                                            true);
+        final ConstraintTree tree = new ConstraintTree(Operator.AND,
+                                                       true,
+                                                       ticker::get,
+                                                       expensive,
+                                                       cheap);
+
+        for (int i = 0; i < ConstraintTree.REORDER_INTERVAL; i++)
+        {
+            Assert.assertFalse(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                                   handler)));
+        }
+
+        Assert.assertEquals(Arrays.asList(cheap,
+                                          expensive),
+                            tree.order());
+    }
+
+    @Test
+    public void testAdaptive_constraintsWithSideEffectsAreNotMoved() throws Exception
+    {
+        final AtomicLong ticker = new AtomicLong();
+        final Constraint expensive = constraint(ticker,
+                                                1000,
+                                                true,
+                                                true);
+        final Constraint audited = constraint(ticker,
+                                              1000,
+                                              true,
+                                              false);
+        final Constraint cheap = constraint(ticker,
+                                            1,
+                                            false,
+                                            true);
+        final ConstraintTree tree = new ConstraintTree(Operator.AND,
+                                                       true,
+                                                       ticker::get,
+                                                       expensive,
+                                                       audited,
+                                                       cheap);
+
+        for (int i = 0; i < ConstraintTree.REORDER_INTERVAL; i++)
+        {
+            Assert.assertFalse(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                                   handler)));
+        }
+
+        Assert.assertEquals(Arrays.asList(expensive,
+                                          audited,
+                                          cheap),
+                            tree.order());
+    }
+
+    @Test
+    public void testAdaptive_orPrefersConstraintsThatPass() throws Exception
+    {
+        final AtomicLong ticker = new AtomicLong();
+        final Constraint rarelyPasses = constraint(ticker,
+                                                   10,
+                                                   false,
+                                                   true);
+        final Constraint usuallyPasses = constraint(ticker,
+                                                    10,
+                                                    true,
+                                                    true);
+        final ConstraintTree tree = new ConstraintTree(Operator.OR,
+                                                       true,
+                                                       ticker::get,
+                                                       rarelyPasses,
+                                                       usuallyPasses);
+
+        for (int i = 0; i < ConstraintTree.REORDER_INTERVAL; i++)
+        {
+            Assert.assertTrue(toBoolean(tree.test(Mockito.mock(Http.RequestHeader.class),
+                                                  handler)));
+        }
+
+        Assert.assertEquals(Arrays.asList(usuallyPasses,
+                                          rarelyPasses),
+                            tree.order());
+    }
+
+    private static Constraint constraint(final AtomicLong ticker,
+                                         final long costNanos,
+                                         final boolean passes,
+                                         final boolean sideEffectFree)
+    {
+        return new Constraint()
+        {
+            @Override
+            public CompletionStage<F.Tuple<Boolean, Http.RequestHeader>> test(final Http.RequestHeader requestHeader,
+                                                                              final DeadboltHandler handler,
+                                                                              final Optional<String> globalMetaData,
+                                                                              final BiFunction<Optional<String>, Optional<String>, Optional<String>> metaFn)
+            {
+                ticker.addAndGet(costNanos);
+                return CompletableFuture.completedFuture(F.Tuple(passes,
+                                                                 requestHeader));
+            }
+
+            @Override
+            public boolean isSideEffectFree()
+            {
+                return sideEffectFree;
+            }
+        };
+    }
+
     @Override
     protected F.Tuple<Constraint, Function<Constraint, CompletionStage<F.Tuple<Boolean, Http.RequestHeader>>>> satisfy()
     {
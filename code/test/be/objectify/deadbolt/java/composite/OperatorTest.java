@@ -48,4 +48,30 @@ public class OperatorTest
         Mockito.verifyNoMoreInteractions(c1,
                                          c2);
     }
+
+    @Test
+    public void testParallelAnd()
+    {
+        final Constraint c1 = Mockito.mock(Constraint.class);
+        final Constraint c2 = Mockito.mock(Constraint.class);
+        Operator.PARALLEL_AND.apply(c1,
+                                    c2);
+        Mockito.verify(c1, Mockito.times(1))
+               .parallelAnd(c2);
+        Mockito.verifyNoMoreInteractions(c1,
+                                         c2);
+    }
+
+    @Test
+    public void testParallelOr()
+    {
+        final Constraint c1 = Mockito.mock(Constraint.class);
+        final Constraint c2 = Mockito.mock(Constraint.class);
+        Operator.PARALLEL_OR.apply(c1,
+                                   c2);
+        Mockito.verify(c1, Mockito.times(1))
+               .parallelOr(c2);
+        Mockito.verifyNoMoreInteractions(c1,
+                                         c2);
+    }
 }
\ No newline at end of file
@@ -53,7 +53,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -91,7 +91,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -129,7 +129,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -167,7 +167,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -207,7 +207,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -247,7 +247,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -287,7 +287,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                 Mockito.any(Http.RequestHeader.class)))
-                .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+                .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -325,7 +325,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                 Mockito.any(Http.RequestHeader.class)))
-                .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+                .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -364,7 +364,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
 
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -403,7 +403,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
 
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -442,7 +442,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
 
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -480,7 +480,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -520,7 +520,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -560,7 +560,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -600,7 +600,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -644,7 +644,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -688,7 +688,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -732,7 +732,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -778,7 +778,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -824,7 +824,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -902,7 +902,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -943,7 +943,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -985,7 +985,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -1027,7 +1027,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -1071,7 +1071,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -1114,7 +1114,7 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
                                                          .build();
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(subject), new Http.RequestBuilder().build()))));
 
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
         final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
@@ -1150,6 +1150,43 @@ public class DeadboltRouteModifierTagsFilterTest extends AbstractDeadboltFilterT
         Mockito.verifyZeroInteractions(defaultHandler);
     }
 
+    @Test
+    public void testModifierTagsAreCompiledOncePerRoute() throws ExecutionException, InterruptedException
+    {
+        Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
+                                        Mockito.any(Http.RequestHeader.class)))
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
+
+        final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
+        final DeadboltHandler specificHandler = Mockito.mock(DeadboltHandler.class);
+        final HandlerCache handlerCache = Mockito.spy(new TestHandlerCache(defaultHandler,
+                                                                           Collections.singletonMap("foo",
+                                                                                                    specificHandler)));
+        Mockito.when(specificHandler.beforeAuthCheck(Mockito.any(Http.RequestHeader.class), Mockito.any(Optional.class)))
+               .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        final Filter filter = new DeadboltRouteModifierTagsFilter(Mockito.mock(Materializer.class),
+                                                             handlerCache,
+                                                             filterConstraints);
+        final int[] count = {0};
+        for (int i = 0; i < 3; i++)
+        {
+            final CompletableFuture<Result> eventualResult = filter.apply(rh ->
+                                                                        {
+                                                                            count[0]++;
+                                                                            return CompletableFuture.completedFuture(Results.ok());
+                                                                        },
+                                                                        request("deadbolt:subjectPresent:handler[foo]"))
+                                                                 .toCompletableFuture();
+            await().until(eventualResult::isDone);
+        }
+        Assert.assertEquals(3,
+                            count[0]);
+        Mockito.verify(handlerCache,
+                       Mockito.times(1))
+               .apply("foo");
+    }
+
     private Http.RequestImpl request(final String modifierTags) {
         return Helpers.fakeRequest("GET", "http://localhost/foo")
                       .attr(Router.Attrs.HANDLER_DEF,
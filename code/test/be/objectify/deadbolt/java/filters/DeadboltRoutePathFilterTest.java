@@ -46,7 +46,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -84,7 +84,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -129,7 +129,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler handler = Mockito.mock(DeadboltHandler.class);
@@ -174,7 +174,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.of(Mockito.mock(Subject.class)), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
@@ -215,7 +215,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
@@ -263,7 +263,7 @@ public class DeadboltRoutePathFilterTest extends AbstractDeadboltFilterTest
     {
         Mockito.when(subjectCache.apply(Mockito.any(DeadboltHandler.class),
                                         Mockito.any(Http.RequestHeader.class)))
-               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), Mockito.mock(Http.RequestHeader.class))));
+               .thenReturn(CompletableFuture.completedFuture(F.Tuple(Optional.empty(), new Http.RequestBuilder().build()))));
 
         final HandlerCache handlerCache = Mockito.mock(HandlerCache.class);
         final DeadboltHandler defaultHandler = Mockito.mock(DeadboltHandler.class);
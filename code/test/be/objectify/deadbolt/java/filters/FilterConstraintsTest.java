@@ -41,6 +41,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import play.libs.typedmap.TypedEntry;
+import play.libs.typedmap.TypedKey;
 import play.libs.typedmap.TypedMap;
 import play.mvc.Http;
 import play.mvc.Result;
@@ -106,6 +107,9 @@ public class FilterConstraintsTest
         Mockito.when(requestHeader.clientCertificateChain()).thenReturn(Optional.empty());
         Mockito.when(requestHeader.cookies()).thenReturn(new TestCookies());
 
+        Mockito.when(requestHeader.addAttr(Mockito.any(TypedKey.class),
+                                           Mockito.any()))
+               .thenReturn(requestHeader);
         // The following is not really correct, because we do not make the requestHeader return the PATTERN_INVERT attr,
         // however for these tests it does not really matter
         Mockito.when(requestHeader.addAttr(Constants.PATTERN_INVERT, true))
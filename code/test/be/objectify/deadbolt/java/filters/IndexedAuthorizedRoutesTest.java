@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2017 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class IndexedAuthorizedRoutesTest
+{
+    private final List<AuthorizedRoute> routes = new ArrayList<>();
+
+    private int routesCalls = 0;
+
+    private final AuthorizedRoutes authRoutes = new IndexedAuthorizedRoutes(() -> Mockito.mock(FilterConstraints.class))
+    {
+        @Override
+        public List<AuthorizedRoute> routes()
+        {
+            routesCalls++;
+            return routes;
+        }
+    };
+
+    @Test
+    public void testMatchOnMethodAndPath()
+    {
+        final AuthorizedRoute route = route(Methods.GET,
+                                            "/foo");
+        routes.add(route);
+
+        Assert.assertSame(route,
+                          authRoutes.apply("GET",
+                                           "/foo").get());
+        Assert.assertFalse(authRoutes.apply("POST",
+                                            "/foo").isPresent());
+        Assert.assertFalse(authRoutes.apply("GET",
+                                            "/foo/bar").isPresent());
+    }
+
+    @Test
+    public void testMatchOnPathForAnyMethod()
+    {
+        final AuthorizedRoute route = route(Methods.ANY,
+                                            "/foo");
+        routes.add(route);
+
+        Assert.assertSame(route,
+                          authRoutes.apply("PUT",
+                                           "/foo").get());
+        Assert.assertFalse(authRoutes.apply("PUT",
+                                            "/foo/bar").isPresent());
+    }
+
+    @Test
+    public void testFirstMatchingRouteWins()
+    {
+        final AuthorizedRoute anyFoo = route(Methods.ANY,
+                                             "/foo");
+        final AuthorizedRoute getFoo = route(Methods.GET,
+                                             "/foo");
+        final AuthorizedRoute postBar = route(Methods.POST,
+                                              "/bar");
+        final AuthorizedRoute anyBar = route(Methods.ANY,
+                                             "/bar");
+        final AuthorizedRoute secondPostBar = route(Methods.POST,
+                                                    "/bar");
+        routes.addAll(Arrays.asList(anyFoo,
+                                    getFoo,
+                                    postBar,
+                                    anyBar,
+                                    secondPostBar));
+
+        Assert.assertSame(anyFoo,
+                          authRoutes.apply("GET",
+                                           "/foo").get());
+        Assert.assertSame(postBar,
+                          authRoutes.apply("POST",
+                                           "/bar").get());
+        Assert.assertSame(anyBar,
+                          authRoutes.apply("GET",
+                                           "/bar").get());
+    }
+
+    @Test
+    public void testRoutesAreIndexedOnceUntilRefreshed()
+    {
+        routes.add(route(Methods.GET,
+                         "/foo"));
+        authRoutes.apply("GET",
+                         "/foo");
+        authRoutes.apply("GET",
+                         "/foo");
+        Assert.assertEquals(1,
+                            routesCalls);
+
+        final AuthorizedRoute bar = route(Methods.GET,
+                                          "/bar");
+        routes.add(bar);
+        Assert.assertFalse(authRoutes.apply("GET",
+                                            "/bar").isPresent());
+
+        ((IndexedAuthorizedRoutes) authRoutes).refresh();
+        Assert.assertEquals(Optional.of(bar),
+                            authRoutes.apply("GET",
+                                             "/bar"));
+        Assert.assertEquals(2,
+                            routesCalls);
+    }
+
+    private static AuthorizedRoute route(final Optional<String> method,
+                                         final String path)
+    {
+        return new AuthorizedRoute(method,
+                                   path,
+                                   Mockito.mock(FilterFunction.class));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2016 Steve Chaloner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.objectify.deadbolt.java.metrics;
+
+import be.objectify.deadbolt.java.ConstraintPoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+public class SimpleDeadboltMetricsTest
+{
+    @Test
+    public void testDecisionsAreCountedPerTypeAndPoint()
+    {
+        final SimpleDeadboltMetrics metrics = new SimpleDeadboltMetrics();
+        metrics.recordConstraint("restrict",
+                                 ConstraintPoint.CONTROLLER,
+                                 true,
+                                 1_000);
+        metrics.recordConstraint("restrict",
+                                 ConstraintPoint.CONTROLLER,
+                                 false,
+                                 2_000);
+        metrics.recordConstraint("restrict",
+                                 ConstraintPoint.TEMPLATE,
+                                 true,
+                                 3_000);
+        metrics.recordTimeout("restrict",
+                              ConstraintPoint.TEMPLATE);
+
+        final ConstraintMetrics controller = metrics.constraint("restrict",
+                                                                ConstraintPoint.CONTROLLER).get();
+        Assert.assertEquals(1,
+                            controller.passCount());
+        Assert.assertEquals(1,
+                            controller.failCount());
+        Assert.assertEquals(0,
+                            controller.timeoutCount());
+        Assert.assertEquals(3_000,
+                            controller.latency().totalNanos());
+
+        final ConstraintMetrics template = metrics.constraint("restrict",
+                                                              ConstraintPoint.TEMPLATE).get();
+        Assert.assertEquals(1,
+                            template.passCount());
+        Assert.assertEquals(1,
+                            template.timeoutCount());
+
+        Assert.assertFalse(metrics.constraint("dynamic",
+                                              ConstraintPoint.CONTROLLER).isPresent());
+        Assert.assertEquals(1,
+                            metrics.constraintTypes().size());
+    }
+
+    @Test
+    public void testQuantilesAreBoundedByTheirBucket()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++)
+        {
+            histogram.record(1_000);
+        }
+        histogram.record(1_000_000);
+
+        Assert.assertEquals(100,
+                            histogram.count());
+        Assert.assertEquals(1_000_000,
+                            histogram.maxNanos());
+        // 1000ns is in the bucket [512, 1024)
+        Assert.assertEquals(1_023,
+                            histogram.quantileNanos(0.5));
+        Assert.assertEquals(1_023,
+                            histogram.quantileNanos(0.99));
+        Assert.assertEquals(1_000_000,
+                            histogram.quantileNanos(1.0));
+        Assert.assertEquals(99,
+                            histogram.bucketCounts()[10]);
+    }
+
+    @Test
+    public void testNegativeDurationsAreRecordedAsZero()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        Assert.assertEquals(1,
+                            histogram.bucketCounts()[0]);
+        Assert.assertEquals(0,
+                            histogram.totalNanos());
+        Assert.assertEquals(0,
+                            histogram.quantileNanos(0.5));
+    }
+
+    @Test
+    public void testHandlerCallsAreTimed() throws Exception
+    {
+        final SimpleDeadboltMetrics metrics = new SimpleDeadboltMetrics();
+        final CompletableFuture<String> call = new CompletableFuture<>();
+        final CompletionStage<String> timed = metrics.timeHandlerCall(HandlerCall.GET_SUBJECT,
+                                                                      System.nanoTime(),
+                                                                      call);
+        Assert.assertEquals(0,
+                            metrics.handlerCall(HandlerCall.GET_SUBJECT).count());
+
+        call.complete("foo");
+
+        Assert.assertEquals("foo",
+                            timed.toCompletableFuture().get());
+        Assert.assertEquals(1,
+                            metrics.handlerCall(HandlerCall.GET_SUBJECT).count());
+        Assert.assertEquals(0,
+                            metrics.handlerCall(HandlerCall.BEFORE_AUTH_CHECK).count());
+    }
+
+    @Test
+    public void testPinnedThreadsAreRecorded()
+    {
+        final SimpleDeadboltMetrics metrics = new SimpleDeadboltMetrics();
+        metrics.recordPinnedThread(25_000_000);
+        metrics.recordPinnedThread(40_000_000);
+
+        Assert.assertEquals(2,
+                            metrics.pinnedThreads().count());
+        Assert.assertEquals(40_000_000,
+                            metrics.pinnedThreads().maxNanos());
+    }
+}